@@ -0,0 +1,84 @@
+"""
+导出食材词向量，供Java端 RecipePreferenceScorer 按用户偏好排序使用。
+
+词表包括：类别词（meat/fish/egg/dairy/vegetable）、同义词词典中的全部名称、
+可选的Mongo食谱语料库中出现过的食材名称，以及 --words 指定的额外词表（每行一个）。
+输出为word2vec文本格式：首行 "词数 维度"，之后每行 "词 v1 v2 ..."，词中的空格写作下划线。
+
+用法:
+    python export_ingredient_vectors.py \\
+        --synonyms ../src/main/resources/ingredient-synonyms.txt \\
+        --mongo mongodb://localhost:27017/fridget \\
+        --output ../src/main/resources/ingredient-vectors.txt
+
+导出后设置 ingredient.embeddings-location=classpath:ingredient-vectors.txt 启用（默认为空，不使用词向量）。
+"""
+import argparse
+
+import spacy
+
+CATEGORIES = ["meat", "fish", "egg", "dairy", "vegetable"]
+
+
+def load_synonym_words(path):
+    words = []
+    with open(path, encoding="utf-8") as f:
+        for line in f:
+            line = line.strip()
+            if not line or line.startswith("#") or "=" not in line:
+                continue
+            canonical, synonyms = line.split("=", 1)
+            words.append(canonical)
+            words.extend(synonyms.split(","))
+    return words
+
+
+def load_corpus_words(uri):
+    from pymongo import MongoClient
+    client = MongoClient(uri)
+    words = []
+    for recipe in client.get_default_database()["Recipe"].find({}, {"ingredients.name": 1}):
+        words.extend(item.get("name", "") for item in recipe.get("ingredients", []))
+    return words
+
+
+def main():
+    parser = argparse.ArgumentParser()
+    parser.add_argument("--model", default="zh_core_web_md")
+    parser.add_argument("--synonyms")
+    parser.add_argument("--mongo")
+    parser.add_argument("--words")
+    parser.add_argument("--output", required=True)
+    args = parser.parse_args()
+
+    words = list(CATEGORIES)
+    if args.synonyms:
+        words.extend(load_synonym_words(args.synonyms))
+    if args.mongo:
+        words.extend(load_corpus_words(args.mongo))
+    if args.words:
+        with open(args.words, encoding="utf-8") as f:
+            words.extend(f)
+
+    nlp = spacy.load(args.model)
+    vectors = {}
+    for word in words:
+        word = " ".join(word.strip().lower().split())
+        if not word or word in vectors:
+            continue
+        vector = nlp(word).vector
+        # 与 get_spacy_similarity 一致：没有向量的词相似度视为0，不导出
+        if not vector.any():
+            continue
+        vectors[word] = vector
+
+    dimension = nlp.vocab.vectors_length
+    with open(args.output, "w", encoding="utf-8") as f:
+        f.write(f"{len(vectors)} {dimension}\n")
+        for word, vector in vectors.items():
+            f.write(word.replace(" ", "_") + " " + " ".join(f"{v:.6f}" for v in vector) + "\n")
+    print(f"导出 {len(vectors)} 个词向量, {dimension} 维 -> {args.output}")
+
+
+if __name__ == "__main__":
+    main()
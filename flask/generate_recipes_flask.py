@@ -1,4 +1,4 @@
-from flask import Flask, request, jsonify
+from flask import Flask, request, jsonify, Response, stream_with_context
 import os
 import requests
 import json
@@ -29,6 +29,21 @@ def handle_exception(e):
     print(f"未捕获异常: {str(e)}")
     return jsonify({"error": "服务器内部错误", "detail": str(e)}), 500
 
+LLM_TIMEOUT_SECONDS = 180
+
+def request_timeout_seconds():
+    """
+    Java端通过 X-Request-Timeout-Ms 传递请求剩余时间，LLM调用不应超过它。
+    没有该请求头时使用默认的180秒；返回值小于等于0表示已经超时。
+    """
+    header = request.headers.get("X-Request-Timeout-Ms")
+    if header is None:
+        return LLM_TIMEOUT_SECONDS
+    try:
+        return min(LLM_TIMEOUT_SECONDS, int(header) / 1000.0)
+    except ValueError:
+        return LLM_TIMEOUT_SECONDS
+
 def get_spacy_similarity(word1, word2):
     vec1 = nlp(word1).vector
     vec2 = nlp(word2).vector
@@ -49,6 +64,134 @@ def search_recipe_image(query):
             print(f"Pexels API 请求失败: {e}")
     return "" # 失败时返回默认图
 
+# 每个冰箱的食谱数量。批量与单次生成的结果使用同一个缓存键，数量必须相同
+RECIPES_PER_REQUEST = 8
+
+def build_prompt(ingredients):
+    return f"""
+        你可以获取用户冰箱中现有的食材列表：
+可用食材：{', '.join(ingredients)}
+
+        请基于这些主要食材，**只推荐{RECIPES_PER_REQUEST}道可以制作的菜谱**。食材中应有详细的佐料和调味品。
+        
+        **重要：只输出一个包含{RECIPES_PER_REQUEST}个对象的JSON数组，不要输出任何其他文字、解释或格式说明。**
+
+        ### Output Format (Valid JSON)
+        [
+            {{
+                "name": "Recipe Name",
+                "description": "Brief description",
+                "imageUrl": "https://example.com/recipe-image.jpg",
+                "imageSearchQuery": "Stir-fried tomatoes and eggs",
+                "nutrition": {{"calories": "", "protein": "", "carbs": "", "fat": "", "fiber": "", "sugar": "", "sodium": ""}},
+                "ingredients": [{{"name": "ingredient", "quantity": "50g"}}],
+                "steps": ["Step 1", "Step 2"],
+                "spiceLevel": 2,
+                "cookingDifficultyLevel": "地狱难度"
+            }}
+        ]
+        """
+
+def build_batch_prompt(batch):
+    fridges = "\n".join(f"冰箱 {item['id']}：{', '.join(item.get('userIngredients', []))}" for item in batch)
+    return f"""
+        下面是多个用户冰箱中现有的食材列表，每行一个冰箱：
+{fridges}
+
+        请分别基于每个冰箱的主要食材，**为每个冰箱推荐{RECIPES_PER_REQUEST}道可以制作的菜谱**。食材中应有详细的佐料和调味品。
+
+        **重要：只输出一个JSON对象，键为冰箱编号，值为该冰箱的菜谱数组，不要输出任何其他文字、解释或格式说明。**
+
+        ### Output Format (Valid JSON)
+        {{
+            "0": [
+                {{
+                    "name": "Recipe Name",
+                    "description": "Brief description",
+                    "imageSearchQuery": "Stir-fried tomatoes and eggs",
+                    "nutrition": {{"calories": "", "protein": "", "carbs": "", "fat": "", "fiber": "", "sugar": "", "sodium": ""}},
+                    "ingredients": [{{"name": "ingredient", "quantity": "50g"}}],
+                    "steps": ["Step 1", "Step 2"],
+                    "spiceLevel": 2,
+                    "cookingDifficultyLevel": "地狱难度"
+                }}
+            ]
+        }}
+        """
+
+def attach_recipe_image(recipe):
+    search_query = recipe.get("imageSearchQuery", recipe.get("name"))
+    recipe["imageUrl"] = search_recipe_image(search_query)
+    # 从最终结果中移除 imageSearchQuery
+    if "imageSearchQuery" in recipe:
+        del recipe["imageSearchQuery"]
+
+def iter_json_array_objects(chunks):
+    """从逐段到达的文本中切出顶层JSON数组里的每个完整对象"""
+    depth = 0
+    in_string = False
+    escape = False
+    buf = []
+    for chunk in chunks:
+        for ch in chunk:
+            if depth == 0:
+                if ch == "[":
+                    depth = 1
+                continue
+            if depth >= 2:
+                buf.append(ch)
+            if in_string:
+                if escape:
+                    escape = False
+                elif ch == "\\":
+                    escape = True
+                elif ch == '"':
+                    in_string = False
+                continue
+            if ch == '"':
+                in_string = True
+            elif ch == "{":
+                if depth == 1:
+                    buf = ["{"]
+                depth += 1
+            elif ch == "}":
+                depth -= 1
+                if depth == 1:
+                    yield "".join(buf)
+                    buf = []
+            elif ch == "]" and depth == 1:
+                return
+
+def stream_llm_text(prompt, timeout=LLM_TIMEOUT_SECONDS):
+    """以SSE方式调用通义千问，逐段返回增量文本"""
+    headers = {
+        'Authorization': f'Bearer {ALI_API_KEY}',
+        'Content-Type': 'application/json',
+        'X-DashScope-SSE': 'enable'
+    }
+    payload = {
+        'model': ALI_API_MODE_TYPE,
+        'input': {
+            'messages': [{"role": "system", "content": "你是一个食谱推荐助手"}, {'role': 'user', 'content': prompt}],
+        },
+        'parameters': {"incremental_output": True}
+    }
+    with requests.post(
+        'https://dashscope.aliyuncs.com/api/v1/services/aigc/text-generation/generation',
+        headers=headers,
+        json=payload,
+        timeout=timeout,
+        stream=True
+    ) as raw_response:
+        raw_response.raise_for_status()
+        for line in raw_response.iter_lines(decode_unicode=True):
+            if not line or not line.startswith("data:"):
+                continue
+            event = json.loads(line[len("data:"):])
+            text = event.get("output", {}).get("text")
+            if text:
+                yield text
+
 def create_recipe_feature_vector(recipe, vegan_score, user_data):
     ingredients = [item["name"] for item in recipe["ingredients"]]
 
@@ -71,39 +214,58 @@ def create_recipe_feature_vector(recipe, vegan_score, user_data):
 
     return [meat_score, fish_score, egg_score, dairy_score, vege_score, penalty, reward]
 
+class RankingError(Exception):
+    """按偏好排序失败，消息直接返回给调用方"""
+
+def rank_recipes(recipe_data, user_data):
+    """按用户偏好给食谱打分并排序（/generate 和 /generate/batch 共用），返回 [{"recipe": {...}, "score": ...}]"""
+    vegan_score = vegan_dict.get(user_data.get("vegan", "none"), vegan_dict["none"])
+    try:
+        recipe_features = np.array([create_recipe_feature_vector(r, vegan_score, user_data) for r in recipe_data])
+    except Exception as e:
+        print(f"特征计算错误: {str(e)}")
+        raise RankingError("食谱特征计算失败") from e
+    user_vector = np.array([
+        user_data.get("meatConsumption", 0),
+        user_data.get("fishConsumption", 0),
+        0, 0,
+        user_data.get("vegeConsumption", 0),
+        0, 0
+    ]).reshape(1, -1)
+
+    nn_model = NearestNeighbors(n_neighbors=len(recipe_features), metric='euclidean')
+    try:
+        nn_model.fit(recipe_features)
+    except ValueError as e:
+        print(f"模型训练错误: {str(e)}")
+        raise RankingError("食谱匹配失败") from e
+
+    distances, indices = nn_model.kneighbors(user_vector)
+    max_distance = max(distances.flatten())
+    # 防止零除错误
+    if max_distance == 0:
+        scores = [10] * len(distances.flatten())
+    else:
+        scores = [(10 - (dist / max_distance) * 10) for dist in distances.flatten()]
+
+    return sorted(
+        [{"recipe": recipe_data[i], "score": scores[idx]} for idx, i in enumerate(indices.flatten())],
+        key=lambda x: x["score"], reverse=True
+    )
+
 @app.route("/generate", methods=["POST"])
 def generate():
     try:
         data = request.get_json()
         ingredients = data.get("userIngredients", [])
-        user_data = data.get("userPreferences", {})
-        vegan_score = vegan_dict.get(user_data.get("vegan", "none"), vegan_dict["none"])
+        user_data = data.get("userPreferences") or {}
+        timeout = request_timeout_seconds()
+        if timeout <= 0:
+            return jsonify({"error": "请求已超时"}), 504
 
         gen_start = time.perf_counter()
 
-        prompt = f"""
-        你可以获取用户冰箱中现有的食材列表：
-可用食材：{', '.join(ingredients)}
-
-        请基于这些主要食材，**只推荐8道可以制作的菜谱**。食材中应有详细的佐料和调味品。
-        
-        **重要：只输出一个包含8个对象的JSON数组，不要输出任何其他文字、解释或格式说明。**
-
-        ### Output Format (Valid JSON)
-        [
-            {{
-                "name": "Recipe Name",
-                "description": "Brief description",
-                "imageUrl": "https://example.com/recipe-image.jpg",
-                "imageSearchQuery": "Stir-fried tomatoes and eggs",
-                "nutrition": {{"calories": "", "protein": "", "carbs": "", "fat": "", "fiber": "", "sugar": "", "sodium": ""}},
-                "ingredients": [{{"name": "ingredient", "quantity": "50g"}}],
-                "steps": ["Step 1", "Step 2"],
-                "spiceLevel": 2,
-                "cookingDifficultyLevel": "地狱难度"
-            }}
-        ]
-        """
+        prompt = build_prompt(ingredients)
 
         headers = {
             'Authorization': f'Bearer {ALI_API_KEY}',
@@ -129,7 +291,7 @@ def generate():
                 'https://dashscope.aliyuncs.com/api/v1/services/aigc/text-generation/generation',
                 headers=headers,
                 json=payload,
-                timeout=180
+                timeout=timeout
             )
             raw_response.raise_for_status()  # 检查HTTP状态码
             print(f"API响应状态码: {raw_response.status_code}")
@@ -150,12 +312,7 @@ def generate():
             recipes = json.loads(result_text)
             # 为每个食谱获取图片URL
             for recipe in recipes:
-                search_query = recipe.get("imageSearchQuery", recipe.get("name"))
-                image_url = search_recipe_image(search_query)
-                recipe["imageUrl"] = image_url
-                # 从最终结果中移除 imageSearchQuery
-                if "imageSearchQuery" in recipe:
-                    del recipe["imageSearchQuery"]
+                attach_recipe_image(recipe)
             if isinstance(recipes, list):
                 recipe_data.extend(recipes)
             else:
@@ -171,39 +328,14 @@ def generate():
         gen_end = time.perf_counter()
         print(f"食谱生成耗时: {(gen_end - gen_start):.2f}s")
 
-        filter_start = time.perf_counter()
-        try:
-            recipe_features = np.array([create_recipe_feature_vector(r, vegan_score, user_data) for r in recipe_data])
-        except Exception as e:
-            print(f"特征计算错误: {str(e)}")
-            return jsonify({"error": "食谱特征计算失败"}), 500
-        user_vector = np.array([
-            user_data.get("meatConsumption", 0),
-            user_data.get("fishConsumption", 0),
-            0, 0,
-            user_data.get("vegeConsumption", 0),
-            0, 0
-        ]).reshape(1, -1)
-
-        nn_model = NearestNeighbors(n_neighbors=len(recipe_features), metric='euclidean')
+        # Java端（RecipePreferenceScorer）用预先导出的词向量按用户偏好排序，此处只负责生成
+        if data.get("skipRanking", False):
+            return jsonify([{"recipe": recipe, "score": 0} for recipe in recipe_data])
+
         try:
-            nn_model.fit(recipe_features)
-        except ValueError as e:
-            print(f"模型训练错误: {str(e)}")
-            return jsonify({"error": "食谱匹配失败"}), 500
-
-        distances, indices = nn_model.kneighbors(user_vector)
-        max_distance = max(distances.flatten())
-        # 防止零除错误
-        if max_distance == 0:
-            scores = [10] * len(distances.flatten())
-        else:
-            scores = [(10 - (dist / max_distance) * 10) for dist in distances.flatten()]
-
-        sorted_recipes = sorted(
-            [{"recipe": recipe_data[i], "score": scores[idx]} for idx, i in enumerate(indices.flatten())],
-            key=lambda x: x["score"], reverse=True
-        )
+            sorted_recipes = rank_recipes(recipe_data, user_data)
+        except RankingError as e:
+            return jsonify({"error": str(e)}), 500
 
         filter_end = time.perf_counter()
         print(f"总执行时间: {(filter_end - gen_start) * 1000:.0f}ms")
@@ -215,5 +347,122 @@ def generate():
     except Exception as e:
         return jsonify({"error": str(e)}), 500
 
+@app.route("/generate/stream", methods=["POST"])
+def generate_stream():
+    """
+    流式版本：LLM每输出一个完整的食谱对象就立即写出一个数组元素。
+    响应体仍然是 [{"recipe": {...}, "score": 0}, ...]，但逐个到达；
+    流式模式下无法在全部生成前做整体排序，score固定为0。
+    响应头已经发出，中途失败（LLM调用异常、有食谱无法解析）时在数组末尾写入 {"error": "..."} 元素，
+    Java端据此判定生成失败，不缓存不完整的结果。
+    """
+    if not request.is_json:
+        return jsonify({"error": "请求必须是JSON格式"}), 400
+    data = request.get_json()
+    ingredients = data.get("userIngredients", [])
+    prompt = build_prompt(ingredients)
+    timeout = request_timeout_seconds()
+    if timeout <= 0:
+        return jsonify({"error": "请求已超时"}), 504
+
+    def stream():
+        gen_start = time.perf_counter()
+        yield "["
+        first = True
+        error = None
+        skipped = 0
+        try:
+            for obj_text in iter_json_array_objects(stream_llm_text(prompt, timeout)):
+                try:
+                    recipe = json.loads(obj_text)
+                except json.JSONDecodeError as e:
+                    print(f"跳过无法解析的食谱: {str(e)}")
+                    skipped += 1
+                    continue
+                attach_recipe_image(recipe)
+                yield ("" if first else ",") + json.dumps({"recipe": recipe, "score": 0}, ensure_ascii=False)
+                first = False
+        except Exception as e:
+            print(f"流式请求异常: {str(e)}")
+            error = f"生成中断: {str(e)}"
+        if error is None and skipped:
+            error = f"{skipped} 个食谱无法解析"
+        if error is not None:
+            yield ("" if first else ",") + json.dumps({"error": error}, ensure_ascii=False)
+        yield "]"
+        print(f"流式生成耗时: {(time.perf_counter() - gen_start):.2f}s")
+
+    return Response(stream_with_context(stream()), mimetype="application/json")
+
+@app.route("/generate/batch", methods=["POST"])
+def generate_batch():
+    """
+    批量生成（Java端 FlaskRecipeBatcher）：一个LLM提示词生成多个冰箱的食谱。
+    请求: {"requests": [{"id": "0", "userIngredients": [...], "userPreferences": {...}, "skipRanking": true}, ...]}
+    与 /generate 相同，skipRanking 为false时按各自的 userPreferences 排序；条目未带 skipRanking 时取顶层的值。
+    响应: {"results": [{"id": "0", "recipes": [{"recipe": {...}, "score": 0}, ...]}, {"id": "1", "error": "..."}]}
+    某个冰箱没有生成结果时返回该id的error，Java端会对它单独调用 /generate。
+    """
+    if not request.is_json:
+        return jsonify({"error": "请求必须是JSON格式"}), 400
+    data = request.get_json()
+    batch = data.get("requests", [])
+    skip_ranking = data.get("skipRanking", False)
+    timeout = request_timeout_seconds()
+    if timeout <= 0:
+        return jsonify({"error": "请求已超时"}), 504
+
+    gen_start = time.perf_counter()
+    headers = {
+        'Authorization': f'Bearer {ALI_API_KEY}',
+        'Content-Type': 'application/json',
+    }
+    payload = {
+        'model': ALI_API_MODE_TYPE,
+        'input': {
+            'messages': [{"role": "system", "content": "你是一个食谱推荐助手"}, {'role': 'user', 'content': build_batch_prompt(batch)}],
+        },
+    }
+    try:
+        raw_response = requests.post(
+            'https://dashscope.aliyuncs.com/api/v1/services/aigc/text-generation/generation',
+            headers=headers,
+            json=payload,
+            timeout=timeout
+        )
+        raw_response.raise_for_status()
+        result_text = re.sub(r"```json|```", "", raw_response.json()['output']['text']).strip()
+        generated = json.loads(result_text)
+    except requests.exceptions.RequestException as e:
+        print(f"批量请求异常: {str(e)}")
+        return jsonify({"error": "API请求失败"}), 500
+    except (KeyError, ValueError) as e:
+        print(f"批量响应解析失败: {str(e)}")
+        return jsonify({"error": "解析API响应时出错"}), 500
+
+    results = []
+    for item in batch:
+        recipes = generated.get(str(item["id"])) if isinstance(generated, dict) else None
+        if not isinstance(recipes, list) or not recipes:
+            results.append({"id": item["id"], "error": "未生成有效食谱"})
+            continue
+        for recipe in recipes:
+            attach_recipe_image(recipe)
+        if item.get("skipRanking", skip_ranking):
+            results.append({"id": item["id"], "recipes": [{"recipe": recipe, "score": 0} for recipe in recipes]})
+            continue
+        try:
+            results.append({"id": item["id"], "recipes": rank_recipes(recipes, item.get("userPreferences") or {})})
+        except RankingError as e:
+            results.append({"id": item["id"], "error": str(e)})
+    print(f"批量生成 {len(batch)} 个冰箱耗时: {(time.perf_counter() - gen_start):.2f}s")
+    return jsonify({"results": results})
+
+@app.route("/health", methods=["GET"])
+def health():
+    """Java端 FlaskWorkerPool 定时检查，返回200表示可以接收请求"""
+    return jsonify({"status": "UP"})
+
 if __name__ == "__main__":
-    app.run(host="0.0.0.0", port=5001, debug=True)
+    # 多实例部署时通过 FLASK_PORT 区分端口
+    app.run(host="0.0.0.0", port=int(os.getenv("FLASK_PORT", "5001")), debug=True)
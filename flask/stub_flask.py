@@ -0,0 +1,84 @@
+"""
+本地压测/联调用的Flask桩服务：不调用LLM，按固定延迟返回固定食谱。
+可以启动多个实例验证 FlaskWorkerPool 的路由、健康检查和慢实例剔除，以及 FlaskRecipeBatcher 的批量接口：
+
+    python stub_flask.py --port 5001
+    python stub_flask.py --port 5002 --delay 3
+    # application.properties: flask.workers=http://localhost:5001,http://localhost:5002
+"""
+import argparse
+import json
+import time
+
+from flask import Flask, Response, jsonify, request
+
+app = Flask(__name__)
+DELAY_SECONDS = 0.0
+
+def canned_recipe(name, ingredients, steps, spice_level, difficulty):
+    return {
+        "name": name,
+        "description": "桩服务返回的固定食谱",
+        "imageUrl": None,
+        "nutrition": {"calories": "400kcal", "protein": "20g", "carbs": "30g", "fat": "15g",
+                      "fiber": "3g", "sugar": "5g", "sodium": "800mg"},
+        "ingredients": [{"name": n, "quantity": q} for n, q in ingredients],
+        "steps": steps,
+        "spiceLevel": spice_level,
+        "cookingDifficultyLevel": difficulty,
+    }
+
+
+CANNED_RECIPES = [
+    canned_recipe("番茄炒蛋", [("番茄", "2个"), ("鸡蛋", "3个"), ("葱", "1根"), ("盐", "3g")],
+                  ["鸡蛋打散炒熟盛出", "番茄炒出汁", "倒回鸡蛋翻炒，撒葱花"], 0, "简单"),
+    canned_recipe("土豆炖牛肉", [("土豆", "2个"), ("牛肉", "500g"), ("洋葱", "1个"), ("酱油", "15ml")],
+                  ["牛肉焯水", "加洋葱炒香后炖煮", "放入土豆炖至软烂"], 1, "中等"),
+    canned_recipe("麻婆豆腐", [("豆腐", "1块"), ("猪肉", "100g"), ("豆瓣酱", "20g")],
+                  ["肉末炒香", "加豆瓣酱炒出红油", "放豆腐煮入味"], 4, "简单"),
+]
+
+
+def canned_result():
+    return [{"recipe": recipe, "score": 0} for recipe in CANNED_RECIPES]
+
+
+@app.route("/health", methods=["GET"])
+def health():
+    return jsonify({"status": "UP"})
+
+
+@app.route("/generate", methods=["POST"])
+def generate():
+    time.sleep(DELAY_SECONDS)
+    return jsonify(canned_result())
+
+
+@app.route("/generate/batch", methods=["POST"])
+def generate_batch():
+    """与 generate_recipes_flask.py 的批量接口相同的响应格式，一批只按一次延迟计算"""
+    batch = request.get_json().get("requests", [])
+    time.sleep(DELAY_SECONDS)
+    return jsonify({"results": [{"id": item["id"], "recipes": canned_result()} for item in batch]})
+
+
+@app.route("/generate/stream", methods=["POST"])
+def generate_stream():
+    def stream():
+        yield "["
+        for i, item in enumerate(canned_result()):
+            time.sleep(DELAY_SECONDS / len(CANNED_RECIPES))
+            yield ("" if i == 0 else ",") + json.dumps(item, ensure_ascii=False)
+        yield "]"
+
+    request.get_data()
+    return Response(stream(), mimetype="application/json")
+
+
+if __name__ == "__main__":
+    parser = argparse.ArgumentParser()
+    parser.add_argument("--port", type=int, default=5001)
+    parser.add_argument("--delay", type=float, default=0.0, help="每次生成的模拟耗时（秒）")
+    args = parser.parse_args()
+    DELAY_SECONDS = args.delay
+    app.run(host="0.0.0.0", port=args.port, threaded=True)
@@ -0,0 +1,90 @@
+package fridget.fridget.common;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fridget.fridget.ingredient.UserIngredient;
+import fridget.fridget.recipe.Recipe;
+import fridget.fridget.recipe.RecipeJob;
+import fridget.fridget.recipe.RecipeJobStatus;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CommonResponse 序列化开销，使用与Spring MVC相同配置的ObjectMapper：
+ * 大响应为已完成的异步食谱任务（食谱取自Flask返回），小响应为添加食材后返回的冰箱食材。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CommonResponseBenchmark {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private CommonResponse recipeJobResponse;
+    private CommonResponse ingredientsResponse;
+
+    @Setup
+    public void setUp() throws IOException {
+        JsonNode flaskResponse;
+        try (InputStream in = CommonResponseBenchmark.class.getResourceAsStream("/flask-response.json")) {
+            flaskResponse = objectMapper.readTree(in);
+        }
+        List<Recipe> recipes = new ArrayList<>();
+        List<UserIngredient> ingredients = new ArrayList<>();
+        for (JsonNode element : flaskResponse) {
+            Recipe recipe = objectMapper.treeToValue(element.get("recipe"), Recipe.class);
+            // 与推荐接口一样带上缺失食材信息（冰箱里有一半食材）
+            List<String> missingIngredients = new ArrayList<>();
+            for (int i = 0; i < recipe.getIngredients().size(); i++) {
+                String name = recipe.getIngredients().get(i).getName();
+                if (i % 2 == 0) {
+                    ingredients.add(UserIngredient.builder()
+                            .id(new ObjectId().toHexString())
+                            .name(name)
+                            .category("蔬菜")
+                            .build());
+                } else {
+                    missingIngredients.add(name);
+                }
+            }
+            recipe.setMissingIngredients(missingIngredients);
+            recipe.setCoverage(1 - (double) missingIngredients.size() / recipe.getIngredients().size());
+            recipes.add(recipe);
+        }
+        long now = System.currentTimeMillis();
+        RecipeJob job = RecipeJob.builder()
+                .jobId("5f1d7c3e-8a2b-4c6d-9e0f-1a2b3c4d5e6f")
+                .userId("benchmark-user")
+                .status(RecipeJobStatus.DONE)
+                .recipes(recipes)
+                .createdAt(now - 40_000)
+                .updatedAt(now)
+                .build();
+        recipeJobResponse = new CommonResponse(HttpStatus.OK, "Recipe job DONE", job);
+        ingredientsResponse = new CommonResponse(HttpStatus.OK, "Ingredients added!", ingredients);
+    }
+
+    @Benchmark
+    public byte[] serializeRecipeJob() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(recipeJobResponse);
+    }
+
+    @Benchmark
+    public byte[] serializeIngredients() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(ingredientsResponse);
+    }
+}
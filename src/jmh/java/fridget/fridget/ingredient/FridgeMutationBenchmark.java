@@ -0,0 +1,98 @@
+package fridget.fridget.ingredient;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import fridget.fridget.ingredient.dto.IngredientsReqDto;
+import fridget.fridget.user.User;
+import fridget.fridget.user.UserContext;
+import fridget.fridget.user.UserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 冰箱增删吞吐量：原来的读取-修改-整体保存（并发时会丢失更新）与 $push/$pull 原子更新的对比。
+ * 8个线程对同一个用户的冰箱各自添加再删除一个食材。
+ * 需要本地Mongo（-Dbench.mongo.uri，默认 mongodb://localhost:27017），数据写在 fridget_bench 库中，结束后删除。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class FridgeMutationBenchmark {
+
+    private static final String USER_ID = "bench-user";
+
+    @Param({"50", "200"})
+    public int fridgeSize;
+
+    private final AtomicInteger counter = new AtomicInteger();
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private UserRepository userRepository;
+    private IngredientService ingredientService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        client = MongoClients.create(System.getProperty("bench.mongo.uri", "mongodb://localhost:27017"));
+        mongoTemplate = new MongoTemplate(client, "fridget_bench");
+        mongoTemplate.getDb().drop();
+        userRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(UserRepository.class);
+        ingredientService = new IngredientService(new UserContext(userRepository, 1000, 30), null, mongoTemplate, event -> {
+        });
+
+        List<UserIngredient> fridge = new ArrayList<>();
+        for (int i = 0; i < fridgeSize; i++) {
+            fridge.add(UserIngredient.toEntity(dto("食材" + i)));
+        }
+        mongoTemplate.save(User.builder().userId(USER_ID).userIngredients(fridge).build());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mongoTemplate.getDb().drop();
+        client.close();
+    }
+
+    private static IngredientsReqDto dto(String name) {
+        IngredientsReqDto dto = new IngredientsReqDto();
+        dto.setName(name);
+        dto.setCategory("vegetable");
+        return dto;
+    }
+
+    @Benchmark
+    public void loadModifySave() {
+        IngredientsReqDto dto = dto("新食材" + counter.incrementAndGet());
+        User user = userRepository.findByUserId(USER_ID).orElseThrow();
+        user.getUserIngredients().add(UserIngredient.toEntity(dto));
+        userRepository.save(user);
+
+        user = userRepository.findByUserId(USER_ID).orElseThrow();
+        user.getUserIngredients().removeIf(ingredient -> ingredient.getName().equals(dto.getName()));
+        userRepository.save(user);
+    }
+
+    @Benchmark
+    public int atomicPushPull() {
+        List<IngredientsReqDto> dtos = Collections.singletonList(dto("新食材" + counter.incrementAndGet()));
+        ingredientService.addIngredients(USER_ID, dtos);
+        return ingredientService.removeIngredients(USER_ID, dtos).size();
+    }
+}
@@ -0,0 +1,104 @@
+package fridget.fridget.ingredient;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 词向量查找和余弦相似度吞吐量：堆内float数组与内存映射文件对比（300维，2万个词）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IngredientEmbeddingsBenchmark {
+
+    private static final int WORDS = 20_000;
+    private static final int DIMENSION = 300;
+    private static final int PAIRS = 1024;
+
+    private HeapIngredientEmbeddings heap;
+    private MappedIngredientEmbeddings mapped;
+    private Path binaryFile;
+    private String[] lookups;
+    private int[] left;
+    private int[] right;
+    private int cursor;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(WORDS + " " + DIMENSION + "\n");
+        for (int w = 0; w < WORDS; w++) {
+            text.append("食材").append(w);
+            for (int i = 0; i < DIMENSION; i++) {
+                text.append(' ').append(random.nextFloat() * 2 - 1);
+            }
+            text.append('\n');
+        }
+        byte[] textBytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        heap = HeapIngredientEmbeddings.load(new ByteArrayInputStream(textBytes));
+
+        binaryFile = Files.createTempFile("ingredient-vectors", ".bin");
+        try (InputStream in = new ByteArrayInputStream(textBytes);
+             OutputStream out = Files.newOutputStream(binaryFile)) {
+            MappedIngredientEmbeddings.convert(in, out);
+        }
+        mapped = new MappedIngredientEmbeddings(binaryFile);
+
+        lookups = new String[PAIRS];
+        left = new int[PAIRS];
+        right = new int[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            lookups[i] = "食材" + random.nextInt(WORDS);
+            left[i] = random.nextInt(WORDS);
+            right[i] = random.nextInt(WORDS);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(binaryFile);
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (PAIRS - 1);
+        return cursor;
+    }
+
+    @Benchmark
+    public int heapLookup() {
+        return heap.idOf(lookups[next()]);
+    }
+
+    @Benchmark
+    public int mappedLookup() {
+        return mapped.idOf(lookups[next()]);
+    }
+
+    @Benchmark
+    public double heapCosine() {
+        int i = next();
+        return heap.cosine(left[i], right[i]);
+    }
+
+    @Benchmark
+    public double mappedCosine() {
+        int i = next();
+        return mapped.cosine(left[i], right[i]);
+    }
+}
@@ -0,0 +1,73 @@
+package fridget.fridget.recipe;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fridget.fridget.ingredient.IngredientNormalizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存键生成（每个推荐请求一次）：MD5摘要加逐字节 String.format 转十六进制，
+ * 以及包含食材规范化的完整 cache_key 阶段。冰箱食材取自Flask返回的食谱。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CacheKeyBenchmark {
+
+    @Param({"5", "20", "50"})
+    public int fridgeSize;
+
+    private List<String> fridge;
+    private SortedSet<String> canonicalFridge;
+    private IngredientNormalizer normalizer;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<RecipeWrapper> wrappers;
+        try (InputStream in = CacheKeyBenchmark.class.getResourceAsStream("/flask-response.json")) {
+            wrappers = new ObjectMapper().readValue(in, new TypeReference<List<RecipeWrapper>>() {
+            });
+        }
+        try (InputStream in = CacheKeyBenchmark.class.getResourceAsStream("/ingredient-synonyms.txt")) {
+            normalizer = new IngredientNormalizer(IngredientNormalizer.loadSynonyms(in));
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (RecipeWrapper wrapper : wrappers) {
+            for (Ingredient ingredient : wrapper.getRecipe().getIngredients()) {
+                names.add(ingredient.getName());
+            }
+        }
+        fridge = new ArrayList<>(names);
+        for (int i = fridge.size(); i < fridgeSize; i++) {
+            fridge.add("食材" + i);
+        }
+        fridge = fridge.subList(0, fridgeSize);
+        canonicalFridge = normalizer.normalizeAll(fridge);
+    }
+
+    @Benchmark
+    public String generateCacheKey() {
+        return RecipeService.generateCacheKey(canonicalFridge);
+    }
+
+    @Benchmark
+    public String normalizeAndGenerateCacheKey() {
+        return RecipeService.generateCacheKey(normalizer.normalizeAll(fridge));
+    }
+}
@@ -0,0 +1,127 @@
+package fridget.fridget.recipe;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import fridget.fridget.ingredient.HeapIngredientEmbeddings;
+import fridget.fridget.ingredient.IngredientNormalizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 微批处理吞吐量：本地桩服务模拟LLM，每次调用（无论单个还是整批）固定耗时 llmMillis，
+ * 16个线程并发请求不同冰箱，比较逐个调用 /generate 与合并为 /generate/batch 的吞吐量。
+ * 桩服务只有 concurrency 个处理线程，模拟有限的LLM并发额度。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(16)
+public class FlaskBatchBenchmark {
+
+    @Param({"50"})
+    public long llmMillis;
+
+    @Param({"4"})
+    public int concurrency;
+
+    @Param({"false", "true"})
+    public boolean batching;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger fridgeCounter = new AtomicInteger();
+    private HttpServer server;
+    private FlaskWorkerPool pool;
+    private FlaskRecipeClient client;
+    private FlaskRecipeBatcher batcher;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] recipes;
+        try (InputStream in = FlaskBatchBenchmark.class.getResourceAsStream("/flask-response.json")) {
+            recipes = in.readAllBytes();
+        }
+        JsonNode recipeArray = objectMapper.readTree(recipes);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(concurrency));
+        server.createContext("/generate", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            sleep();
+            respond(exchange, recipes);
+        });
+        server.createContext("/generate/batch", exchange -> {
+            JsonNode requests = objectMapper.readTree(exchange.getRequestBody()).path("requests");
+            sleep();
+            ObjectNode response = objectMapper.createObjectNode();
+            ArrayNode results = response.putArray("results");
+            for (JsonNode request : requests) {
+                results.addObject().put("id", request.path("id").asText()).set("recipes", recipeArray);
+            }
+            respond(exchange, objectMapper.writeValueAsBytes(response));
+        });
+        server.start();
+
+        pool = new FlaskWorkerPool(Collections.singletonList("http://127.0.0.1:" + server.getAddress().getPort()),
+                64, 64, 1000, 30_000, 1000, 1000.0, 60_000);
+        FlaskRequestHedger hedger = new FlaskRequestHedger(pool, false, 0.95, 20, 1000, 0.1, 200, 16);
+        batcher = new FlaskRecipeBatcher(pool, batching, 20, 8);
+        // 没有词向量，与默认配置一样由Flask排序
+        RecipePreferenceScorer scorer = new RecipePreferenceScorer(
+                HeapIngredientEmbeddings.load(new ByteArrayInputStream(new byte[0])),
+                new IngredientNormalizer(Collections.emptyMap()));
+        client = new FlaskRecipeClient(pool, hedger, batcher, scorer);
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(llmMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        batcher.destroy();
+        pool.destroy();
+        server.stop(0);
+    }
+
+    @Benchmark
+    public String generate() {
+        List<String> fridge = Collections.singletonList("食材" + fridgeCounter.incrementAndGet());
+        return client.generate(fridge, null, 30_000).getBody();
+    }
+}
@@ -0,0 +1,94 @@
+package fridget.fridget.recipe;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fridget.fridget.ingredient.IngredientDictionary;
+import fridget.fridget.ingredient.IngredientNormalizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缺失食材计算对比：原实现对每个食谱食材在冰箱 ArrayList 上做 contains(toLowerCase())，
+ * 位图实现每次请求只编码一次冰箱，然后每个食谱做一次 AND NOT。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MissingIngredientBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int fridgeSize;
+
+    private List<Recipe> recipes;
+    private List<String> fridge;
+    private SortedSet<String> canonicalFridge;
+    private RecipeIngredientMatcher matcher;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<RecipeWrapper> wrappers;
+        try (InputStream in = MissingIngredientBenchmark.class.getResourceAsStream("/flask-response.json")) {
+            wrappers = new ObjectMapper().readValue(in, new TypeReference<List<RecipeWrapper>>() {
+            });
+        }
+        IngredientNormalizer normalizer;
+        try (InputStream in = MissingIngredientBenchmark.class.getResourceAsStream("/ingredient-synonyms.txt")) {
+            normalizer = new IngredientNormalizer(IngredientNormalizer.loadSynonyms(in));
+        }
+        matcher = new RecipeIngredientMatcher(new IngredientDictionary(), normalizer);
+
+        recipes = new ArrayList<>();
+        fridge = new ArrayList<>();
+        for (RecipeWrapper wrapper : wrappers) {
+            Recipe recipe = wrapper.getRecipe();
+            recipes.add(recipe);
+            matcher.index(recipe);
+            // 冰箱里放入每个食谱的一半食材
+            List<Ingredient> ingredients = recipe.getIngredients();
+            for (int i = 0; i < ingredients.size(); i += 2) {
+                fridge.add(ingredients.get(i).getName().toLowerCase());
+            }
+        }
+        for (int i = fridge.size(); i < fridgeSize; i++) {
+            fridge.add("食材" + i);
+        }
+        canonicalFridge = normalizer.normalizeAll(fridge);
+    }
+
+    @Benchmark
+    public void listContains(Blackhole blackhole) {
+        for (Recipe recipe : recipes) {
+            List<String> missingIngredients = new ArrayList<>();
+            for (Ingredient ingredient : recipe.getIngredients()) {
+                if (!fridge.contains(ingredient.getName().toLowerCase())) {
+                    missingIngredients.add(ingredient.getName());
+                }
+            }
+            blackhole.consume(missingIngredients);
+        }
+    }
+
+    @Benchmark
+    public void bitSetAndNot(Blackhole blackhole) {
+        BitSet fridgeBits = matcher.encodeFridge(canonicalFridge);
+        for (Recipe recipe : recipes) {
+            matcher.match(recipe, fridgeBits);
+            blackhole.consume(recipe.getMissingIngredients());
+        }
+    }
+}
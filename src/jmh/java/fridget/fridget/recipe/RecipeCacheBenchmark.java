@@ -0,0 +1,71 @@
+package fridget.fridget.recipe;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存命中路径对比（不含Redis网络往返）：
+ * 原实现每次用新的TypeReference反序列化Redis中的JSON，L1命中时只复制已解析好的对象。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RecipeCacheBenchmark {
+
+    private static final String CACHE_KEY = "recipe:benchmark";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectReader recipeListReader = objectMapper.readerFor(new TypeReference<List<RecipeWrapper>>() {
+    });
+    private String cachedJson;
+    private RecipeLocalCache localCache;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream in = RecipeCacheBenchmark.class.getResourceAsStream("/flask-response.json")) {
+            cachedJson = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        localCache = new RecipeLocalCache(65536, 10);
+        localCache.put(CACHE_KEY, extract(recipeListReader.readValue(cachedJson)), cachedJson.length());
+    }
+
+    @Benchmark
+    public List<Recipe> parseWithNewTypeReference() throws IOException {
+        List<RecipeWrapper> wrappers = objectMapper.readValue(cachedJson, new TypeReference<List<RecipeWrapper>>() {
+        });
+        return extract(wrappers);
+    }
+
+    @Benchmark
+    public List<Recipe> parseWithSharedReader() throws IOException {
+        return extract(recipeListReader.readValue(cachedJson));
+    }
+
+    @Benchmark
+    public List<Recipe> localCacheHit() {
+        return localCache.getIfPresent(CACHE_KEY);
+    }
+
+    private static List<Recipe> extract(List<RecipeWrapper> wrappers) {
+        List<Recipe> recipes = new ArrayList<>(wrappers.size());
+        for (RecipeWrapper wrapper : wrappers) {
+            recipes.add(wrapper.getRecipe());
+        }
+        return recipes;
+    }
+}
@@ -0,0 +1,99 @@
+package fridget.fridget.securities;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 并发下JWT认证过滤器吞吐量：
+ * 原实现每个请求校验两次签名（安全过滤链和自动注册的Servlet过滤器各一次），现在每个请求一次，已验证的令牌直接命中缓存。
+ * users 为活跃用户（令牌）数。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(8)
+public class JwtAuthFilterBenchmark {
+
+    private static final String SECRET = "benchmark-secret";
+
+    @Param({"100", "10000"})
+    public int users;
+
+    private String[] tokens;
+    private JwtAuthFilter filter;
+
+    @Setup
+    public void setUp() {
+        tokens = new String[users];
+        Date now = new Date();
+        for (int i = 0; i < users; i++) {
+            tokens[i] = Jwts.builder()
+                    .setSubject("user" + i)
+                    .setId("jti-" + i)
+                    .claim("role", "USER")
+                    .setIssuedAt(now)
+                    .setExpiration(new Date(now.getTime() + TimeUnit.HOURS.toMillis(1)))
+                    .signWith(SignatureAlgorithm.HS256, SECRET)
+                    .compact();
+        }
+        filter = new JwtAuthFilter(null, null, new TokenRevocationService(3600, 86400, 1000, 0.01), SECRET, 10000);
+    }
+
+    private String nextToken() {
+        return tokens[ThreadLocalRandom.current().nextInt(users)];
+    }
+
+    // 原实现：每个请求两次签名校验，每次重新构造用户和权限列表
+    @Benchmark
+    public Authentication parseTwicePerRequest() {
+        String token = nextToken();
+        Authentication authentication = null;
+        for (int i = 0; i < 2; i++) {
+            Claims claims = Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token).getBody();
+            List<GrantedAuthority> authorities = new ArrayList<>();
+            authorities.add(new SimpleGrantedAuthority("ROLE_" + claims.get("role")));
+            UserDetails userDetails = new User(claims.getSubject(), "", authorities);
+            authentication = new UsernamePasswordAuthenticationToken(userDetails, "", userDetails.getAuthorities());
+        }
+        return authentication;
+    }
+
+    @Benchmark
+    public Authentication cachedFilter() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/recipe/recommend");
+        request.setServletPath("/recipe/recommend");
+        request.addHeader(JwtAuthFilter.HEADER_KEY, JwtAuthFilter.PREFIX + nextToken());
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+}
@@ -0,0 +1,53 @@
+package fridget.fridget.securities;
+
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JwtTokenProvider 签发和解析令牌的开销（HS256）：登录和令牌换发时签发，缓存未命中的请求解析一次。
+ * 密钥长度和有效期与 application.properties 一致。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtTokenProviderBenchmark {
+
+    private static final String SECRET = "8Zz5tw0Ionm3XPZZfN0NOml3z9FMfmpgXwovR9fp6ryDIoGRM8EPHAB6iHsc0fb";
+    private static final String USER_ID = "benchmark-user";
+
+    private JwtTokenProvider provider;
+    private String accessToken;
+
+    @Setup
+    public void setUp() {
+        provider = new JwtTokenProvider(null);
+        ReflectionTestUtils.setField(provider, "secretKey", SECRET);
+        ReflectionTestUtils.setField(provider, "accessTokenExpiration", 86400);
+        ReflectionTestUtils.setField(provider, "refreshTokenExpiration", 2592000);
+        accessToken = provider.createAccessToken(USER_ID, "USER");
+    }
+
+    @Benchmark
+    public String createAccessToken() {
+        return provider.createAccessToken(USER_ID, "USER");
+    }
+
+    @Benchmark
+    public String createRefreshToken() {
+        return provider.createRefreshToken(USER_ID);
+    }
+
+    @Benchmark
+    public Claims parseAccessToken() {
+        return provider.getClaims(accessToken);
+    }
+}
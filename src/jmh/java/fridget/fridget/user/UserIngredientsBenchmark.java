@@ -0,0 +1,139 @@
+package fridget.fridget.user;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import fridget.fridget.ingredient.UserIngredient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.DBRef;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 读取用户冰箱食材：DBRef 列表（旧结构）与内嵌文档的对比。
+ * 需要本地Mongo（-Dbench.mongo.uri，默认 mongodb://localhost:27017），数据写在 fridget_bench 库中，结束后删除。
+ * 每次试验结束时打印每次读取实际发送的Mongo命令数（往返次数）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserIngredientsBenchmark {
+
+    private static final String DATABASE = "fridget_bench";
+    private static final String USER_ID = "bench-user";
+
+    @Param({"50", "100", "200"})
+    public int fridgeSize;
+
+    private final AtomicLong commands = new AtomicLong();
+    private long readsLegacy;
+    private long commandsLegacy;
+    private long readsEmbedded;
+    private long commandsEmbedded;
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+
+    @Document(collection = "BenchUserIngredient")
+    public static class LegacyIngredient {
+        @Id
+        public String id;
+        public String name;
+        public String category;
+    }
+
+    @Document(collection = "BenchLegacyUser")
+    public static class LegacyUser {
+        @Id
+        public String id;
+        public String userId;
+        @DBRef
+        public List<LegacyIngredient> userIngredients = new ArrayList<>();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CommandListener listener = new CommandListener() {
+            @Override
+            public void commandStarted(CommandStartedEvent event) {
+                commands.incrementAndGet();
+            }
+        };
+        client = MongoClients.create(MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(
+                        System.getProperty("bench.mongo.uri", "mongodb://localhost:27017")))
+                .addCommandListener(listener)
+                .build());
+        mongoTemplate = new MongoTemplate(client, DATABASE);
+        mongoTemplate.getDb().drop();
+
+        LegacyUser legacy = new LegacyUser();
+        legacy.userId = USER_ID;
+        List<UserIngredient> embedded = new ArrayList<>();
+        for (int i = 0; i < fridgeSize; i++) {
+            LegacyIngredient ingredient = new LegacyIngredient();
+            ingredient.name = "食材" + i;
+            ingredient.category = "vegetable";
+            legacy.userIngredients.add(mongoTemplate.save(ingredient));
+            embedded.add(UserIngredient.builder().id(ingredient.id).name(ingredient.name)
+                    .category(ingredient.category).build());
+        }
+        mongoTemplate.save(legacy);
+        mongoTemplate.save(User.builder().userId(USER_ID).userIngredients(embedded).build(), "BenchUser");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (readsLegacy > 0) {
+            System.out.printf("%nfridgeSize=%d DBRef: %.1f round trips per read%n",
+                    fridgeSize, (double) commandsLegacy / readsLegacy);
+        }
+        if (readsEmbedded > 0) {
+            System.out.printf("%nfridgeSize=%d embedded: %.1f round trips per read%n",
+                    fridgeSize, (double) commandsEmbedded / readsEmbedded);
+        }
+        mongoTemplate.getDb().drop();
+        client.close();
+    }
+
+    private static Query byUserId() {
+        return Query.query(Criteria.where("userId").is(USER_ID));
+    }
+
+    @Benchmark
+    public int dbRefIngredients() {
+        long before = commands.get();
+        LegacyUser user = mongoTemplate.findOne(byUserId(), LegacyUser.class);
+        commandsLegacy += commands.get() - before;
+        readsLegacy++;
+        return user.userIngredients.size();
+    }
+
+    @Benchmark
+    public int embeddedIngredients() {
+        long before = commands.get();
+        User user = mongoTemplate.findOne(byUserId(), User.class, "BenchUser");
+        commandsEmbedded += commands.get() - before;
+        readsEmbedded++;
+        return user.getUserIngredients().size();
+    }
+}
@@ -0,0 +1,210 @@
+package fridget.fridget.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * 基于最近N次调用的熔断器，失败率或慢调用率超过阈值时打开。
+ * <p>
+ * CLOSED：正常放行并记录结果；OPEN：直接拒绝，openMillis 后进入 HALF_OPEN；
+ * HALF_OPEN：只放行一个探测调用，成功则关闭并清空统计，失败则重新打开。
+ * <p>
+ * 每次状态切换递增 epoch，许可记录发放时的 epoch：只有探测许可的结果能让 HALF_OPEN 切换状态，
+ * 其他许可的结果只在发放它的那段 CLOSED 期间计入统计。打开前放行、打开后才返回的慢调用不会关闭熔断器，
+ * 也不会污染关闭后重新开始的统计。
+ * 调用频率很低（每次都是秒级的上游调用），直接用synchronized保证状态一致。
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallMillis;
+    private final double slowCallRateThreshold;
+    private final long openMillis;
+    private final LongSupplier clock;
+
+    // 环形窗口：每个位置记录一次调用是否失败、是否慢调用
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int recorded;
+    private int next;
+
+    private State state = State.CLOSED;
+    private long epoch;
+    private long openedAt;
+    private boolean probeInFlight;
+    private long openCount;
+    private long staleOutcomes;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                          long slowCallMillis, double slowCallRateThreshold, long openMillis) {
+        this(windowSize, minimumCalls, failureRateThreshold, slowCallMillis, slowCallRateThreshold, openMillis,
+                System::currentTimeMillis);
+    }
+
+    CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                   long slowCallMillis, double slowCallRateThreshold, long openMillis, LongSupplier clock) {
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallMillis = slowCallMillis;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openMillis = openMillis;
+        this.clock = clock;
+        this.failed = new boolean[windowSize];
+        this.slow = new boolean[windowSize];
+    }
+
+    /**
+     * 申请一次调用许可
+     *
+     * @return 许可，调用结束后必须传给 {@link #onSuccess}、{@link #onFailure} 或 {@link #releasePermission}；被拒绝时为null
+     */
+    public synchronized Permission tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < openMillis) {
+                return null;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probeInFlight) {
+                return null;
+            }
+            probeInFlight = true;
+            return new Permission(epoch, true);
+        }
+        return new Permission(epoch, false);
+    }
+
+    /**
+     * 放弃已获得的许可（例如调用前发现截止时间已过），不计入统计
+     */
+    public synchronized void releasePermission(Permission permission) {
+        if (isCurrentProbe(permission)) {
+            probeInFlight = false;
+        }
+    }
+
+    public synchronized void onSuccess(Permission permission, long durationMillis) {
+        boolean slowCall = durationMillis >= slowCallMillis;
+        if (isCurrentProbe(permission)) {
+            if (slowCall) {
+                open();
+            } else {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        record(permission, false, slowCall);
+    }
+
+    public synchronized void onFailure(Permission permission, long durationMillis) {
+        if (isCurrentProbe(permission)) {
+            open();
+            return;
+        }
+        record(permission, true, durationMillis >= slowCallMillis);
+    }
+
+    /**
+     * OPEN状态下距离允许探测还剩的毫秒数，其他状态为0
+     */
+    public synchronized long remainingOpenMillis() {
+        return state == State.OPEN ? Math.max(0, openMillis - (clock.getAsLong() - openedAt)) : 0;
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openMillis) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    private boolean isCurrentProbe(Permission permission) {
+        return permission.probe && permission.epoch == epoch && state == State.HALF_OPEN;
+    }
+
+    private void record(Permission permission, boolean failure, boolean slowCall) {
+        if (state != State.CLOSED || permission.epoch != epoch) {
+            // 许可发放后熔断器已切换过状态（打开前放行的调用、超时返回的旧探测），结果不再影响统计
+            staleOutcomes++;
+            return;
+        }
+        failed[next] = failure;
+        slow[next] = slowCall;
+        next = (next + 1) % windowSize;
+        recorded = Math.min(recorded + 1, windowSize);
+        if (recorded >= minimumCalls
+                && (failureRate() >= failureRateThreshold || slowCallRate() >= slowCallRateThreshold)) {
+            open();
+        }
+    }
+
+    private double failureRate() {
+        return rate(failed);
+    }
+
+    private double slowCallRate() {
+        return rate(slow);
+    }
+
+    private double rate(boolean[] outcomes) {
+        if (recorded == 0) {
+            return 0;
+        }
+        int count = 0;
+        for (int i = 0; i < recorded; i++) {
+            if (outcomes[i]) {
+                count++;
+            }
+        }
+        return (double) count / recorded;
+    }
+
+    private void open() {
+        transitionTo(State.OPEN);
+        openedAt = clock.getAsLong();
+        openCount++;
+    }
+
+    private void transitionTo(State newState) {
+        state = newState;
+        epoch++;
+        probeInFlight = false;
+        if (newState == State.CLOSED) {
+            recorded = 0;
+            next = 0;
+        }
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", getState().name());
+        stats.put("failureRate", failureRate());
+        stats.put("slowCallRate", slowCallRate());
+        stats.put("bufferedCalls", recorded);
+        stats.put("openCount", openCount);
+        stats.put("staleOutcomes", staleOutcomes);
+        return stats;
+    }
+
+    /**
+     * 一次调用许可，记录发放时熔断器的状态
+     */
+    public static final class Permission {
+        private final long epoch;
+        private final boolean probe;
+
+        private Permission(long epoch, boolean probe) {
+            this.epoch = epoch;
+            this.probe = probe;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package fridget.fridget.common;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+
+/**
+ * 按键防抖：同一个键在 delayMillis 内的多次提交合并为一次，最后一次提交后安静 delayMillis 才执行。
+ * 合并方式由 merge 决定（参数依次为已有的值和新提交的值）。
+ * action 在调度线程中执行，耗时操作应自行转交给其他线程池。
+ */
+public class Debouncer<K, V> {
+
+    private final ScheduledExecutorService scheduler;
+    private final long delayMillis;
+    private final BinaryOperator<V> merge;
+    private final BiConsumer<K, V> action;
+    private final Map<K, Pending<V>> pending = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    public Debouncer(ScheduledExecutorService scheduler, long delayMillis, BinaryOperator<V> merge,
+                     BiConsumer<K, V> action) {
+        this.scheduler = scheduler;
+        this.delayMillis = delayMillis;
+        this.merge = merge;
+        this.action = action;
+    }
+
+    public void submit(K key, V value) {
+        pending.compute(key, (k, existing) -> {
+            V merged = value;
+            if (existing != null) {
+                existing.future.cancel(false);
+                merged = merge.apply(existing.value, value);
+                coalesced.increment();
+            }
+            Pending<V> next = new Pending<>(merged);
+            next.future = scheduler.schedule(() -> fire(k, next), delayMillis, TimeUnit.MILLISECONDS);
+            return next;
+        });
+    }
+
+    private void fire(K key, Pending<V> scheduled) {
+        // 已被更新的提交取代时不执行
+        if (pending.remove(key, scheduled)) {
+            action.accept(key, scheduled.value);
+        }
+    }
+
+    /**
+     * 等待执行的键数
+     */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 被合并（没有单独执行）的提交次数
+     */
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    private static final class Pending<V> {
+        private final V value;
+        private volatile ScheduledFuture<?> future;
+
+        private Pending(V value) {
+            this.value = value;
+        }
+    }
+}
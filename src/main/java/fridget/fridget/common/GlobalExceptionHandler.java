@@ -1,5 +1,6 @@
 package fridget.fridget.common;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -24,6 +25,17 @@ public class GlobalExceptionHandler {
         );
     }
 
+    @ExceptionHandler(ServiceBusyException.class)
+    public ResponseEntity<CommonResponse> handleServiceBusyException(ServiceBusyException e) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+        return new ResponseEntity<>(
+            new CommonResponse(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage(), null),
+            headers,
+            HttpStatus.SERVICE_UNAVAILABLE
+        );
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<CommonResponse> handleGenericException(Exception e) {
         return new ResponseEntity<>(
@@ -0,0 +1,47 @@
+package fridget.fridget.common;
+
+import java.util.Arrays;
+
+/**
+ * 最近N次调用耗时的滑动窗口，用于计算分位数。
+ * 每次都是秒级的上游调用，窗口只有几百个元素，读取时复制排序即可。
+ */
+public class LatencyWindow {
+
+    private final long[] samples;
+    private int recorded;
+    private int next;
+
+    public LatencyWindow(int size) {
+        this.samples = new long[size];
+    }
+
+    public synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        if (recorded < samples.length) {
+            recorded++;
+        }
+    }
+
+    public synchronized int count() {
+        return recorded;
+    }
+
+    /**
+     * @param quantile 0~1，例如 0.95
+     * @return 窗口为空时返回0
+     */
+    public long percentile(double quantile) {
+        long[] sorted;
+        synchronized (this) {
+            if (recorded == 0) {
+                return 0;
+            }
+            sorted = Arrays.copyOf(samples, recorded);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,51 @@
+package fridget.fridget.common;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+
+/**
+ * 大报文（如Flask响应体）的日志采样和截断。
+ * <p>
+ * 只有调用方的日志级别已开启时才调用 {@link #sample(String)}，按 logging.payload.sample-rate 的比例抽样，
+ * 抽中的报文截断到 logging.payload.max-chars 个字符，避免一次推荐把几十KB的JSON写进日志队列。
+ */
+@Component
+public class PayloadLogSampler {
+
+    private final int maxChars;
+    private final double sampleRate;
+    private final DoubleSupplier random;
+
+    @Autowired
+    public PayloadLogSampler(@Value("${logging.payload.max-chars:2048}") int maxChars,
+                             @Value("${logging.payload.sample-rate:0.1}") double sampleRate) {
+        this(maxChars, sampleRate, () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    PayloadLogSampler(int maxChars, double sampleRate, DoubleSupplier random) {
+        this.maxChars = maxChars;
+        this.sampleRate = sampleRate;
+        this.random = random;
+    }
+
+    /**
+     * @return 截断后的报文，未被抽中时返回null
+     */
+    public String sample(String payload) {
+        if (payload == null || random.getAsDouble() >= sampleRate) {
+            return null;
+        }
+        return abbreviate(payload, maxChars);
+    }
+
+    static String abbreviate(String payload, int maxChars) {
+        if (payload.length() <= maxChars) {
+            return payload;
+        }
+        return payload.substring(0, maxChars) + "...(共" + payload.length() + "字符)";
+    }
+}
@@ -0,0 +1,94 @@
+package fridget.fridget.common;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单个请求（或后台任务）的分阶段耗时，绑定在处理线程上。
+ * <p>
+ * 由 {@link SlowRequestRecorder#begin(String)} 开始、{@link SlowRequestRecorder#finish(RequestTrace)} 结束；
+ * 期间同一线程上的 {@link #stage(String)} 把耗时累加到对应阶段，同时产生 {@link StageEvent}。
+ * 没有绑定请求的线程上调用 stage 只产生JFR事件。
+ */
+public final class RequestTrace {
+
+    private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<>();
+
+    private final String name;
+    private final long startedAtMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    // 阶段名 -> {次数, 纳秒}，只由绑定的线程修改
+    private final Map<String, long[]> stages = new LinkedHashMap<>();
+
+    private RequestTrace(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 当前线程已经绑定请求时返回null（嵌套调用沿用外层请求）
+     */
+    static RequestTrace begin(String name) {
+        if (CURRENT.get() != null) {
+            return null;
+        }
+        RequestTrace trace = new RequestTrace(name);
+        CURRENT.set(trace);
+        return trace;
+    }
+
+    /**
+     * 解除绑定并返回本次请求的耗时明细
+     */
+    SlowRequest end() {
+        CURRENT.remove();
+        long durationNanos = System.nanoTime() - startNanos;
+        List<SlowRequest.StageTiming> timings = new ArrayList<>(stages.size());
+        for (Map.Entry<String, long[]> entry : stages.entrySet()) {
+            timings.add(new SlowRequest.StageTiming(entry.getKey(), entry.getValue()[0],
+                    toMillis(entry.getValue()[1])));
+        }
+        return new SlowRequest(name, startedAtMillis, toMillis(durationNanos), timings);
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+
+    /**
+     * 开始一个阶段，调用 {@link Span#close()} 结束
+     */
+    public static Span stage(String stage) {
+        return new Span(stage);
+    }
+
+    public static final class Span implements AutoCloseable {
+        private final String stage;
+        private final StageEvent event = new StageEvent();
+        private final long startNanos;
+
+        private Span(String stage) {
+            this.stage = stage;
+            event.begin();
+            this.startNanos = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            long nanos = System.nanoTime() - startNanos;
+            RequestTrace trace = CURRENT.get();
+            event.end();
+            if (event.shouldCommit()) {
+                event.stage = stage;
+                event.request = trace == null ? Thread.currentThread().getName() : trace.name;
+                event.commit();
+            }
+            if (trace != null) {
+                long[] totals = trace.stages.computeIfAbsent(stage, key -> new long[2]);
+                totals[0]++;
+                totals[1] += nanos;
+            }
+        }
+    }
+}
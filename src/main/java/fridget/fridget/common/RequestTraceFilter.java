@@ -0,0 +1,36 @@
+package fridget.fridget.common;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 在安全过滤链之前开始记录请求，JWT认证也计入请求的分阶段耗时，见 {@link SlowRequestRecorder}
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestTraceFilter extends OncePerRequestFilter {
+
+    private final SlowRequestRecorder slowRequestRecorder;
+
+    public RequestTraceFilter(SlowRequestRecorder slowRequestRecorder) {
+        this.slowRequestRecorder = slowRequestRecorder;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        RequestTrace trace = slowRequestRecorder.begin(request.getMethod() + " " + request.getRequestURI());
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            slowRequestRecorder.finish(trace);
+        }
+    }
+}
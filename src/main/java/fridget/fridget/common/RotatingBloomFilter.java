@@ -0,0 +1,141 @@
+package fridget.fridget.common;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * 按时间轮换的布隆过滤器，用于只在一段时间内有意义的集合（例如有效期内的已吊销令牌）。
+ * <p>
+ * 内部保留当前和上一代两个过滤器，每隔 rotateMillis 丢弃上一代并新建当前代，
+ * 因此一个元素加入后至少保留 rotateMillis、至多保留 2 * rotateMillis。
+ * 查询只返回"可能存在"或"一定不存在"，写入和查询都不加锁。
+ */
+public class RotatingBloomFilter {
+
+    private final int bitCount;
+    private final int hashCount;
+    private final long rotateMillis;
+    private final LongSupplier clock;
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    /**
+     * @param expectedInsertions 每一代预计写入的元素数
+     * @param falsePositiveRate  达到预计写入数时的误判率
+     */
+    public RotatingBloomFilter(int expectedInsertions, double falsePositiveRate, long rotateMillis) {
+        this(expectedInsertions, falsePositiveRate, rotateMillis, System::currentTimeMillis);
+    }
+
+    RotatingBloomFilter(int expectedInsertions, double falsePositiveRate, long rotateMillis, LongSupplier clock) {
+        int n = Math.max(1, expectedInsertions);
+        long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitCount = (int) Math.max(64, Math.min(bits, Integer.MAX_VALUE - 63));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        this.rotateMillis = rotateMillis;
+        this.clock = clock;
+        long now = clock.getAsLong();
+        this.current = new Generation(bitCount, now);
+        this.previous = new Generation(bitCount, now - rotateMillis);
+    }
+
+    public void add(String value) {
+        rotateIfDue();
+        long hash = hash(value);
+        Generation generation = current;
+        for (int i = 0; i < hashCount; i++) {
+            generation.set(index(hash, i));
+        }
+    }
+
+    /**
+     * @return false 表示一定没有加入过（或已被轮换丢弃），true 表示可能加入过
+     */
+    public boolean mightContain(String value) {
+        rotateIfDue();
+        long hash = hash(value);
+        return contains(current, hash) || contains(previous, hash);
+    }
+
+    private boolean contains(Generation generation, long hash) {
+        for (int i = 0; i < hashCount; i++) {
+            if (!generation.get(index(hash, i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rotateIfDue() {
+        if (clock.getAsLong() - current.createdAtMillis < rotateMillis) {
+            return;
+        }
+        synchronized (this) {
+            long now = clock.getAsLong();
+            if (now - current.createdAtMillis >= rotateMillis) {
+                previous = current;
+                current = new Generation(bitCount, now);
+            }
+        }
+    }
+
+    // 双重哈希：第 i 个位置为 h1 + i * h2
+    private int index(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        int combined = h1 + i * h2;
+        return (combined & Integer.MAX_VALUE) % bitCount;
+    }
+
+    // FNV-1a 64位，再经过 MurmurHash3 的 fmix64 打散
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * 每一代过滤器占用的位数
+     */
+    public int bitCount() {
+        return bitCount;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    private static final class Generation {
+        private final AtomicLongArray words;
+        private final long createdAtMillis;
+
+        private Generation(int bitCount, long createdAtMillis) {
+            this.words = new AtomicLongArray((bitCount + 63) / 64);
+            this.createdAtMillis = createdAtMillis;
+        }
+
+        private void set(int bit) {
+            int word = bit >>> 6;
+            long mask = 1L << bit;
+            long old;
+            do {
+                old = words.get(word);
+                if ((old & mask) != 0) {
+                    return;
+                }
+            } while (!words.compareAndSet(word, old, old | mask));
+        }
+
+        private boolean get(int bit) {
+            return (words.get(bit >>> 6) & (1L << bit)) != 0;
+        }
+    }
+}
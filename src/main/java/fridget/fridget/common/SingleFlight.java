@@ -0,0 +1,72 @@
+package fridget.fridget.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按键合并并发调用：同一个键同时只执行一次loader，其余调用者等待并共享同一个结果或异常。
+ * 调用结束后立即移除，不做结果缓存。
+ */
+public class SingleFlight<K, V> implements StatsSource {
+
+    private final String name;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder sharedCalls = new LongAdder();
+
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    public V execute(K key, Callable<V> loader) throws Exception {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            sharedCalls.increment();
+            return await(existing);
+        }
+
+        executions.increment();
+        try {
+            V value = loader.call();
+            future.complete(value);
+            return value;
+        } catch (Exception | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private V await(CompletableFuture<V> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return name;
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("executions", executions.sum());
+        stats.put("savedCalls", sharedCalls.sum());
+        stats.put("inFlight", inFlight.size());
+        return stats;
+    }
+}
@@ -0,0 +1,26 @@
+package fridget.fridget.common;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 一次请求的总耗时和分阶段耗时（毫秒），见 {@link SlowRequestRecorder}
+ */
+@Getter
+@AllArgsConstructor
+public class SlowRequest {
+    private final String name;
+    private final long startedAt;
+    private final double durationMillis;
+    private final List<StageTiming> stages;
+
+    @Getter
+    @AllArgsConstructor
+    public static class StageTiming {
+        private final String stage;
+        private final long count;
+        private final double millis;
+    }
+}
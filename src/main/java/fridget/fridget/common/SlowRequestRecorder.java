@@ -0,0 +1,160 @@
+package fridget.fridget.common;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * 慢请求记录：保留最近 window-minutes 分钟内最慢的 size 个请求及其分阶段耗时，供 /admin/slow-requests 查看。
+ * <p>
+ * 按分钟分桶组成环形数组，每个桶保留该分钟内最慢的 size 个请求，写入只用CAS，不加锁。
+ * 比桶内最慢的 size 个都快的请求只比较一次就返回，常开的开销很小。
+ */
+@Component
+public class SlowRequestRecorder implements StatsSource {
+
+    private static final long BUCKET_MILLIS = 60_000;
+
+    private final int size;
+    private final int bucketCount;
+    private final LongSupplier clock;
+    private final AtomicReferenceArray<Bucket> buckets;
+    private final LongAdder finished = new LongAdder();
+
+    @Autowired
+    public SlowRequestRecorder(@Value("${trace.slow-requests.size:20}") int size,
+                               @Value("${trace.slow-requests.window-minutes:60}") int windowMinutes) {
+        this(size, windowMinutes, System::currentTimeMillis);
+    }
+
+    SlowRequestRecorder(int size, int windowMinutes, LongSupplier clock) {
+        this.size = size;
+        this.bucketCount = windowMinutes;
+        this.clock = clock;
+        this.buckets = new AtomicReferenceArray<>(windowMinutes);
+    }
+
+    /**
+     * 在当前线程上开始记录一个请求
+     *
+     * @return 当前线程已在记录其他请求时返回null，此时阶段耗时计入外层请求
+     */
+    public RequestTrace begin(String name) {
+        return RequestTrace.begin(name);
+    }
+
+    /**
+     * 结束记录，trace为null时忽略
+     */
+    public void finish(RequestTrace trace) {
+        if (trace != null) {
+            record(trace.end());
+        }
+    }
+
+    void record(SlowRequest request) {
+        finished.increment();
+        long minute = clock.getAsLong() / BUCKET_MILLIS;
+        int index = (int) (minute % bucketCount);
+        Bucket bucket = buckets.get(index);
+        while (bucket == null || bucket.minute < minute) {
+            Bucket fresh = new Bucket(minute, size);
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                bucket = fresh;
+            } else {
+                bucket = buckets.get(index);
+            }
+        }
+        if (bucket.minute == minute) {
+            bucket.offer(request);
+        }
+    }
+
+    /**
+     * @return 时间窗口内最慢的请求，按耗时从高到低
+     */
+    public List<SlowRequest> slowest() {
+        long oldestMinute = clock.getAsLong() / BUCKET_MILLIS - bucketCount + 1;
+        List<SlowRequest> requests = new ArrayList<>();
+        for (int i = 0; i < bucketCount; i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && bucket.minute >= oldestMinute) {
+                bucket.collect(requests);
+            }
+        }
+        return requests.stream()
+                .sorted(Comparator.comparingDouble(SlowRequest::getDurationMillis).reversed())
+                .limit(size)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public String statsName() {
+        return "trace.slow-requests";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        List<SlowRequest> slowest = slowest();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("finished", finished.sum());
+        stats.put("retained", slowest.size());
+        stats.put("slowestMillis", slowest.isEmpty() ? 0 : slowest.get(0).getDurationMillis());
+        return stats;
+    }
+
+    private static final class Bucket {
+        private final long minute;
+        private final AtomicReferenceArray<SlowRequest> slots;
+
+        private Bucket(long minute, int size) {
+            this.minute = minute;
+            this.slots = new AtomicReferenceArray<>(size);
+        }
+
+        // 放入空位，或替换最快的一个；已有的都比它慢时放弃
+        private void offer(SlowRequest request) {
+            while (true) {
+                int victim = -1;
+                SlowRequest fastest = null;
+                for (int i = 0; i < slots.length(); i++) {
+                    SlowRequest current = slots.get(i);
+                    if (current == null) {
+                        victim = i;
+                        fastest = null;
+                        break;
+                    }
+                    if (fastest == null || current.getDurationMillis() < fastest.getDurationMillis()) {
+                        victim = i;
+                        fastest = current;
+                    }
+                }
+                if (fastest != null && fastest.getDurationMillis() >= request.getDurationMillis()) {
+                    return;
+                }
+                if (slots.compareAndSet(victim, fastest, request)) {
+                    return;
+                }
+            }
+        }
+
+        private void collect(List<SlowRequest> into) {
+            for (int i = 0; i < slots.length(); i++) {
+                SlowRequest request = slots.get(i);
+                if (request != null) {
+                    into.add(request);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package fridget.fridget.common;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 请求处理阶段的JFR事件（Mongo、Redis、Flask调用、JWT认证等），由 {@link RequestTrace#stage(String)} 产生。
+ * 没有进行中的JFR录制时不会提交，开销只有创建对象和两次读时钟。
+ * <p>
+ * 录制：jcmd {pid} JFR.start name=fridget settings=profile，在 JDK Mission Control 中按 Fridget 分类查看。
+ */
+@Name("fridget.Stage")
+@Label("Fridget Stage")
+@Category("Fridget")
+@Description("Time spent in one stage of request processing")
+@StackTrace(false)
+class StageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Request")
+    @Description("The request or background task this stage belongs to")
+    String request;
+}
@@ -0,0 +1,37 @@
+package fridget.fridget.common;
+
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@RestController
+public class StatsController {
+    private final List<StatsSource> statsSources;
+    private final SlowRequestRecorder slowRequestRecorder;
+
+    public StatsController(List<StatsSource> statsSources, SlowRequestRecorder slowRequestRecorder) {
+        this.statsSources = statsSources;
+        this.slowRequestRecorder = slowRequestRecorder;
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/admin/stats")
+    public Map<String, Map<String, Object>> findStats() {
+        Map<String, Map<String, Object>> result = new TreeMap<>();
+        for (StatsSource statsSource : statsSources) {
+            result.put(statsSource.statsName(), statsSource.stats());
+        }
+        return result;
+    }
+
+    // 最近一段时间内最慢的请求及其分阶段耗时
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/admin/slow-requests")
+    public List<SlowRequest> findSlowRequests() {
+        return slowRequestRecorder.slowest();
+    }
+}
@@ -0,0 +1,101 @@
+package fridget.fridget.common;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把所有 {@link StatsSource} 的数值统计项注册为Micrometer指标，与 /admin/stats 共用同一份数据，通过 /actuator/prometheus 导出。
+ * <ul>
+ *     <li>指标名为统计项名称（例如 recipe.lock），标签 stat 为统计项中的键（例如 contended）</li>
+ *     <li>值为嵌套Map的统计项（例如按Worker分组的 flask.pool）额外带标签 entry 为外层的键</li>
+ *     <li>布尔值记为1/0，字符串不导出</li>
+ * </ul>
+ * 统计项在启动时确定；一次抓取内多个指标读取同一个统计快照，不会为每个指标重复调用 {@link StatsSource#stats()}。
+ */
+@Component
+public class StatsMetrics {
+    private static final long SNAPSHOT_MILLIS = 1000;
+
+    @Autowired
+    public StatsMetrics(MeterRegistry registry, List<StatsSource> statsSources) {
+        this(registry, statsSources, SNAPSHOT_MILLIS);
+    }
+
+    StatsMetrics(MeterRegistry registry, List<StatsSource> statsSources, long snapshotMillis) {
+        for (StatsSource statsSource : statsSources) {
+            Snapshot snapshot = new Snapshot(statsSource, snapshotMillis);
+            for (Map.Entry<String, Object> entry : statsSource.stats().entrySet()) {
+                if (entry.getValue() instanceof Map) {
+                    for (Object stat : ((Map<?, ?>) entry.getValue()).keySet()) {
+                        register(registry, snapshot, entry.getKey(), String.valueOf(stat));
+                    }
+                } else {
+                    register(registry, snapshot, null, entry.getKey());
+                }
+            }
+        }
+    }
+
+    private static void register(MeterRegistry registry, Snapshot snapshot, String entry, String stat) {
+        Object value = snapshot.lookup(entry, stat);
+        if (!(value instanceof Number) && !(value instanceof Boolean)) {
+            return;
+        }
+        Gauge.Builder<Snapshot> builder = Gauge.builder(snapshot.source.statsName(), snapshot,
+                        current -> current.value(entry, stat))
+                .tag("stat", stat)
+                // 快照只被指标引用，默认的弱引用会让它被回收
+                .strongReference(true);
+        if (entry != null) {
+            builder.tag("entry", entry);
+        }
+        builder.register(registry);
+    }
+
+    private static final class Snapshot {
+        private final StatsSource source;
+        private final long snapshotMillis;
+        private Map<String, Object> stats = Collections.emptyMap();
+        private long takenAt;
+        private boolean taken;
+
+        private Snapshot(StatsSource source, long snapshotMillis) {
+            this.source = source;
+            this.snapshotMillis = snapshotMillis;
+        }
+
+        private synchronized Object lookup(String entry, String stat) {
+            long now = System.currentTimeMillis();
+            if (!taken || now - takenAt >= snapshotMillis) {
+                stats = source.stats();
+                takenAt = now;
+                taken = true;
+            }
+            if (entry == null) {
+                return stats.get(stat);
+            }
+            Object nested = stats.get(entry);
+            return nested instanceof Map ? ((Map<?, ?>) nested).get(stat) : null;
+        }
+
+        /**
+         * @return 数值；布尔值为1/0；缺失或不是数值时为NaN
+         */
+        private double value(String entry, String stat) {
+            Object value = lookup(entry, stat);
+            if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            }
+            if (value instanceof Boolean) {
+                return (Boolean) value ? 1 : 0;
+            }
+            return Double.NaN;
+        }
+    }
+}
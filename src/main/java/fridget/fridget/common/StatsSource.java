@@ -0,0 +1,19 @@
+package fridget.fridget.common;
+
+import java.util.Map;
+
+/**
+ * 运行时统计数据来源，由 StatsController 统一汇总输出
+ */
+public interface StatsSource {
+
+    /**
+     * @return 统计项名称，例如 recipe.singleflight
+     */
+    String statsName();
+
+    /**
+     * @return 当前统计快照，值为数字或字符串
+     */
+    Map<String, Object> stats();
+}
@@ -0,0 +1,17 @@
+package fridget.fridget.common;
+
+/**
+ * 上游服务（Flask）暂时不可用：熔断打开、并发已满、截止时间已到或调用失败。
+ * 作为 {@link ServiceBusyException} 返回503和Retry-After。
+ */
+public class UpstreamUnavailableException extends ServiceBusyException {
+
+    public UpstreamUnavailableException(String message, long retryAfterSeconds) {
+        super(message, retryAfterSeconds);
+    }
+
+    public UpstreamUnavailableException(String message, long retryAfterSeconds, Throwable cause) {
+        super(message, retryAfterSeconds);
+        initCause(cause);
+    }
+}
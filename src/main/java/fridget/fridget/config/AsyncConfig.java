@@ -0,0 +1,68 @@
+package fridget.fridget.config;
+
+import fridget.fridget.common.SingleFlight;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+@EnableScheduling
+public class AsyncConfig {
+
+    // 食谱生成专用的有界线程池，异步任务和SSE推送共用，避免占用Tomcat请求线程
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor recipeExecutor(@Value("${recipe.job.pool-size:8}") int poolSize,
+                                             @Value("${recipe.job.queue-capacity:64}") int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "recipe-worker-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // 冰箱变化后的预生成，线程和队列都很小，满了直接丢弃，不影响用户请求使用的 recipeExecutor
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor recipePrewarmExecutor(@Value("${recipe.prewarm.pool-size:2}") int poolSize,
+                                                    @Value("${recipe.prewarm.queue-capacity:32}") int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "recipe-prewarm-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // 密码哈希（BCrypt）专用，限制登录/注册高峰占用的CPU核心数，队列满时直接拒绝
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor passwordHashExecutor(@Value("${password.hash.pool-size:2}") int poolSize,
+                                                   @Value("${password.hash.queue-capacity:16}") int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // 按缓存键合并同一时刻的缓存未命中，每个节点每个键只调用一次Flask
+    @Bean
+    public SingleFlight<String, String> recipeGenerationFlight() {
+        return new SingleFlight<>("recipe.singleflight");
+    }
+}
@@ -2,6 +2,8 @@ package fridget.fridget.config;
 
 import fridget.fridget.securities.JwtAuthFilter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
@@ -12,16 +14,20 @@ import org.springframework.security.crypto.factory.PasswordEncoderFactories;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 
 @Configuration
 @EnableWebSecurity
 @EnableGlobalMethodSecurity(prePostEnabled = true)
 public class SecurityConfig {
     private final JwtAuthFilter jwtAuthFilter;
+    private final int managementPort;
 
     @Autowired
-    public SecurityConfig(JwtAuthFilter jwtAuthFilter) {
+    public SecurityConfig(JwtAuthFilter jwtAuthFilter, @Value("${management.server.port:-1}") int managementPort) {
         this.jwtAuthFilter = jwtAuthFilter;
+        this.managementPort = managementPort;
     }
 
     @Bean
@@ -29,6 +35,14 @@ public class SecurityConfig {
         return PasswordEncoderFactories.createDelegatingPasswordEncoder();
     }
 
+    // JwtAuthFilter 是 @Component，Spring Boot 默认会把它再注册为普通Servlet过滤器，这里禁用，只在安全过滤链中执行
+    @Bean
+    public FilterRegistrationBean<JwtAuthFilter> jwtAuthFilterRegistration() {
+        FilterRegistrationBean<JwtAuthFilter> registration = new FilterRegistrationBean<>(jwtAuthFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity httpSecurity) throws Exception {
         return httpSecurity
@@ -36,8 +50,12 @@ public class SecurityConfig {
                 .cors().and()
                 .httpBasic().disable()
                 .authorizeRequests()
-                .antMatchers( "/user/create", "/doLogin", "/api/generate-recipes") // , "/recipe/recommend/test"
+                .antMatchers(JwtAuthFilter.PUBLIC_PATHS) // , "/recipe/recommend/test"
                 .permitAll()
+                .requestMatchers(prometheusScrape())
+                .permitAll()
+                // 其余Actuator端点（如 /actuator/loggers 运行时调整日志级别）只对管理员开放
+                .antMatchers("/actuator/**").hasRole("ADMIN")
                 .anyRequest().authenticated()
                 .and()
                 .sessionManagement()
@@ -46,4 +64,14 @@ public class SecurityConfig {
                 .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
                 .build();
     }
+
+    /**
+     * Prometheus 抓取不带令牌，只在单独的管理端口（management.server.port，默认只监听本机）上免登录；
+     * 未配置管理端口时 /actuator/prometheus 与其余Actuator端点一样需要ADMIN，指标中的Worker地址等内部信息不会公开
+     */
+    private RequestMatcher prometheusScrape() {
+        AntPathRequestMatcher prometheus = new AntPathRequestMatcher("/actuator/prometheus");
+        return request -> managementPort > 0 && request.getLocalPort() == managementPort
+                && prometheus.matches(request);
+    }
 }
@@ -0,0 +1,22 @@
+package fridget.fridget.ingredient;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 用户冰箱食材变化（添加或删除）后发布，携带变化前后的食材名称
+ */
+@Getter
+public class FridgeChangedEvent {
+
+    private final String userId;
+    private final List<String> previousIngredients;
+    private final List<String> currentIngredients;
+
+    public FridgeChangedEvent(String userId, List<String> previousIngredients, List<String> currentIngredients) {
+        this.userId = userId;
+        this.previousIngredients = previousIngredients;
+        this.currentIngredients = currentIngredients;
+    }
+}
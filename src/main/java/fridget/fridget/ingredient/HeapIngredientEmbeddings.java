@@ -0,0 +1,171 @@
+package fridget.fridget.ingredient;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 从文本向量文件加载的堆内词向量，文件由 flask/export_ingredient_vectors.py 导出。
+ * <p>
+ * 文件格式与word2vec文本格式相同：可选的首行 "词数 维度"，之后每行 "词 v1 v2 ..."，词中的空格写作下划线。
+ * 加载时把每个向量归一化为单位长度并连续存放在一个float数组中，余弦相似度即点积。
+ * <p>
+ * ingredient.embeddings-location 为空（默认）时不加载词向量，按偏好排序仍由Flask完成（见 RecipePreferenceScorer#isEnabled）；
+ * 配置了位置但文件不存在时启动失败，而不是悄悄关闭偏好打分。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "ingredient.embeddings-format", havingValue = "text", matchIfMissing = true)
+public class HeapIngredientEmbeddings implements IngredientEmbeddings {
+
+    private final Map<String, Integer> ids;
+    private final float[] vectors;
+    private final int dimension;
+
+    @Autowired
+    public HeapIngredientEmbeddings(@Value("${ingredient.embeddings-location:}") String location,
+                                    ResourceLoader resourceLoader) throws IOException {
+        this(read(location, resourceLoader));
+    }
+
+    private HeapIngredientEmbeddings(Loaded loaded) {
+        this.ids = loaded.ids;
+        this.vectors = loaded.vectors;
+        this.dimension = loaded.dimension;
+    }
+
+    /**
+     * 从文本向量流加载
+     */
+    public static HeapIngredientEmbeddings load(InputStream in) throws IOException {
+        return new HeapIngredientEmbeddings(parse(in));
+    }
+
+    private static Loaded read(String location, ResourceLoader resourceLoader) throws IOException {
+        if (location == null || location.trim().isEmpty()) {
+            log.info("未配置食材词向量（ingredient.embeddings-location），按偏好排序由Flask完成");
+            return new Loaded(new HashMap<>(), new float[0], 0);
+        }
+        Resource vectorsResource = resourceLoader.getResource(location.trim());
+        if (!vectorsResource.exists()) {
+            throw new FileNotFoundException("Ingredient vector file not found: " + location
+                    + " (leave ingredient.embeddings-location empty to disable embeddings)");
+        }
+        try (InputStream in = vectorsResource.getInputStream()) {
+            Loaded loaded = parse(in);
+            log.info("食材词向量加载完成: {} 个词, {} 维", loaded.ids.size(), loaded.dimension);
+            return loaded;
+        }
+    }
+
+    private static Loaded parse(InputStream in) throws IOException {
+        Map<String, Integer> ids = new HashMap<>();
+        List<float[]> rows = new ArrayList<>();
+        int dimension = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.trim().split(" ");
+                if (parts.length < 3) {
+                    // 首行 "词数 维度" 或空行
+                    continue;
+                }
+                if (dimension == 0) {
+                    dimension = parts.length - 1;
+                } else if (parts.length - 1 != dimension) {
+                    throw new IOException("Inconsistent vector dimension for word: " + parts[0]);
+                }
+                String word = parts[0].replace('_', ' ').toLowerCase(Locale.ROOT);
+                if (ids.containsKey(word)) {
+                    continue;
+                }
+                float[] row = new float[dimension];
+                double norm = 0;
+                for (int i = 0; i < dimension; i++) {
+                    row[i] = Float.parseFloat(parts[i + 1]);
+                    norm += row[i] * row[i];
+                }
+                if (norm == 0) {
+                    continue;
+                }
+                float scale = (float) (1 / Math.sqrt(norm));
+                for (int i = 0; i < dimension; i++) {
+                    row[i] *= scale;
+                }
+                ids.put(word, rows.size());
+                rows.add(row);
+            }
+        }
+        float[] vectors = new float[rows.size() * dimension];
+        for (int i = 0; i < rows.size(); i++) {
+            System.arraycopy(rows.get(i), 0, vectors, i * dimension, dimension);
+        }
+        return new Loaded(ids, vectors, dimension);
+    }
+
+    // 供 MappedIngredientEmbeddings 转换为二进制格式
+    Map<String, Integer> ids() {
+        return ids;
+    }
+
+    float[] vectors() {
+        return vectors;
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public int size() {
+        return ids.size();
+    }
+
+    @Override
+    public int idOf(String word) {
+        return ids.getOrDefault(word, UNKNOWN);
+    }
+
+    @Override
+    public double cosine(int a, int b) {
+        if (a == UNKNOWN || b == UNKNOWN) {
+            return 0;
+        }
+        int offsetA = a * dimension;
+        int offsetB = b * dimension;
+        float dot = 0;
+        for (int i = 0; i < dimension; i++) {
+            dot += vectors[offsetA + i] * vectors[offsetB + i];
+        }
+        return dot;
+    }
+
+    private static class Loaded {
+        private final Map<String, Integer> ids;
+        private final float[] vectors;
+        private final int dimension;
+
+        Loaded(Map<String, Integer> ids, float[] vectors, int dimension) {
+            this.ids = ids;
+            this.vectors = vectors;
+            this.dimension = dimension;
+        }
+    }
+}
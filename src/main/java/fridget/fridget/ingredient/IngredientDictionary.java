@@ -0,0 +1,58 @@
+package fridget.fridget.ingredient;
+
+import org.springframework.stereotype.Component;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 全局食材字典：把规范名称映射为从0开始的连续整数ID，用于把冰箱和食谱编码成位图。
+ * <p>
+ * ID只在本进程内有效，不持久化也不跨节点传递。只有食谱中的食材会分配ID，字典大小受食谱语料限制；
+ * 冰箱（用户输入）中没有出现在任何食谱里的名称编码时直接忽略，不会让字典随用户输入无限增长。
+ * 因此冰箱位图必须在要比较的食谱编码之后再编码（见 {@link fridget.fridget.recipe.RecipeIngredientMatcher#matchAll}）。
+ */
+@Component
+public class IngredientDictionary {
+
+    public static final int UNKNOWN = -1;
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * 获取食谱食材规范名称的ID，不存在时分配新ID。只能用于食谱，不能用于用户输入
+     */
+    public int idOf(String canonicalName) {
+        return ids.computeIfAbsent(canonicalName, name -> nextId.getAndIncrement());
+    }
+
+    /**
+     * 查找规范名称的ID
+     *
+     * @return ID，未分配时返回 {@link #UNKNOWN}
+     */
+    public int find(String canonicalName) {
+        return ids.getOrDefault(canonicalName, UNKNOWN);
+    }
+
+    /**
+     * 把一组规范名称编码为位图，未分配ID的名称（没有出现在任何食谱中）不编码
+     */
+    public BitSet encode(Collection<String> canonicalNames) {
+        BitSet bits = new BitSet(nextId.get());
+        for (String name : canonicalNames) {
+            int id = find(name);
+            if (id != UNKNOWN) {
+                bits.set(id);
+            }
+        }
+        return bits;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,32 @@
+package fridget.fridget.ingredient;
+
+/**
+ * 食材词向量。向量按ID访问，相似度计算不创建对象，适合在每个请求中大量调用。
+ */
+public interface IngredientEmbeddings {
+
+    int UNKNOWN = -1;
+
+    /**
+     * 向量维度，没有加载任何向量时为0
+     */
+    int dimension();
+
+    /**
+     * 已加载的词数量
+     */
+    int size();
+
+    /**
+     * 查找词对应的向量ID
+     *
+     * @param word 词（小写），例如食材名称或 "meat" 这样的类别词
+     * @return 向量ID，没有向量时返回 {@link #UNKNOWN}
+     */
+    int idOf(String word);
+
+    /**
+     * 两个向量的余弦相似度，任一ID为 {@link #UNKNOWN} 时返回0
+     */
+    double cosine(int a, int b);
+}
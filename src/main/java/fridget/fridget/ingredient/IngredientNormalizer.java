@@ -0,0 +1,141 @@
+package fridget.fridget.ingredient;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * 食材名称规范化：Unicode NFKC、大小写折叠、去除首尾及多余空白、英文复数还原，最后按同义词词典映射到规范名称。
+ * 例如 "Tomatoes "、"tomato"、"西红柿" 都会映射为 "番茄"。
+ * 缓存键生成和缺失食材匹配都使用规范名称。
+ */
+@Component
+public class IngredientNormalizer {
+
+    private final Map<String, String> synonyms;
+
+    @Autowired
+    public IngredientNormalizer(@Value("${ingredient.synonyms-location:classpath:ingredient-synonyms.txt}")
+                                        Resource synonymsResource) throws IOException {
+        this(synonymsResource.exists() ? loadSynonyms(synonymsResource.getInputStream()) : Collections.emptyMap());
+    }
+
+    /**
+     * @param synonyms 同义词（已折叠）到规范名称的映射
+     */
+    public IngredientNormalizer(Map<String, String> synonyms) {
+        this.synonyms = synonyms;
+    }
+
+    /**
+     * 将单个食材名称转换为规范名称
+     */
+    public String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        String folded = fold(name);
+        String canonical = synonyms.get(folded);
+        if (canonical != null) {
+            return canonical;
+        }
+        String singular = singularize(folded);
+        return synonyms.getOrDefault(singular, singular);
+    }
+
+    /**
+     * 将一组食材名称转换为去重、排序后的规范名称集合
+     */
+    public SortedSet<String> normalizeAll(Collection<String> names) {
+        SortedSet<String> canonicalNames = new TreeSet<>();
+        for (String name : names) {
+            String canonical = normalize(name);
+            if (!canonical.isEmpty()) {
+                canonicalNames.add(canonical);
+            }
+        }
+        return canonicalNames;
+    }
+
+    /**
+     * 读取同义词词典，每行格式为 "规范名称 = 同义词1, 同义词2"，# 开头为注释
+     */
+    public static Map<String, String> loadSynonyms(InputStream in) throws IOException {
+        Map<String, String> synonyms = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                int separator = line.indexOf('=');
+                if (line.isEmpty() || line.startsWith("#") || separator < 0) {
+                    continue;
+                }
+                String canonical = fold(line.substring(0, separator));
+                synonyms.put(canonical, canonical);
+                for (String synonym : line.substring(separator + 1).split(",")) {
+                    String folded = fold(synonym);
+                    if (!folded.isEmpty()) {
+                        synonyms.put(folded, canonical);
+                        synonyms.put(singularize(folded), canonical);
+                    }
+                }
+            }
+        }
+        return synonyms;
+    }
+
+    /**
+     * NFKC规范化（全角转半角等）、大小写折叠，并合并空白
+     */
+    static String fold(String name) {
+        String normalized = Normalizer.normalize(name, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT).trim();
+        return normalized.replaceAll("\\s+", " ");
+    }
+
+    /**
+     * 英文复数还原，只处理最后一个单词，例如 "cherry tomatoes" -> "cherry tomato"
+     */
+    static String singularize(String name) {
+        int lastSpace = name.lastIndexOf(' ');
+        String head = name.substring(0, lastSpace + 1);
+        String word = name.substring(lastSpace + 1);
+        if (word.length() <= 3 || !isAsciiLetters(word)) {
+            return name;
+        }
+        if (word.endsWith("ies")) {
+            return head + word.substring(0, word.length() - 3) + "y";
+        }
+        if (word.endsWith("oes") || word.endsWith("ches") || word.endsWith("shes") || word.endsWith("xes")) {
+            return head + word.substring(0, word.length() - 2);
+        }
+        if (word.endsWith("s") && !word.endsWith("ss") && !word.endsWith("us") && !word.endsWith("is")) {
+            return head + word.substring(0, word.length() - 1);
+        }
+        return name;
+    }
+
+    private static boolean isAsciiLetters(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c < 'a' || c > 'z') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,77 +1,144 @@
 package fridget.fridget.ingredient;
 
 import fridget.fridget.common.EntityNotFoundException;
+import fridget.fridget.common.RequestTrace;
 import fridget.fridget.ingredient.dto.IngredientsReqDto;
 import fridget.fridget.ingredient.dto.CookingPreferenceReqDto;
 import fridget.fridget.user.User;
-import fridget.fridget.user.UserRepository;
+import fridget.fridget.user.UserContext;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.RequestBody;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class IngredientService {
-    private final UserRepository userRepository;
-    private final UserIngredientRepository userIngredientRepository;
+    private final UserContext userContext;
     private final UserCookingPreferenceRepository cookingPreferenceRepository;
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public IngredientService(UserRepository userRepository,
-                             UserIngredientRepository userIngredientRepository,
-                             UserCookingPreferenceRepository cookingPreferenceRepository) {
-        this.userRepository = userRepository;
-        this.userIngredientRepository = userIngredientRepository;
+    private static final String INGREDIENTS_FIELD = "userIngredients";
+
+    public IngredientService(UserContext userContext,
+                             UserCookingPreferenceRepository cookingPreferenceRepository,
+                             MongoTemplate mongoTemplate,
+                             ApplicationEventPublisher eventPublisher) {
+        this.userContext = userContext;
         this.cookingPreferenceRepository = cookingPreferenceRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
     }
 
     public List<UserIngredient> findMyIngredients() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String userId = authentication.getName();
-        User user = userRepository.findByUserId(userId).orElseThrow(() -> new EntityNotFoundException(
-                "There's no such user."));
-        return user.getUserIngredients();
+        return findIngredientsByUserId(authentication.getName());
+    }
+
+    // 按用户ID获取食材，供没有安全上下文的后台线程使用
+    public List<UserIngredient> findIngredientsByUserId(String userId) {
+        return userContext.get(userId).getUserIngredients();
     }
 
     public List<UserIngredient> createIngredients(@RequestBody List<IngredientsReqDto> ingredientsReqDtos) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String userId = authentication.getName();
-        User user = userRepository.findByUserId(userId).orElseThrow(() -> new EntityNotFoundException(
-                "There's no such user."));
+        return addIngredients(authentication.getName(), ingredientsReqDtos);
+    }
+
+    /**
+     * 一次原子更新（$push $each）添加食材，并发添加不会丢失。
+     * findAndModify 返回更新前的文档，追加的新食材就在末尾，因此同一次往返即可得到更新后的列表。
+     */
+    List<UserIngredient> addIngredients(String userId, List<IngredientsReqDto> ingredientsReqDtos) {
         List<UserIngredient> newIngredients = ingredientsReqDtos.stream()
                 .map(UserIngredient::toEntity)
-                .map(userIngredientRepository::save)
                 .collect(Collectors.toList());
-        user.getUserIngredients().addAll(newIngredients);
-        userRepository.save(user);
-        return user.getUserIngredients();
+        Update update = new Update().push(INGREDIENTS_FIELD).each(newIngredients.toArray());
+        User before;
+        try (RequestTrace.Span span = RequestTrace.stage("ingredient_add")) {
+            before = mongoTemplate.findAndModify(byUserId(userId), update, User.class);
+        }
+        if (before == null) {
+            throw new EntityNotFoundException("There's no such user.");
+        }
+        userContext.invalidate(userId);
+        List<UserIngredient> userIngredients = new ArrayList<>(before.getUserIngredients());
+        userIngredients.addAll(newIngredients);
+        eventPublisher.publishEvent(
+                new FridgeChangedEvent(userId, namesOf(before.getUserIngredients()), namesOf(userIngredients)));
+        return userIngredients;
     }
 
     public List<UserIngredient> deleteIngredients(List<IngredientsReqDto> ingredientsReqDtos) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String userId = authentication.getName();
-        User user = userRepository.findByUserId(userId).orElseThrow(() -> new EntityNotFoundException(
-                "There's no such user."));
-        List<UserIngredient> userIngredients = user.getUserIngredients();
-        List<UserIngredient> ingredientsToRemove = userIngredients.stream()
-                .filter(ingredient -> ingredientsReqDtos.stream()
-                        .anyMatch(dto -> dto.getName().equals(ingredient.getName())
-                                && dto.getCategory().equals(ingredient.getCategory())))
-                .collect(Collectors.toList());
+        return removeIngredients(authentication.getName(), ingredientsReqDtos);
+    }
+
+    /**
+     * 一次原子更新（$pull）删除名称和分类都匹配的食材，返回被删除的食材。
+     * 被删除的食材由更新前的文档按同一条件算出，与服务端实际删除的一致。
+     */
+    List<UserIngredient> removeIngredients(String userId, List<IngredientsReqDto> ingredientsReqDtos) {
+        Set<List<String>> keys = new HashSet<>();
+        List<Criteria> matches = new ArrayList<>();
+        for (IngredientsReqDto dto : ingredientsReqDtos) {
+            if (keys.add(Arrays.asList(dto.getName(), dto.getCategory()))) {
+                matches.add(Criteria.where("name").is(dto.getName()).and("category").is(dto.getCategory()));
+            }
+        }
+        if (matches.isEmpty()) {
+            throw new EntityNotFoundException("No matching ingredients found for deletion!");
+        }
+        Update update = new Update().pull(INGREDIENTS_FIELD,
+                Query.query(new Criteria().orOperator(matches.toArray(new Criteria[0]))));
+        User before;
+        try (RequestTrace.Span span = RequestTrace.stage("ingredient_remove")) {
+            before = mongoTemplate.findAndModify(byUserId(userId), update, User.class);
+        }
+        if (before == null) {
+            throw new EntityNotFoundException("There's no such user.");
+        }
+        userContext.invalidate(userId);
+        List<UserIngredient> ingredientsToRemove = new ArrayList<>();
+        List<UserIngredient> userIngredients = new ArrayList<>();
+        for (UserIngredient ingredient : before.getUserIngredients()) {
+            if (keys.contains(Arrays.asList(ingredient.getName(), ingredient.getCategory()))) {
+                ingredientsToRemove.add(ingredient);
+            } else {
+                userIngredients.add(ingredient);
+            }
+        }
         if (ingredientsToRemove.isEmpty()) {
             throw new EntityNotFoundException("No matching ingredients found for deletion!");
         }
-        userIngredients.removeAll(ingredientsToRemove);
-        userIngredientRepository.deleteAll(ingredientsToRemove);
-        userRepository.save(user);
+        eventPublisher.publishEvent(
+                new FridgeChangedEvent(userId, namesOf(before.getUserIngredients()), namesOf(userIngredients)));
         return ingredientsToRemove;
     }
 
+    private static Query byUserId(String userId) {
+        return Query.query(Criteria.where("userId").is(userId));
+    }
+
+    private static List<String> namesOf(List<UserIngredient> ingredients) {
+        return ingredients.stream().map(UserIngredient::getName).collect(Collectors.toList());
+    }
+
     // 获取用户烹饪偏好
     public UserCookingPreference getMyCookingPreference() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -86,8 +153,7 @@ public class IngredientService {
         String userId = authentication.getName();
         
         // 检查用户是否存在
-        userRepository.findByUserId(userId).orElseThrow(() -> new EntityNotFoundException(
-                "There's no such user."));
+        userContext.get(userId);
         
         // 查找现有偏好设置
         Optional<UserCookingPreference> existingPreference = cookingPreferenceRepository.findByUserId(userId);
@@ -0,0 +1,175 @@
+package fridget.fridget.ingredient;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 内存映射的二进制词向量，向量数据不占用堆内存，由操作系统页缓存按需加载，多个进程可以共享。
+ * <p>
+ * 文件格式（小端序）：
+ * <pre>
+ * int magic "FIVE" | int version | int 词数 | int 维度
+ * 词表：每个词 int 字节数 + UTF-8字节，按ID顺序，末尾补齐到4字节
+ * 向量：词数 × 维度 个float32，已归一化为单位长度
+ * </pre>
+ * 只有词表在启动时读入堆中的HashMap；余弦相似度直接在映射的 {@link FloatBuffer} 上按绝对位置计算点积，不创建对象。
+ * 文本向量文件用 {@link #main} 转换：./gradlew convertIngredientVectors -Pinput=vectors.txt -Poutput=vectors.bin
+ * <p>
+ * 与文本格式共用 ingredient.embeddings-location，但必须是文件系统中的文件（例如 file:/data/vectors.bin），
+ * classpath中打包在jar里的资源无法映射。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "ingredient.embeddings-format", havingValue = "binary")
+public class MappedIngredientEmbeddings implements IngredientEmbeddings {
+
+    static final int MAGIC = 0x46495645;
+    static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+
+    private final Map<String, Integer> ids;
+    private final FloatBuffer vectors;
+    private final int dimension;
+
+    @Autowired
+    public MappedIngredientEmbeddings(@Value("${ingredient.embeddings-location:}") String location,
+                                      ResourceLoader resourceLoader) throws IOException {
+        this(resolve(location, resourceLoader));
+    }
+
+    public MappedIngredientEmbeddings(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // 映射在channel关闭后仍然有效
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not an ingredient vector file: " + file);
+        }
+        int count = buffer.getInt();
+        this.dimension = buffer.getInt();
+
+        this.ids = new HashMap<>(count * 2);
+        for (int id = 0; id < count; id++) {
+            byte[] word = new byte[buffer.getInt()];
+            buffer.get(word);
+            ids.put(new String(word, StandardCharsets.UTF_8), id);
+        }
+        buffer.position(align(buffer.position()));
+        if (buffer.remaining() < (long) count * dimension * Float.BYTES) {
+            throw new IOException("Truncated ingredient vector file: " + file);
+        }
+        this.vectors = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        log.info("食材词向量映射完成: {} 个词, {} 维, {}", count, dimension, file);
+    }
+
+    private static Path resolve(String location, ResourceLoader resourceLoader) throws IOException {
+        if (location == null || location.trim().isEmpty()) {
+            throw new IOException("ingredient.embeddings-location is required when ingredient.embeddings-format=binary");
+        }
+        return resourceLoader.getResource(location.trim()).getFile().toPath();
+    }
+
+    /**
+     * 把文本向量（word2vec文本格式）转换为本类使用的二进制格式
+     */
+    public static void convert(InputStream text, OutputStream binary) throws IOException {
+        HeapIngredientEmbeddings source = HeapIngredientEmbeddings.load(text);
+        String[] words = new String[source.size()];
+        for (Map.Entry<String, Integer> entry : source.ids().entrySet()) {
+            words[entry.getValue()] = entry.getKey();
+        }
+
+        OutputStream out = new BufferedOutputStream(binary);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(words.length).putInt(source.dimension());
+        out.write(header.array());
+        int position = HEADER_BYTES;
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (String word : words) {
+            byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+            length.clear();
+            out.write(length.putInt(bytes.length).array());
+            out.write(bytes);
+            position += Integer.BYTES + bytes.length;
+        }
+        out.write(new byte[align(position) - position]);
+
+        float[] vectors = source.vectors();
+        ByteBuffer vectorBytes = ByteBuffer.allocate(vectors.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        vectorBytes.asFloatBuffer().put(vectors);
+        out.write(vectorBytes.array());
+        out.flush();
+    }
+
+    private static int align(int position) {
+        return (position + Float.BYTES - 1) & -Float.BYTES;
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public int size() {
+        return ids.size();
+    }
+
+    @Override
+    public int idOf(String word) {
+        return ids.getOrDefault(word, UNKNOWN);
+    }
+
+    @Override
+    public double cosine(int a, int b) {
+        if (a == UNKNOWN || b == UNKNOWN) {
+            return 0;
+        }
+        int offsetA = a * dimension;
+        int offsetB = b * dimension;
+        float dot = 0;
+        for (int i = 0; i < dimension; i++) {
+            dot += vectors.get(offsetA + i) * vectors.get(offsetB + i);
+        }
+        return dot;
+    }
+
+    /**
+     * 转换工具：MappedIngredientEmbeddings &lt;文本向量文件&gt; &lt;输出二进制文件&gt;
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("用法: MappedIngredientEmbeddings <文本向量文件> <输出二进制文件>");
+            System.exit(1);
+        }
+        try (InputStream in = Files.newInputStream(Paths.get(args[0]));
+             OutputStream out = Files.newOutputStream(Paths.get(args[1]))) {
+            convert(in, out);
+        }
+        MappedIngredientEmbeddings converted = new MappedIngredientEmbeddings(Paths.get(args[1]));
+        System.out.println("转换完成: " + converted.size() + " 个词, " + converted.dimension() + " 维 -> " + args[1]);
+    }
+}
@@ -5,15 +5,16 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.bson.types.ObjectId;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.mapping.Document;
-
 
+/**
+ * 冰箱中的一个食材，内嵌在 User 文档的 userIngredients 数组中
+ */
 @Data
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
-@Document(collection = "UserIngredient")
 public class UserIngredient {
     @Id
     private String id;
@@ -22,7 +23,9 @@ public class UserIngredient {
 
     public static UserIngredient toEntity(IngredientsReqDto ingredientsReqDto) {
         UserIngredientBuilder ingredientBuilder = UserIngredient.builder();
-        ingredientBuilder.name(ingredientsReqDto.getName())
+        // 内嵌文档不会自动生成ID，这里生成以保持接口返回的id字段
+        ingredientBuilder.id(new ObjectId().toHexString())
+                .name(ingredientsReqDto.getName())
                 .category(ingredientsReqDto.getCategory());
         return ingredientBuilder.build();
     }
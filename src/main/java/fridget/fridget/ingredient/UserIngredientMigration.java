@@ -0,0 +1,150 @@
+package fridget.fridget.ingredient;
+
+import com.mongodb.DBRef;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.result.UpdateResult;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一次性迁移：User.userIngredients 从 DBRef 列表改为内嵌文档。
+ * <p>
+ * 启动时找出仍包含 DBRef 的用户，一次 $in 查询取回引用的 UserIngredient 文档，
+ * 改写为内嵌的 {_id, name, category} 后删除这些 UserIngredient 文档；集合清空后删除集合。
+ * <p>
+ * 每个节点启动时都会执行：改写以数组仍等于读取时的内容为条件，条件不成立（其他节点已迁移或食材被并发修改）时
+ * 重新读取后重试，只有改写成功后才删除引用的 UserIngredient 文档。
+ * 已迁移的用户会被跳过，可以重复执行。由 migration.embed-user-ingredients.enabled 控制。
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class UserIngredientMigration implements CommandLineRunner {
+
+    private static final String USER_COLLECTION = "User";
+    private static final String INGREDIENT_COLLECTION = "UserIngredient";
+    private static final String FIELD = "userIngredients";
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+
+    public UserIngredientMigration(MongoTemplate mongoTemplate,
+                                   @Value("${migration.embed-user-ingredients.enabled:true}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void run(String... args) {
+        if (!enabled || !mongoTemplate.collectionExists(INGREDIENT_COLLECTION)) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        MongoCollection<Document> users = mongoTemplate.getCollection(USER_COLLECTION);
+        MongoCollection<Document> ingredients = mongoTemplate.getCollection(INGREDIENT_COLLECTION);
+        int migratedUsers = 0;
+        int migratedIngredients = 0;
+        int danglingRefs = 0;
+        int conflicts = 0;
+        for (Document user : users.find(Filters.exists(FIELD + ".0")).projection(Projections.include(FIELD))) {
+            Object userId = user.get("_id");
+            List<Object> elements = user.getList(FIELD, Object.class);
+            for (int attempt = 1; elements != null && !refIds(elements).isEmpty(); attempt++) {
+                Embedded result = embed(ingredients, elements);
+                // 只在数组仍是读取时的内容时写入；其他节点的迁移或并发的食材增删会使条件不成立
+                UpdateResult update = users.updateOne(
+                        Filters.and(Filters.eq("_id", userId), Filters.eq(FIELD, elements)),
+                        Updates.set(FIELD, result.documents));
+                if (update.getMatchedCount() > 0) {
+                    // 用户文档已不再引用这些食材，此时删除才不会丢数据
+                    ingredients.deleteMany(Filters.in("_id", result.ids));
+                    migratedUsers++;
+                    migratedIngredients += result.documents.size();
+                    danglingRefs += result.dangling;
+                    break;
+                }
+                if (attempt == MAX_ATTEMPTS) {
+                    conflicts++;
+                    log.warn("用户 {} 的食材在迁移期间持续变化，跳过，下次启动时重试", userId);
+                    break;
+                }
+                Document current = users.find(Filters.eq("_id", userId)).projection(Projections.include(FIELD)).first();
+                elements = current == null ? null : current.getList(FIELD, Object.class);
+            }
+        }
+
+        if (ingredients.countDocuments() == 0) {
+            ingredients.drop();
+        }
+        if (migratedUsers > 0 || conflicts > 0) {
+            log.info("UserIngredient迁移为内嵌文档: 用户 {} 个, 食材 {} 个, 丢弃失效引用 {} 个, 冲突跳过 {} 个, 耗时 {} ms",
+                    migratedUsers, migratedIngredients, danglingRefs, conflicts, System.currentTimeMillis() - start);
+        }
+    }
+
+    private static List<Object> refIds(List<Object> elements) {
+        List<Object> ids = new ArrayList<>();
+        for (Object element : elements) {
+            if (element instanceof DBRef) {
+                ids.add(((DBRef) element).getId());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 一次 $in 查询取回引用的食材，把DBRef改写为内嵌的 {_id, name, category}，已内嵌的元素原样保留
+     */
+    private static Embedded embed(MongoCollection<Document> ingredients, List<Object> elements) {
+        List<Object> ids = refIds(elements);
+        Map<Object, Document> referenced = new HashMap<>();
+        for (Document ingredient : ingredients.find(Filters.in("_id", ids))) {
+            referenced.put(ingredient.get("_id"), ingredient);
+        }
+        List<Document> documents = new ArrayList<>(elements.size());
+        int dangling = 0;
+        for (Object element : elements) {
+            if (!(element instanceof DBRef)) {
+                documents.add((Document) element);
+                continue;
+            }
+            Document ingredient = referenced.get(((DBRef) element).getId());
+            if (ingredient == null) {
+                // 引用的食材已不存在，迁移时丢弃
+                dangling++;
+                continue;
+            }
+            documents.add(new Document("_id", ingredient.get("_id"))
+                    .append("name", ingredient.get("name"))
+                    .append("category", ingredient.get("category")));
+        }
+        return new Embedded(ids, documents, dangling);
+    }
+
+    private static final class Embedded {
+        private final List<Object> ids;
+        private final List<Document> documents;
+        private final int dangling;
+
+        private Embedded(List<Object> ids, List<Document> documents, int dangling) {
+            this.ids = ids;
+            this.documents = documents;
+            this.dangling = dangling;
+        }
+    }
+}
@@ -1,9 +0,0 @@
-package fridget.fridget.ingredient;
-
-import org.springframework.data.mongodb.repository.MongoRepository;
-import org.springframework.stereotype.Repository;
-
-@Repository
-public interface UserIngredientRepository extends MongoRepository<UserIngredient, String>  {
-
-}
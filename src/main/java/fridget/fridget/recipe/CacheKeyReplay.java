@@ -0,0 +1,104 @@
+package fridget.fridget.recipe;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fridget.fridget.ingredient.IngredientNormalizer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 离线工具：回放历史请求的冰箱食材，比较规范化前后的缓存命中率。
+ * <p>
+ * 输入文件每行一次请求的食材列表，支持JSON数组（["番茄","鸡蛋"]）或日志中 List.toString 的格式
+ * （🥬 사용자 재료: [番茄, 鸡蛋]），行内 [ 之前的内容会被忽略。
+ * 假设缓存容量不限且不过期，结果是命中率的上限。
+ * <pre>
+ * ./gradlew replayCacheKeys -Pfridges=fridges.log [-Psynonyms=ingredient-synonyms.txt]
+ * </pre>
+ */
+public class CacheKeyReplay {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("用法: CacheKeyReplay <食材日志文件> [同义词词典]");
+            System.exit(1);
+        }
+
+        Map<String, String> synonyms;
+        try (InputStream in = args.length > 1 ? Files.newInputStream(Paths.get(args[1]))
+                : CacheKeyReplay.class.getResourceAsStream("/ingredient-synonyms.txt")) {
+            synonyms = in == null ? Collections.emptyMap() : IngredientNormalizer.loadSynonyms(in);
+        }
+        IngredientNormalizer normalizer = new IngredientNormalizer(synonyms);
+
+        Set<String> rawKeys = new HashSet<>();
+        Set<String> canonicalKeys = new HashSet<>();
+        long requests = 0;
+        long rawHits = 0;
+        long canonicalHits = 0;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                List<String> ingredients = parseIngredients(line);
+                if (ingredients == null) {
+                    continue;
+                }
+                requests++;
+                if (!rawKeys.add(rawKey(ingredients))) {
+                    rawHits++;
+                }
+                if (!canonicalKeys.add(RecipeService.generateCacheKey(normalizer.normalizeAll(ingredients)))) {
+                    canonicalHits++;
+                }
+            }
+        }
+
+        System.out.println("请求数: " + requests);
+        System.out.println("原始缓存键: " + rawKeys.size() + " 个, 命中率 " + percent(rawHits, requests));
+        System.out.println("规范化缓存键: " + canonicalKeys.size() + " 个, 命中率 " + percent(canonicalHits, requests));
+        System.out.println("命中率提升: " + percent(canonicalHits - rawHits, requests)
+                + ", 减少Flask调用 " + (rawKeys.size() - canonicalKeys.size()) + " 次");
+    }
+
+    /**
+     * 规范化之前的缓存键：原始名称排序后拼接
+     */
+    private static String rawKey(List<String> ingredients) {
+        List<String> sorted = new ArrayList<>(ingredients);
+        Collections.sort(sorted);
+        return String.join(",", sorted);
+    }
+
+    private static List<String> parseIngredients(String line) throws IOException {
+        int start = line.indexOf('[');
+        int end = line.lastIndexOf(']');
+        if (start < 0 || end < start) {
+            return null;
+        }
+        String list = line.substring(start, end + 1);
+        if (list.matches("\\[\\s*\".*")) {
+            return OBJECT_MAPPER.readValue(list, new TypeReference<List<String>>() {
+            });
+        }
+        String content = list.substring(1, list.length() - 1);
+        return content.isEmpty() ? Collections.emptyList() : Arrays.asList(content.split(", "));
+    }
+
+    private static String percent(long count, long total) {
+        return total == 0 ? "0.00%" : String.format("%.2f%%", 100.0 * count / total);
+    }
+}
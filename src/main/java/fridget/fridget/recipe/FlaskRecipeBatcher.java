@@ -0,0 +1,262 @@
+package fridget.fridget.recipe;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fridget.fridget.common.StatsSource;
+import fridget.fridget.user.dto.UserPreferenceDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 微批处理：短时间窗口内（或凑满 maxSize 个）不同冰箱的生成请求合并为一次 POST /generate/batch，
+ * Flask用一个LLM提示词生成所有冰箱的食谱，再按id拆分给各自等待的调用方。
+ * <p>
+ * 批量接口约定：
+ * <pre>
+ * 请求  {"requests": [{"id": "0", "userIngredients": ["番茄", "鸡蛋"], "userPreferences": {...},
+ *                     "skipRanking": true}, ...]}
+ * 响应  {"results": [{"id": "0", "recipes": [{"recipe": {...}, "score": 0}, ...]},
+ *                    {"id": "1", "error": "..."}]}
+ * </pre>
+ * 每个 recipes 与 /generate 的响应格式相同。请求头 X-Request-Timeout-Ms 取批内最早的截止时间。
+ * 批内只有一个请求，结果中缺少某个id，或批量调用失败时返回null，由调用方走单次 /generate。
+ * 批量调用失败不向等待者抛出异常：每个等待者都在 RecipeUpstreamGuard 内，抛出会让一次失败被熔断器记为多次。
+ * 与 /generate 一样，每个请求带上各自的用户偏好和skipRanking，Java端没有词向量时由Flask排序（见 {@link RecipePreferenceScorer}）。
+ * <p>
+ * 每个批次有一个编号，窗口定时器只刷新它启动时的批次；该批次已凑满发出时，定时器不会提前发出下一个批次。
+ */
+@Slf4j
+@Component
+public class FlaskRecipeBatcher implements StatsSource, DisposableBean {
+
+    private final FlaskWorkerPool workerPool;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final long windowMillis;
+    private final int maxSize;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService sender;
+
+    private List<Pending> pending = new ArrayList<>();
+    // 当前批次的编号，每次发出批次后递增
+    private long batchId;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedRequests = new LongAdder();
+    private final LongAdder singles = new LongAdder();
+    private final LongAdder missingResults = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    @Autowired
+    public FlaskRecipeBatcher(FlaskWorkerPool workerPool,
+                              @Value("${flask.batch.enabled:false}") boolean enabled,
+                              @Value("${flask.batch.window-millis:50}") long windowMillis,
+                              @Value("${flask.batch.max-size:8}") int maxSize) {
+        this.workerPool = workerPool;
+        this.objectMapper = new ObjectMapper();
+        this.enabled = enabled;
+        this.windowMillis = windowMillis;
+        this.maxSize = maxSize;
+        // 定时线程只负责窗口到期，批量调用阻塞等待Flask，放到按需增长的发送线程中
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("flask-batch-timer-"));
+        this.sender = Executors.newCachedThreadPool(daemonThreads("flask-batch-"));
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 加入当前批次并等待结果
+     *
+     * @param skipRanking 为true时Flask不按偏好排序，由Java端排序
+     * @return 该冰箱的食谱JSON（与 /generate 响应格式相同），需要单独调用 /generate 时（包括批量调用失败）返回null
+     * @throws RestClientException 等待批次超时
+     */
+    public String generate(List<String> userIngredients, UserPreferenceDto userPreferenceDto, boolean skipRanking,
+                           long timeoutMillis) {
+        Pending request = new Pending(userIngredients, userPreferenceDto, skipRanking,
+                System.currentTimeMillis() + timeoutMillis);
+        List<Pending> full = null;
+        synchronized (this) {
+            pending.add(request);
+            if (pending.size() >= maxSize) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                long windowBatchId = batchId;
+                scheduler.schedule(() -> sender.execute(() -> flushWindow(windowBatchId)),
+                        windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            List<Pending> batch = full;
+            sender.execute(() -> send(batch));
+        }
+        try {
+            return request.result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("Interrupted while waiting for Flask batch");
+        } catch (TimeoutException e) {
+            throw new ResourceAccessException("Flask batch timed out after " + timeoutMillis + " ms");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RestClientException) {
+                throw (RestClientException) cause;
+            }
+            throw new ResourceAccessException("Flask batch failed: " + cause);
+        }
+    }
+
+    private void flushWindow(long windowBatchId) {
+        List<Pending> batch;
+        synchronized (this) {
+            if (windowBatchId != batchId) {
+                // 窗口内已凑满并发出，当前是下一个批次，由它自己的定时器刷新
+                return;
+            }
+            batch = takePending();
+        }
+        send(batch);
+    }
+
+    private List<Pending> takePending() {
+        List<Pending> batch = pending;
+        pending = new ArrayList<>();
+        batchId++;
+        return batch;
+    }
+
+    void send(List<Pending> batch) {
+        if (batch.size() == 1) {
+            singles.increment();
+            batch.get(0).result.complete(null);
+            return;
+        }
+        batches.increment();
+        batchedRequests.add(batch.size());
+        long deadline = Long.MAX_VALUE;
+        List<Map<String, Object>> requests = new ArrayList<>(batch.size());
+        Map<String, Pending> byId = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Pending request = batch.get(i);
+            String id = String.valueOf(i);
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("id", id);
+            entry.put("userIngredients", request.userIngredients);
+            entry.put("userPreferences", request.userPreferences);
+            entry.put("skipRanking", request.skipRanking);
+            requests.add(entry);
+            byId.put(id, request);
+            deadline = Math.min(deadline, request.deadline);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set(FlaskRecipeClient.TIMEOUT_HEADER, String.valueOf(deadline - System.currentTimeMillis()));
+        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(
+                Map.of("requests", requests), headers);
+
+        try {
+            long batchDeadline = deadline;
+            String body = workerPool.call(baseUrl -> FlaskWorkerPool.beforeDeadline(batchDeadline,
+                    () -> workerPool.restTemplate().postForObject(baseUrl + "/generate/batch", entity, String.class)));
+            JsonNode results = body == null ? null : objectMapper.readTree(body).path("results");
+            if (results != null) {
+                for (JsonNode result : results) {
+                    String id = result.path("id").asText();
+                    JsonNode recipes = result.path("recipes");
+                    Pending request = byId.get(id);
+                    if (request != null && recipes.isArray() && recipes.size() > 0) {
+                        request.result.complete(objectMapper.writeValueAsString(recipes));
+                        byId.remove(id);
+                    }
+                }
+            }
+            for (Pending request : byId.values()) {
+                missingResults.increment();
+                request.result.complete(null);
+            }
+        } catch (Exception e) {
+            // 只在这里计一次失败，等待者各自改走单次 /generate，由它们的结果决定熔断器的成败
+            failures.increment();
+            log.warn("Flask批量生成失败 ({} 个请求)，改为单独调用: {}", batch.size(), e.toString());
+            for (Pending request : batch) {
+                request.result.complete(null);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        sender.shutdownNow();
+    }
+
+    @Override
+    public String statsName() {
+        return "flask.batch";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long batchCount = batches.sum();
+        long batchedCount = batchedRequests.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("batches", batchCount);
+        stats.put("batchedRequests", batchedCount);
+        stats.put("avgBatchSize", batchCount == 0 ? 0.0 : (double) batchedCount / batchCount);
+        stats.put("singles", singles.sum());
+        stats.put("missingResults", missingResults.sum());
+        stats.put("failures", failures.sum());
+        return stats;
+    }
+
+    static final class Pending {
+        final List<String> userIngredients;
+        final UserPreferenceDto userPreferences;
+        final boolean skipRanking;
+        final long deadline;
+        final CompletableFuture<String> result = new CompletableFuture<>();
+
+        Pending(List<String> userIngredients, UserPreferenceDto userPreferences, boolean skipRanking, long deadline) {
+            this.userIngredients = userIngredients;
+            this.userPreferences = userPreferences;
+            this.skipRanking = skipRanking;
+            this.deadline = deadline;
+        }
+    }
+}
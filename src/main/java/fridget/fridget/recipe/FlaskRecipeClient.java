@@ -0,0 +1,102 @@
+package fridget.fridget.recipe;
+
+import fridget.fridget.common.UpstreamUnavailableException;
+import fridget.fridget.user.dto.UserPreferenceDto;
+import org.springframework.http.*;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 调用Flask食谱生成服务，请求经 {@link FlaskWorkerPool} 分发到各个Flask实例，一次性生成可以对冲（{@link FlaskRequestHedger}）。
+ * 连接和读取都有超时；每次调用带上请求剩余时间（X-Request-Timeout-Ms），Flask据此限制LLM调用时长，
+ * 客户端的读取超时同样不超过剩余时间（{@link FlaskWorkerPool#beforeDeadline}）。
+ */
+@Component
+public class FlaskRecipeClient {
+
+    static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+    private final FlaskWorkerPool workerPool;
+    private final FlaskRequestHedger hedger;
+    private final FlaskRecipeBatcher batcher;
+    private final RecipePreferenceScorer preferenceScorer;
+    private final RestTemplate restTemplate;
+
+    public FlaskRecipeClient(FlaskWorkerPool workerPool, FlaskRequestHedger hedger, FlaskRecipeBatcher batcher,
+                             RecipePreferenceScorer preferenceScorer) {
+        this.workerPool = workerPool;
+        this.hedger = hedger;
+        this.batcher = batcher;
+        this.preferenceScorer = preferenceScorer;
+        this.restTemplate = workerPool.restTemplate();
+    }
+
+    /**
+     * 一次性生成食谱，返回Flask的完整响应。
+     * 加载了词向量时按偏好排序由 {@link RecipePreferenceScorer} 完成，Flask只负责生成（skipRanking）；
+     * 否则仍由Flask排序。
+     * 启用微批处理时先与同一时间窗口内的其他请求合并（{@link FlaskRecipeBatcher}），批量结果缺失时再单独调用。
+     *
+     * @throws UpstreamUnavailableException 等待批次后已没有剩余时间
+     */
+    public ResponseEntity<String> generate(List<String> userIngredients, UserPreferenceDto userPreferenceDto,
+                                           long timeoutMillis) {
+        boolean skipRanking = preferenceScorer.isEnabled();
+        if (batcher.isEnabled()) {
+            long start = System.currentTimeMillis();
+            String batched = batcher.generate(userIngredients, userPreferenceDto, skipRanking, timeoutMillis);
+            if (batched != null) {
+                return ResponseEntity.ok(batched);
+            }
+            timeoutMillis -= System.currentTimeMillis() - start;
+            if (timeoutMillis <= 0) {
+                // 等待批次已用完剩余时间，Flask收到非正的超时也只会立即返回504
+                throw new UpstreamUnavailableException("Recipe generation deadline exceeded.", 5);
+            }
+        }
+        HttpEntity<Map<String, Object>> entity = buildRequest(userIngredients, userPreferenceDto, timeoutMillis);
+        entity.getBody().put("skipRanking", skipRanking);
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        return hedger.call(baseUrl -> FlaskWorkerPool.beforeDeadline(deadline,
+                () -> restTemplate.postForEntity(baseUrl + "/generate", entity, String.class)));
+    }
+
+    /**
+     * 流式生成食谱，Flask每生成一个食谱就写出一个数组元素，响应体直接交给handler逐步读取。
+     * 已经写给客户端的内容无法撤回，流式请求不对冲。
+     */
+    public void streamGenerate(List<String> userIngredients, UserPreferenceDto userPreferenceDto,
+                               long timeoutMillis, RecipeStreamHandler handler) {
+        HttpEntity<Map<String, Object>> entity = buildRequest(userIngredients, userPreferenceDto, timeoutMillis);
+        // 读取超时按两次读取之间计算，流式响应每个食谱都会重新计时，截止时间只限制单次等待
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        workerPool.call(baseUrl -> FlaskWorkerPool.beforeDeadline(deadline,
+                () -> restTemplate.execute(baseUrl + "/generate/stream", HttpMethod.POST,
+                        restTemplate.httpEntityCallback(entity), response -> {
+                            handler.handle(response.getBody());
+                            return null;
+                        })));
+    }
+
+    private HttpEntity<Map<String, Object>> buildRequest(List<String> userIngredients,
+                                                         UserPreferenceDto userPreferenceDto, long timeoutMillis) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("userIngredients", userIngredients);
+        body.put("userPreferences", userPreferenceDto);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set(TIMEOUT_HEADER, String.valueOf(timeoutMillis));
+        return new HttpEntity<>(body, headers);
+    }
+
+    @FunctionalInterface
+    public interface RecipeStreamHandler {
+        void handle(InputStream body) throws IOException;
+    }
+}
@@ -0,0 +1,296 @@
+package fridget.fridget.recipe;
+
+import fridget.fridget.common.LatencyWindow;
+import fridget.fridget.common.StatsSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 对冲请求：第一个Flask实例在观察到的p95耗时内没有返回时，向另一个实例发出相同请求，
+ * 先成功的结果被采用，落后的一方被中止（abort底层HTTP连接）。
+ * <p>
+ * 对冲请求的数量受预算限制：每个请求积累 maxRatio 个令牌，每次对冲消耗一个，
+ * 因此额外负载不超过请求数的 maxRatio（默认10%）。
+ * 统计中的 latencyP99 是调用方实际等待的时间，可与关闭对冲时的值比较。
+ * <p>
+ * 尝试在有界线程池中执行：调用都在 {@link RecipeUpstreamGuard} 的并发隔离内，每个调用最多两次尝试，
+ * 线程数上限为 recipe.upstream.max-concurrent 的两倍；线程池已满时主请求在调用方线程上直接执行，不再对冲。
+ */
+@Component
+public class FlaskRequestHedger implements StatsSource, DisposableBean {
+
+    // 令牌上限，避免长时间没有慢请求后一次性发出大量对冲
+    private static final double MAX_BUDGET_TOKENS = 10;
+
+    private final FlaskWorkerPool workerPool;
+    private final boolean enabled;
+    private final double quantile;
+    private final int minSamples;
+    private final long minDelayMillis;
+    private final double maxRatio;
+    private final ThreadPoolExecutor executor;
+
+    // 单次尝试的耗时，用于计算对冲阈值
+    private final LatencyWindow attemptLatency;
+    // 调用方实际等待的耗时
+    private final LatencyWindow latency;
+    private double budgetTokens;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+    private final LongAdder executorFull = new LongAdder();
+
+    @Autowired
+    public FlaskRequestHedger(FlaskWorkerPool workerPool,
+                              @Value("${flask.hedge.enabled:false}") boolean enabled,
+                              @Value("${flask.hedge.quantile:0.95}") double quantile,
+                              @Value("${flask.hedge.min-samples:20}") int minSamples,
+                              @Value("${flask.hedge.min-delay-millis:1000}") long minDelayMillis,
+                              @Value("${flask.hedge.max-ratio:0.1}") double maxRatio,
+                              @Value("${flask.hedge.window-size:200}") int windowSize,
+                              @Value("${recipe.upstream.max-concurrent:16}") int maxConcurrent) {
+        this.workerPool = workerPool;
+        this.enabled = enabled;
+        this.quantile = quantile;
+        this.minSamples = minSamples;
+        this.minDelayMillis = minDelayMillis;
+        this.maxRatio = maxRatio;
+        this.attemptLatency = new LatencyWindow(windowSize);
+        this.latency = new LatencyWindow(windowSize);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(0, maxConcurrent * 2, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "flask-hedge-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 通过实例池调用Flask，必要时对冲到另一个实例
+     *
+     * @param call 参数为实例的基础URL，可能在不同线程中被调用两次
+     */
+    public <T> T call(Function<String, T> call) {
+        requests.increment();
+        synchronized (this) {
+            budgetTokens = Math.min(MAX_BUDGET_TOKENS, budgetTokens + maxRatio);
+        }
+        long start = System.currentTimeMillis();
+        long threshold = hedgeThresholdMillis();
+        T result = threshold > 0 ? hedgedCall(call, threshold) : directCall(call);
+        latency.record(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private <T> T directCall(Function<String, T> call) {
+        long start = System.currentTimeMillis();
+        T result = workerPool.call(call);
+        attemptLatency.record(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private <T> T hedgedCall(Function<String, T> call, long threshold) {
+        CompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        Attempt<T> primary = new Attempt<>(workerPool.acquire(null), call);
+        Future<T> primaryFuture;
+        try {
+            primaryFuture = completion.submit(primary);
+        } catch (RejectedExecutionException e) {
+            workerPool.cancel(primary.worker);
+            executorFull.increment();
+            return directCall(call);
+        }
+        Attempt<T> hedge = null;
+        Future<T> hedgeFuture = null;
+        try {
+            Future<T> done = completion.poll(threshold, TimeUnit.MILLISECONDS);
+            if (done == null) {
+                hedge = startHedge(primary, call);
+                if (hedge != null) {
+                    try {
+                        hedgeFuture = completion.submit(hedge);
+                        hedged.increment();
+                    } catch (RejectedExecutionException e) {
+                        workerPool.cancel(hedge.worker);
+                        refundToken();
+                        executorFull.increment();
+                        hedge = null;
+                    }
+                }
+                done = completion.take();
+            }
+            try {
+                T result = done.get();
+                if (done == hedgeFuture) {
+                    hedgeWins.increment();
+                }
+                return result;
+            } catch (ExecutionException e) {
+                if (hedgeFuture == null) {
+                    throw unwrap(e);
+                }
+                // 一方失败时等待另一方
+                try {
+                    T result = completion.take().get();
+                    if (done == primaryFuture) {
+                        hedgeWins.increment();
+                    }
+                    return result;
+                } catch (ExecutionException second) {
+                    throw unwrap(done == primaryFuture ? e : second);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("Interrupted while waiting for Flask");
+        } finally {
+            // 只中止HTTP请求，不取消Future：尝试总会执行完并释放实例占用
+            if (!primaryFuture.isDone()) {
+                primary.abort();
+            }
+            if (hedge != null && !hedgeFuture.isDone()) {
+                hedge.abort();
+            }
+        }
+    }
+
+    private <T> Attempt<T> startHedge(Attempt<T> primary, Function<String, T> call) {
+        synchronized (this) {
+            if (budgetTokens < 1) {
+                budgetExhausted.increment();
+                return null;
+            }
+            budgetTokens -= 1;
+        }
+        FlaskWorkerPool.Worker worker = workerPool.acquire(primary.worker);
+        if (worker == null) {
+            // 只有一个可用实例，对冲没有意义，退还令牌
+            refundToken();
+            return null;
+        }
+        return new Attempt<>(worker, call);
+    }
+
+    private synchronized void refundToken() {
+        budgetTokens += 1;
+    }
+
+    /**
+     * 对冲阈值：单次尝试耗时的分位数，样本不足或未启用时返回0（不对冲）
+     */
+    long hedgeThresholdMillis() {
+        if (!enabled || attemptLatency.count() < minSamples) {
+            return 0;
+        }
+        return Math.max(minDelayMillis, attemptLatency.percentile(quantile));
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new ResourceAccessException("Flask call failed: " + cause);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String statsName() {
+        return "flask.hedge";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long requestCount = requests.sum();
+        long hedgedCount = hedged.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("thresholdMillis", hedgeThresholdMillis());
+        stats.put("requests", requestCount);
+        stats.put("hedged", hedgedCount);
+        stats.put("hedgeRate", requestCount == 0 ? 0.0 : (double) hedgedCount / requestCount);
+        stats.put("hedgeWins", hedgeWins.sum());
+        stats.put("budgetExhausted", budgetExhausted.sum());
+        stats.put("executorFull", executorFull.sum());
+        stats.put("latencyP50", latency.percentile(0.5));
+        stats.put("latencyP95", latency.percentile(0.95));
+        stats.put("latencyP99", latency.percentile(0.99));
+        stats.put("attemptLatencyP99", attemptLatency.percentile(0.99));
+        return stats;
+    }
+
+    /**
+     * 在某个实例上的一次尝试，可以从其他线程中止
+     */
+    private final class Attempt<T> implements Callable<T> {
+        private final FlaskWorkerPool.Worker worker;
+        private final Function<String, T> call;
+        private final FlaskWorkerPool.InFlightRequest inFlight = new FlaskWorkerPool.InFlightRequest();
+
+        Attempt(FlaskWorkerPool.Worker worker, Function<String, T> call) {
+            this.worker = worker;
+            this.call = call;
+        }
+
+        @Override
+        public T call() {
+            long start = System.currentTimeMillis();
+            boolean success = false;
+            RuntimeException failure = null;
+            inFlight.bind();
+            try {
+                T result = call.apply(worker.url);
+                success = true;
+                return result;
+            } catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            } finally {
+                inFlight.unbind();
+                long elapsed = System.currentTimeMillis() - start;
+                if (!success && inFlight.isAborted()) {
+                    workerPool.cancel(worker);
+                    // 被中止的一方至少耗时 elapsed，不计入会让阈值偏低、对冲越来越频繁
+                    attemptLatency.record(elapsed);
+                } else if (!success && !FlaskWorkerPool.isWorkerFailure(failure)) {
+                    workerPool.cancel(worker);
+                } else {
+                    workerPool.release(worker, elapsed, success);
+                    attemptLatency.record(elapsed);
+                }
+            }
+        }
+
+        void abort() {
+            inFlight.abort();
+        }
+    }
+}
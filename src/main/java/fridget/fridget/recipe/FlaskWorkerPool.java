@@ -0,0 +1,451 @@
+package fridget.fridget.recipe;
+
+import fridget.fridget.common.StatsSource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Flask生成服务的实例池：共享一个带连接池的HttpClient（长连接复用），每次调用路由到未完成请求最少的实例。
+ * 健康检查使用单独的小连接池，生成请求占满连接时探测不会排队超时。
+ * <p>
+ * 实例被移出轮换的情况：
+ * <ul>
+ *     <li>定时健康检查（GET /health）返回非2xx，或探测失败（超时、连接失败）且还有其他可用实例，检查恢复后重新加入</li>
+ *     <li>连续失败达到阈值，或平均耗时超过最快实例的若干倍，暂时剔除一段时间后重新加入</li>
+ * </ul>
+ * 只有连接、读取失败和5xx计为实例失败（{@link #isWorkerFailure}），客户端断开和4xx与实例无关。
+ * 始终保留至少一个实例可用：所有实例都被健康检查标记为下线时，选择最近一次失败最早的实例，
+ * 真正的故障由调用失败和熔断器处理，而不是由健康检查让节点完全停止调用Flask。
+ * <p>
+ * 在 {@link #beforeDeadline} 中发出的请求，读取超时取请求剩余时间（不超过 flask.read-timeout-millis），
+ * Flask没有按 X-Request-Timeout-Ms 及时返回时调用方也不会等到固定的读取超时。
+ */
+@Slf4j
+@Component
+public class FlaskWorkerPool implements StatsSource, DisposableBean {
+
+    // 平均耗时的指数加权系数
+    private static final double EWMA_ALPHA = 0.2;
+    // 至少有这么多次调用后才参与慢实例判断
+    private static final int MIN_SAMPLES_FOR_EJECTION = 5;
+    // 按截止时间设置读取超时时多等的时间，让Flask自己的504先返回
+    private static final long DEADLINE_GRACE_MILLIS = 500;
+    // 当前线程发出的Flask请求的截止时间（毫秒时间戳）
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private final List<Worker> workers;
+    private final CloseableHttpClient httpClient;
+    private final CloseableHttpClient healthClient;
+    private final RestTemplate restTemplate;
+    private final RestTemplate healthTemplate;
+    private final int ejectAfterFailures;
+    private final double slowFactor;
+    private final long ejectionMillis;
+    private final AtomicInteger rotation = new AtomicInteger();
+
+    @Autowired
+    public FlaskWorkerPool(@Value("${flask.workers:${flask.url:http://localhost:5001}}") List<String> workerUrls,
+                           @Value("${flask.pool.max-connections:64}") int maxConnections,
+                           @Value("${flask.pool.max-per-worker:16}") int maxPerWorker,
+                           @Value("${flask.connect-timeout-millis:2000}") int connectTimeoutMillis,
+                           @Value("${flask.read-timeout-millis:190000}") int readTimeoutMillis,
+                           @Value("${flask.pool.eject-after-failures:3}") int ejectAfterFailures,
+                           @Value("${flask.pool.slow-factor:3.0}") double slowFactor,
+                           @Value("${flask.pool.ejection-millis:30000}") long ejectionMillis) {
+        List<Worker> list = new ArrayList<>();
+        for (String url : workerUrls) {
+            String trimmed = url.trim();
+            if (!trimmed.isEmpty()) {
+                list.add(new Worker(trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed));
+            }
+        }
+        if (list.isEmpty()) {
+            throw new IllegalArgumentException("flask.workers must contain at least one URL");
+        }
+        this.workers = Collections.unmodifiableList(list);
+        this.ejectAfterFailures = ejectAfterFailures;
+        this.slowFactor = slowFactor;
+        this.ejectionMillis = ejectionMillis;
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+                60, TimeUnit.SECONDS);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxPerWorker);
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .evictIdleConnections(30, TimeUnit.SECONDS)
+                .build();
+        this.restTemplate = new RestTemplate(requestFactory(httpClient, connectTimeoutMillis, readTimeoutMillis));
+
+        // 健康检查逐个实例串行执行，每个实例一个连接就够了
+        PoolingHttpClientConnectionManager healthConnectionManager = new PoolingHttpClientConnectionManager(
+                60, TimeUnit.SECONDS);
+        healthConnectionManager.setMaxTotal(workers.size());
+        healthConnectionManager.setDefaultMaxPerRoute(1);
+        this.healthClient = HttpClients.custom()
+                .setConnectionManager(healthConnectionManager)
+                .build();
+        this.healthTemplate = new RestTemplate(requestFactory(healthClient, connectTimeoutMillis, connectTimeoutMillis));
+    }
+
+    private static HttpComponentsClientHttpRequestFactory requestFactory(CloseableHttpClient httpClient,
+                                                                         int connectTimeoutMillis,
+                                                                         int readTimeoutMillis) {
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient) {
+            @Override
+            protected void postProcessHttpRequest(HttpUriRequest request) {
+                Long deadline = DEADLINE.get();
+                if (deadline != null && request instanceof HttpRequestBase) {
+                    // 请求上的配置优先于工厂的默认配置，需要完整设置
+                    long remaining = deadline - System.currentTimeMillis() + DEADLINE_GRACE_MILLIS;
+                    ((HttpRequestBase) request).setConfig(RequestConfig.custom()
+                            .setConnectTimeout(connectTimeoutMillis)
+                            .setConnectionRequestTimeout(connectTimeoutMillis)
+                            .setSocketTimeout((int) Math.max(1, Math.min(readTimeoutMillis, remaining)))
+                            .build());
+                }
+                InFlightRequest current = InFlightRequest.CURRENT.get();
+                if (current != null) {
+                    current.attach(request);
+                }
+            }
+        };
+        requestFactory.setConnectTimeout(connectTimeoutMillis);
+        requestFactory.setConnectionRequestTimeout(connectTimeoutMillis);
+        requestFactory.setReadTimeout(readTimeoutMillis);
+        return requestFactory;
+    }
+
+    /**
+     * 选择一个实例执行调用，并按结果更新该实例的统计
+     *
+     * @param call 参数为实例的基础URL（例如 http://flask-1:5001）
+     */
+    public <T> T call(Function<String, T> call) {
+        Worker worker = acquire(null);
+        long start = System.currentTimeMillis();
+        boolean success = false;
+        RuntimeException failure = null;
+        try {
+            T result = call.apply(worker.url);
+            success = true;
+            return result;
+        } catch (RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            if (success || isWorkerFailure(failure)) {
+                release(worker, System.currentTimeMillis() - start, success);
+            } else {
+                cancel(worker);
+            }
+        }
+    }
+
+    /**
+     * 在截止时间前执行调用：call 在当前线程发出的请求，读取超时不超过剩余时间。
+     * 对冲请求在其他线程执行，需要在每次尝试的调用中使用
+     *
+     * @param deadlineMillis 截止时间（毫秒时间戳）
+     */
+    static <T> T beforeDeadline(long deadlineMillis, Supplier<T> call) {
+        Long previous = DEADLINE.get();
+        DEADLINE.set(deadlineMillis);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) {
+                DEADLINE.remove();
+            } else {
+                DEADLINE.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 是否是实例本身的故障：连接或读取失败（超时、连接被拒绝、响应中断）和5xx。
+     * 客户端断开（写SSE时的 UncheckedIOException）、4xx等与实例无关，不计入失败，否则客户端断开会把健康实例剔除。
+     */
+    static boolean isWorkerFailure(RuntimeException e) {
+        return e instanceof ResourceAccessException || e instanceof HttpServerErrorException;
+    }
+
+    /**
+     * 所有实例共用的RestTemplate（带连接池）
+     */
+    public RestTemplate restTemplate() {
+        return restTemplate;
+    }
+
+    /**
+     * @param exclude 不选择该实例（对冲请求要发到另一个实例），没有其他可用实例时返回null
+     */
+    Worker acquire(Worker exclude) {
+        long now = System.currentTimeMillis();
+        Worker selected = select(now, true, exclude);
+        if (selected == null) {
+            // 所有健康实例都被剔除时忽略剔除，避免完全不可用
+            selected = select(now, false, exclude);
+        }
+        if (selected == null && exclude != null) {
+            return null;
+        }
+        if (selected == null) {
+            // 所有实例都被健康检查标记为下线（例如唯一的实例 /health 返回503），选择失败最早的实例
+            selected = leastRecentlyFailed();
+        }
+        selected.outstanding.incrementAndGet();
+        selected.requests.increment();
+        return selected;
+    }
+
+    private Worker select(long now, boolean respectEjection, Worker exclude) {
+        Worker selected = null;
+        int size = workers.size();
+        int start = Math.floorMod(rotation.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Worker worker = workers.get((start + i) % size);
+            if (worker == exclude || !worker.healthy || (respectEjection && worker.isEjected(now))) {
+                continue;
+            }
+            if (selected == null || worker.outstanding.get() < selected.outstanding.get()) {
+                selected = worker;
+            }
+        }
+        return selected;
+    }
+
+    private Worker leastRecentlyFailed() {
+        Worker selected = workers.get(0);
+        for (Worker worker : workers) {
+            if (worker.lastFailureAt < selected.lastFailureAt) {
+                selected = worker;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 调用被主动取消（对冲请求中落后的一方），或失败与实例无关，只释放占用，不计入耗时和失败统计
+     */
+    void cancel(Worker worker) {
+        worker.outstanding.decrementAndGet();
+    }
+
+    void release(Worker worker, long durationMillis, boolean success) {
+        worker.outstanding.decrementAndGet();
+        long now = System.currentTimeMillis();
+        synchronized (worker) {
+            if (worker.ejectedUntil != 0 && now >= worker.ejectedUntil) {
+                // 剔除期结束后重新计算
+                worker.ejectedUntil = 0;
+                worker.samples = 0;
+                worker.consecutiveFailures = 0;
+            }
+            if (!success) {
+                worker.failures.increment();
+                worker.lastFailureAt = now;
+                if (++worker.consecutiveFailures >= ejectAfterFailures) {
+                    eject(worker, now, "连续失败 " + worker.consecutiveFailures + " 次");
+                }
+                return;
+            }
+            worker.consecutiveFailures = 0;
+            worker.ewmaMillis = worker.samples == 0
+                    ? durationMillis : EWMA_ALPHA * durationMillis + (1 - EWMA_ALPHA) * worker.ewmaMillis;
+            worker.samples++;
+        }
+        if (worker.samples >= MIN_SAMPLES_FOR_EJECTION) {
+            double fastest = fastestOtherEwma(worker, now);
+            if (fastest > 0 && worker.ewmaMillis > fastest * slowFactor) {
+                synchronized (worker) {
+                    eject(worker, now, String.format("平均耗时 %.0f ms，最快实例 %.0f ms", worker.ewmaMillis, fastest));
+                }
+            }
+        }
+    }
+
+    private double fastestOtherEwma(Worker worker, long now) {
+        double fastest = 0;
+        for (Worker other : workers) {
+            if (other == worker || !other.healthy || other.isEjected(now) || other.samples < MIN_SAMPLES_FOR_EJECTION) {
+                continue;
+            }
+            if (fastest == 0 || other.ewmaMillis < fastest) {
+                fastest = other.ewmaMillis;
+            }
+        }
+        return fastest;
+    }
+
+    // 调用方需持有worker的锁
+    private void eject(Worker worker, long now, String reason) {
+        if (worker.isEjected(now) || availableCount(now) <= 1) {
+            return;
+        }
+        worker.ejectedUntil = now + ejectionMillis;
+        worker.ejections.increment();
+        log.warn("Flask实例暂时移出轮换: {} ({}), {} ms 后恢复", worker.url, reason, ejectionMillis);
+    }
+
+    private int availableCount(long now) {
+        int count = 0;
+        for (Worker worker : workers) {
+            if (worker.healthy && !worker.isEjected(now)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 定时检查每个实例的 /health。
+     * 探测超时或连接失败时不把最后一个可用实例标记为下线，真正的故障由调用失败统计和熔断器处理；
+     * 非2xx会标记下线，所有实例都下线时 {@link #acquire} 仍选择失败最早的实例
+     */
+    @Scheduled(fixedDelayString = "${flask.pool.health-interval-millis:10000}")
+    public void checkHealth() {
+        for (Worker worker : workers) {
+            boolean healthy;
+            boolean probeFailed = false;
+            try {
+                healthy = healthTemplate.getForEntity(worker.url + "/health", String.class)
+                        .getStatusCode().is2xxSuccessful();
+            } catch (HttpStatusCodeException e) {
+                healthy = false;
+            } catch (RestClientException e) {
+                healthy = false;
+                probeFailed = true;
+            }
+            if (probeFailed && worker.healthy && availableCount(System.currentTimeMillis()) <= 1) {
+                log.warn("Flask实例健康检查失败，但它是最后一个可用实例，保留在轮换中: {}", worker.url);
+                continue;
+            }
+            if (healthy != worker.healthy) {
+                log.warn("Flask实例健康状态变化: {} -> {}", worker.url, healthy ? "UP" : "DOWN");
+            }
+            if (!healthy) {
+                worker.lastFailureAt = System.currentTimeMillis();
+            }
+            worker.healthy = healthy;
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        httpClient.close();
+        healthClient.close();
+    }
+
+    @Override
+    public String statsName() {
+        return "flask.pool";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Worker worker : workers) {
+            Map<String, Object> workerStats = new LinkedHashMap<>();
+            workerStats.put("healthy", worker.healthy);
+            workerStats.put("ejected", worker.isEjected(now));
+            workerStats.put("outstanding", worker.outstanding.get());
+            workerStats.put("requests", worker.requests.sum());
+            workerStats.put("failures", worker.failures.sum());
+            workerStats.put("ejections", worker.ejections.sum());
+            workerStats.put("avgMillis", Math.round(worker.ewmaMillis));
+            stats.put(worker.url, workerStats);
+        }
+        return stats;
+    }
+
+    /**
+     * 当前线程正在发出的HTTP请求，用于从其他线程中止（对冲请求取消落后的一方）。
+     * 调用前 {@link #bind()}，请求创建时由请求工厂登记。
+     */
+    static final class InFlightRequest {
+        private static final ThreadLocal<InFlightRequest> CURRENT = new ThreadLocal<>();
+
+        private volatile HttpUriRequest request;
+        private volatile boolean aborted;
+
+        void bind() {
+            CURRENT.set(this);
+        }
+
+        void unbind() {
+            CURRENT.remove();
+        }
+
+        boolean isAborted() {
+            return aborted;
+        }
+
+        private void attach(HttpUriRequest request) {
+            this.request = request;
+            if (aborted) {
+                request.abort();
+            }
+        }
+
+        void abort() {
+            aborted = true;
+            HttpUriRequest current = request;
+            if (current != null) {
+                current.abort();
+            }
+        }
+    }
+
+    static class Worker {
+        final String url;
+        final AtomicInteger outstanding = new AtomicInteger();
+        final LongAdder requests = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder ejections = new LongAdder();
+        volatile boolean healthy = true;
+        volatile long ejectedUntil;
+        volatile double ewmaMillis;
+        volatile int samples;
+        // 最近一次调用失败或健康检查失败的时间，所有实例都下线时选择该值最小的
+        volatile long lastFailureAt;
+        int consecutiveFailures;
+
+        Worker(String url) {
+            this.url = url;
+        }
+
+        boolean isEjected(long now) {
+            return ejectedUntil != 0 && now < ejectedUntil;
+        }
+    }
+}
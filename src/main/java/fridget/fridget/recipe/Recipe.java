@@ -3,14 +3,22 @@ package fridget.fridget.recipe;
 import java.io.*;
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Data
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
-// @Document(collection = "Recipe")
+@Document(collection = "Recipe")
 public class Recipe {
+    // 食谱指纹（规范化的名称和食材），用于语料库去重，见 RecipeCorpus#fingerprint
+    @Id
+    @JsonIgnore
+    private String id;
     private String name;
     private String description;
     private Nutrition nutrition;
@@ -18,7 +26,19 @@ public class Recipe {
     private List<String> steps;
     private String imageUrl;
     private String reference;
+    @Transient
     private List<String> missingIngredients;
     private int spiceLevel;
     private String cookingDifficultyLevel;
+    // 冰箱对该食谱食材的覆盖率（0~1），与 missingIngredients 一起计算
+    @Transient
+    private Double coverage;
+    // 食材位图，解析时计算一次，缓存副本之间共享
+    @Transient
+    @JsonIgnore
+    private RecipeIngredientBits ingredientBits;
+    // 与用户无关的偏好打分特征，第一次打分时计算，缓存副本之间共享
+    @Transient
+    @JsonIgnore
+    private RecipePreferenceScorer.Features preferenceFeatures;
 }
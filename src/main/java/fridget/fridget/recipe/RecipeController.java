@@ -2,7 +2,12 @@ package fridget.fridget.recipe;
 
 import java.util.List;
 
+import fridget.fridget.common.CommonResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.annotation.security.PermitAll;
 
@@ -10,9 +15,14 @@ import javax.annotation.security.PermitAll;
 public class RecipeController {
 
     private final RecipeService recipeService;
+    private final RecipeJobService recipeJobService;
+    private final RecipeStreamService recipeStreamService;
 
-    public RecipeController(RecipeService recipeService) {
+    public RecipeController(RecipeService recipeService, RecipeJobService recipeJobService,
+                            RecipeStreamService recipeStreamService) {
         this.recipeService = recipeService;
+        this.recipeJobService = recipeJobService;
+        this.recipeStreamService = recipeStreamService;
     }
 
     @GetMapping("/recipe/recommend")
@@ -21,6 +31,26 @@ public class RecipeController {
         return recipes;
     }
 
+    // SSE流式推送，每生成一个食谱就发送一个recipe事件
+    @GetMapping(value = "/recipe/recommend/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamRecipes() {
+        return recipeStreamService.stream();
+    }
+
+    // 异步提交食谱生成任务，立即返回任务ID
+    @PostMapping("/recipe/recommend/jobs")
+    public ResponseEntity<CommonResponse> submitRecipeJob() {
+        RecipeJob job = recipeJobService.submit();
+        return new ResponseEntity<>(new CommonResponse(HttpStatus.ACCEPTED, "Recipe job submitted!", job), HttpStatus.ACCEPTED);
+    }
+
+    // 轮询任务状态，DONE时result中包含食谱列表
+    @GetMapping("/recipe/recommend/jobs/{jobId}")
+    public ResponseEntity<CommonResponse> findRecipeJob(@PathVariable String jobId) {
+        RecipeJob job = recipeJobService.find(jobId);
+        return new ResponseEntity<>(new CommonResponse(HttpStatus.OK, "Recipe job " + job.getStatus(), job), HttpStatus.OK);
+    }
+
 //    @GetMapping("/recipe/recommend/test")
 //    @PermitAll // 또는 security config에서 인증 제외 설정
 //    public List<Recipe> generateTestRecipes() {
@@ -0,0 +1,326 @@
+package fridget.fridget.recipe;
+
+import fridget.fridget.common.StatsSource;
+import fridget.fridget.ingredient.IngredientNormalizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 已生成食谱的语料库：Flask生成的每个食谱按指纹去重后写入Mongo的Recipe集合，
+ * 同时在内存中维护 食材ID -> 食谱ID 的倒排索引。
+ * <p>
+ * 请求缓存未命中时先按冰箱覆盖率从语料库取top-k，覆盖率达到阈值的食谱足够多时直接返回，不再调用Flask。
+ * 候选从冰箱食材的倒排列表中召回，从最短（最少见的食材）开始合并，最多 maxCandidates 个；
+ * 出现在超过 stopWordRatio 比例食谱中的食材（盐、油、水等）几乎能召回整个语料库而区分度很低，
+ * 已经从更少见的食材召回到候选时不再合并。
+ * 启动时从Mongo全量加载；运行期间本节点生成的食谱写入Mongo并加入索引，
+ * 从Redis缓存读到的食谱只加入本节点索引（生成它的节点已经写过Mongo）。
+ */
+@Slf4j
+@Component
+public class RecipeCorpus implements StatsSource {
+
+    private final RecipeRepository recipeRepository;
+    private final RecipeIngredientMatcher ingredientMatcher;
+    private final IngredientNormalizer ingredientNormalizer;
+    private final boolean enabled;
+    private final int topK;
+    private final int minResults;
+    private final double minCoverage;
+    private final double stopWordRatio;
+    private final int maxCandidates;
+
+    private final ConcurrentHashMap<String, Recipe> recipes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Set<String>> postings = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder upserts = new LongAdder();
+    private final LongAdder stopWordsSkipped = new LongAdder();
+    private final LongAdder candidatesTruncated = new LongAdder();
+
+    public RecipeCorpus(RecipeRepository recipeRepository, RecipeIngredientMatcher ingredientMatcher,
+                        IngredientNormalizer ingredientNormalizer,
+                        @Value("${recipe.corpus.enabled:true}") boolean enabled,
+                        @Value("${recipe.corpus.top-k:5}") int topK,
+                        @Value("${recipe.corpus.min-results:3}") int minResults,
+                        @Value("${recipe.corpus.min-coverage:0.7}") double minCoverage,
+                        @Value("${recipe.corpus.stop-word-ratio:0.2}") double stopWordRatio,
+                        @Value("${recipe.corpus.max-candidates:2000}") int maxCandidates) {
+        this.recipeRepository = recipeRepository;
+        this.ingredientMatcher = ingredientMatcher;
+        this.ingredientNormalizer = ingredientNormalizer;
+        this.enabled = enabled;
+        this.topK = topK;
+        this.minResults = minResults;
+        this.minCoverage = minCoverage;
+        this.stopWordRatio = stopWordRatio;
+        this.maxCandidates = maxCandidates;
+    }
+
+    /**
+     * 启动完成后从Mongo加载语料库并建立索引，加载失败不影响服务，只是语料库为空
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            for (Recipe recipe : recipeRepository.findAll()) {
+                index(recipe);
+            }
+            log.info("食谱语料库加载完成: {} 个食谱, {} ms", recipes.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("食谱语料库加载失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 按冰箱覆盖率从语料库推荐食谱
+     *
+     * @param fridgeBits   冰箱位图
+     * @param excludedBits 需要排除的食材位图（过敏原），食谱包含其中任一食材时跳过
+     * @return 覆盖率不低于阈值的前k个食谱副本（已设置缺失食材和覆盖率）；数量不足时返回null，由调用方调用Flask
+     */
+    public List<Recipe> recommend(BitSet fridgeBits, BitSet excludedBits) {
+        if (!enabled || recipes.isEmpty()) {
+            return null;
+        }
+        List<Recipe> result = topByCoverage(fridgeBits, excludedBits, minCoverage, minResults);
+        if (result == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Flask不可用时的降级推荐：不要求最低覆盖率，只要和冰箱有共同食材即可
+     *
+     * @return 按覆盖率排序的前k个食谱副本，可能为空
+     */
+    public List<Recipe> recommendAny(BitSet fridgeBits, BitSet excludedBits) {
+        if (!enabled) {
+            return Collections.emptyList();
+        }
+        List<Recipe> result = topByCoverage(fridgeBits, excludedBits, 0.0, 1);
+        return result == null ? Collections.emptyList() : result;
+    }
+
+    private List<Recipe> topByCoverage(BitSet fridgeBits, BitSet excludedBits, double minCoverage, int minResults) {
+        List<Recipe> candidates = candidates(fridgeBits);
+
+        List<Candidate> qualified = new ArrayList<>();
+        BitSet scratch = new BitSet();
+        for (Recipe recipe : candidates) {
+            if (ingredientMatcher.containsAny(recipe, excludedBits)) {
+                continue;
+            }
+            double coverage = ingredientMatcher.coverage(recipe, fridgeBits, scratch);
+            if (coverage >= minCoverage) {
+                qualified.add(new Candidate(recipe, coverage));
+            }
+        }
+        if (qualified.size() < minResults) {
+            return null;
+        }
+
+        qualified.sort(Comparator.comparingDouble((Candidate candidate) -> candidate.coverage).reversed());
+        List<Recipe> result = new ArrayList<>(Math.min(topK, qualified.size()));
+        for (Candidate candidate : qualified.subList(0, Math.min(topK, qualified.size()))) {
+            Recipe copy = candidate.recipe.toBuilder().build();
+            ingredientMatcher.match(copy, fridgeBits);
+            result.add(copy);
+        }
+        return result;
+    }
+
+    /**
+     * 从冰箱食材的倒排列表召回候选食谱，短列表优先，跳过已有候选之后的高频食材，最多 maxCandidates 个
+     */
+    private List<Recipe> candidates(BitSet fridgeBits) {
+        // 列表在并发写入时会变长，先记下长度再排序
+        List<Posting> fridgePostings = new ArrayList<>();
+        for (int id = fridgeBits.nextSetBit(0); id >= 0; id = fridgeBits.nextSetBit(id + 1)) {
+            Set<String> posting = postings.get(id);
+            if (posting != null) {
+                fridgePostings.add(new Posting(posting));
+            }
+        }
+        fridgePostings.sort(Comparator.comparingInt((Posting posting) -> posting.size));
+
+        double stopWordSize = stopWordRatio * recipes.size();
+        Set<String> candidateIds = new LinkedHashSet<>();
+        for (Posting posting : fridgePostings) {
+            if (posting.size > stopWordSize && !candidateIds.isEmpty()) {
+                // 列表按长度排序，之后的都是高频食材
+                stopWordsSkipped.increment();
+                break;
+            }
+            for (String recipeId : posting.recipeIds) {
+                candidateIds.add(recipeId);
+                if (candidateIds.size() >= maxCandidates) {
+                    candidatesTruncated.increment();
+                    return lookup(candidateIds);
+                }
+            }
+        }
+        return lookup(candidateIds);
+    }
+
+    private List<Recipe> lookup(Set<String> recipeIds) {
+        List<Recipe> result = new ArrayList<>(recipeIds.size());
+        for (String recipeId : recipeIds) {
+            Recipe recipe = recipes.get(recipeId);
+            if (recipe != null) {
+                result.add(recipe);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 把本节点新生成的食谱写入Mongo（按指纹upsert）并加入索引，失败时只记录日志
+     */
+    public void save(Collection<Recipe> generated) {
+        if (!enabled || generated.isEmpty()) {
+            return;
+        }
+        List<Recipe> documents = new ArrayList<>(generated.size());
+        for (Recipe recipe : generated) {
+            Recipe document = recipe.toBuilder().missingIngredients(null).coverage(null).build();
+            document.setId(fingerprint(document));
+            documents.add(document);
+        }
+        try {
+            recipeRepository.saveAll(documents);
+            upserts.add(documents.size());
+        } catch (Exception e) {
+            log.warn("食谱写入语料库失败: {}", e.getMessage());
+        }
+        for (Recipe document : documents) {
+            index(document);
+        }
+    }
+
+    /**
+     * 把从缓存读到的食谱加入本节点索引，不写Mongo
+     */
+    public void remember(Collection<Recipe> cached) {
+        if (!enabled) {
+            return;
+        }
+        for (Recipe recipe : cached) {
+            if (recipe.getId() == null) {
+                Recipe document = recipe.toBuilder().missingIngredients(null).coverage(null).build();
+                document.setId(fingerprint(document));
+                if (!recipes.containsKey(document.getId())) {
+                    index(document);
+                }
+            }
+        }
+    }
+
+    private void index(Recipe recipe) {
+        if (recipe.getId() == null) {
+            recipe.setId(fingerprint(recipe));
+        }
+        if (recipes.putIfAbsent(recipe.getId(), recipe) != null) {
+            return;
+        }
+        BitSet bits = ingredientMatcher.index(recipe).bits();
+        for (int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1)) {
+            postings.computeIfAbsent(id, key -> ConcurrentHashMap.newKeySet()).add(recipe.getId());
+        }
+    }
+
+    /**
+     * 食谱指纹：规范化的食谱名称加上排序后的规范食材名称，取SHA-256。
+     * 同一道菜用同样的食材重复生成时只保留一份。
+     */
+    String fingerprint(Recipe recipe) {
+        SortedSet<String> ingredients = new TreeSet<>();
+        if (recipe.getIngredients() != null) {
+            for (Ingredient ingredient : recipe.getIngredients()) {
+                ingredients.add(ingredientNormalizer.normalize(ingredient.getName()));
+            }
+        }
+        String source = ingredientNormalizer.normalize(recipe.getName()) + "|" + String.join(",", ingredients);
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] hashBytes = md.digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : hashBytes) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "recipe.corpus";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("recipes", recipes.size());
+        stats.put("indexedIngredients", postings.size());
+        stats.put("hits", hitCount);
+        stats.put("misses", total - hitCount);
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("upserts", upserts.sum());
+        stats.put("stopWordsSkipped", stopWordsSkipped.sum());
+        stats.put("candidatesTruncated", candidatesTruncated.sum());
+        return stats;
+    }
+
+    private static class Posting {
+        private final Set<String> recipeIds;
+        private final int size;
+
+        Posting(Set<String> recipeIds) {
+            this.recipeIds = recipeIds;
+            this.size = recipeIds.size();
+        }
+    }
+
+    private static class Candidate {
+        private final Recipe recipe;
+        private final double coverage;
+
+        Candidate(Recipe recipe, double coverage) {
+            this.recipe = recipe;
+            this.coverage = coverage;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package fridget.fridget.recipe;
+
+import fridget.fridget.common.StatsSource;
+import fridget.fridget.common.UpstreamUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 集群范围的食谱生成租约：同一个缓存键同一时刻只有一个节点调用Flask。
+ * <p>
+ * 租约通过 SET NX PX 获取，值中带有递增的 fencing token；写缓存时用Lua脚本校验租约仍属于自己，
+ * 租约过期被其他节点接管后，旧持有者的写入会被拒绝。持有者生成期间每隔三分之一租约时长续期一次，
+ * 生成耗时超过租约时长（例如Flask排队）也不会被其他节点接管；持有者宕机后停止续期，租约随之过期。
+ * <p>
+ * 未抢到租约的节点订阅结果通知而不是轮询：成功写入缓存时发布到 recipe:ready，生成失败时发布到 recipe:failed。
+ * 收到失败通知的等待者不再自己调用Flask（否则所有等待者会同时重试），而是抛出 {@link UpstreamUnavailableException}
+ * 由调用方降级，客户端按 Retry-After 稍后重试。等待时长为租约剩余时间，持有者宕机导致租约过期后由等待者接管。
+ */
+@Slf4j
+@Component
+public class RecipeGenerationLock implements MessageListener, StatsSource, DisposableBean {
+
+    private static final String LOCK_KEY_PREFIX = "recipe:lock:";
+    private static final String FENCE_KEY = "recipe:lock:fence";
+    private static final String READY_CHANNEL = "recipe:ready";
+    private static final String FAILED_CHANNEL = "recipe:failed";
+    private static final long FAILED_RETRY_AFTER_SECONDS = 5;
+
+    // 仅当租约仍属于自己时写入缓存并发布完成通知
+    private static final DefaultRedisScript<Long> FENCED_SET_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then "
+                    + "redis.call('SET', KEYS[2], ARGV[2], 'EX', ARGV[3]) "
+                    + "redis.call('PUBLISH', ARGV[4], KEYS[2]) "
+                    + "return 1 end "
+                    + "return 0", Long.class);
+
+    // 仅当租约仍属于自己时释放
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('DEL', KEYS[1]) end "
+                    + "return 0", Long.class);
+
+    // 仅当租约仍属于自己时续期
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end "
+                    + "return 0", Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final long leaseMillis;
+    private final long maxWaitMillis;
+    // 等待中的缓存键，完成值为持有者是否成功写入缓存
+    private final ConcurrentHashMap<String, CompletableFuture<Boolean>> readySignals = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService renewer;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder takeovers = new LongAdder();
+    private final LongAdder fencedWritesRejected = new LongAdder();
+    private final LongAdder signalsReceived = new LongAdder();
+    private final LongAdder failuresReceived = new LongAdder();
+    private final LongAdder renewals = new LongAdder();
+    private final LongAdder leasesLost = new LongAdder();
+
+    public RecipeGenerationLock(RedisTemplate<String, String> redisTemplate,
+                                RedisMessageListenerContainer listenerContainer,
+                                @Value("${recipe.lock.lease-millis:200000}") long leaseMillis,
+                                @Value("${recipe.lock.max-wait-millis:400000}") long maxWaitMillis) {
+        this.redisTemplate = redisTemplate;
+        this.leaseMillis = leaseMillis;
+        this.maxWaitMillis = maxWaitMillis;
+        this.renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "recipe-lease-renewer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        listenerContainer.addMessageListener(this, new ChannelTopic(READY_CHANNEL));
+        listenerContainer.addMessageListener(this, new ChannelTopic(FAILED_CHANNEL));
+    }
+
+    /**
+     * 在集群租约保护下生成缓存内容。
+     * 抢到租约则执行generator；否则等待持有者写入缓存的通知，租约过期时接管生成。
+     *
+     * @param cacheKey    缓存键
+     * @param cacheReader 读取缓存，未命中返回null
+     * @param generator   持有租约时执行的生成逻辑，写缓存时应调用 {@link #saveIfHolder}，失败时返回null或抛出异常
+     * @return 缓存内容；等待超时或生成失败时返回null
+     * @throws UpstreamUnavailableException 等待期间持有者生成失败
+     */
+    public String generateOnce(String cacheKey, Supplier<String> cacheReader, Function<Lease, String> generator)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + maxWaitMillis;
+        boolean waited = false;
+        while (true) {
+            Lease lease = tryAcquire(cacheKey);
+            if (lease != null) {
+                if (waited) {
+                    takeovers.increment();
+                }
+                boolean succeeded = false;
+                ScheduledFuture<?> renewal = scheduleRenewal(lease);
+                try {
+                    // 上一个持有者可能刚写完缓存后释放
+                    String cached = cacheReader.get();
+                    String result = cached != null ? cached : generator.apply(lease);
+                    succeeded = result != null;
+                    return result;
+                } finally {
+                    renewal.cancel(false);
+                    release(lease, succeeded);
+                }
+            }
+
+            if (!waited) {
+                contended.increment();
+                waited = true;
+            }
+            CompletableFuture<Boolean> signal = readySignals.computeIfAbsent(cacheKey, key -> new CompletableFuture<>());
+            // 注册等待后再检查一次，避免错过注册前发布的通知
+            String cached = cacheReader.get();
+            if (cached != null) {
+                return cached;
+            }
+
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                log.warn("等待食谱生成超时: {}", cacheKey);
+                return null;
+            }
+            Boolean ready = awaitSignal(signal, Math.min(remaining, remainingLeaseMillis(cacheKey)));
+            readySignals.remove(cacheKey, signal);
+
+            cached = cacheReader.get();
+            if (cached != null) {
+                return cached;
+            }
+            if (Boolean.FALSE.equals(ready)) {
+                throw new UpstreamUnavailableException("Recipe generation failed, please retry later.",
+                        FAILED_RETRY_AFTER_SECONDS);
+            }
+        }
+    }
+
+    /**
+     * 仅当租约仍属于自己时写入缓存，并通知其他节点
+     *
+     * @return 是否写入成功；租约已被接管时返回false
+     */
+    public boolean saveIfHolder(Lease lease, String cacheKey, String value, long ttlSeconds) {
+        Long result = redisTemplate.execute(FENCED_SET_SCRIPT,
+                Arrays.asList(lease.getLockKey(), cacheKey),
+                lease.getToken(), value, String.valueOf(ttlSeconds), READY_CHANNEL);
+        if (result == null || result == 0L) {
+            fencedWritesRejected.increment();
+            log.warn("租约已失效，放弃写入缓存: {} (fence {})", cacheKey, lease.getFence());
+            return false;
+        }
+        return true;
+    }
+
+    private Lease tryAcquire(String cacheKey) {
+        String lockKey = LOCK_KEY_PREFIX + cacheKey;
+        Long fence = redisTemplate.opsForValue().increment(FENCE_KEY);
+        String token = fence + ":" + nodeId;
+        Boolean ok = redisTemplate.opsForValue().setIfAbsent(lockKey, token, Duration.ofMillis(leaseMillis));
+        if (Boolean.TRUE.equals(ok)) {
+            acquired.increment();
+            return new Lease(lockKey, token, fence == null ? 0L : fence);
+        }
+        return null;
+    }
+
+    private ScheduledFuture<?> scheduleRenewal(Lease lease) {
+        long period = Math.max(1, leaseMillis / 3);
+        return renewer.scheduleAtFixedRate(() -> renew(lease), period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private void renew(Lease lease) {
+        Long result;
+        try {
+            result = redisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(lease.getLockKey()),
+                    lease.getToken(), String.valueOf(leaseMillis));
+        } catch (Exception e) {
+            // Redis暂时不可用时下次再试，租约在剩余时间内仍然有效
+            log.warn("租约续期失败: {} ({})", lease.getLockKey(), e.toString());
+            return;
+        }
+        if (result == null || result == 0L) {
+            leasesLost.increment();
+            log.warn("租约已失效，停止续期: {} (fence {})", lease.getLockKey(), lease.getFence());
+            // 抛出异常以结束周期任务，之后的写入由fencing拒绝
+            throw new IllegalStateException("Lease lost: " + lease.getLockKey());
+        }
+        renewals.increment();
+    }
+
+    /**
+     * 释放租约。成功时 {@link #saveIfHolder} 已经发布了 recipe:ready；
+     * 失败时发布 recipe:failed，等待者直接降级，而不是等到租约过期或全部自己调用Flask
+     */
+    private void release(Lease lease, boolean succeeded) {
+        redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(lease.getLockKey()), lease.getToken());
+        if (!succeeded) {
+            String cacheKey = lease.getLockKey().substring(LOCK_KEY_PREFIX.length());
+            redisTemplate.convertAndSend(FAILED_CHANNEL, cacheKey);
+        }
+    }
+
+    private long remainingLeaseMillis(String cacheKey) {
+        Long ttl = redisTemplate.getExpire(LOCK_KEY_PREFIX + cacheKey, TimeUnit.MILLISECONDS);
+        // 键已不存在（-2）或没有过期时间（-1）时立即重试获取
+        if (ttl == null || ttl < 0) {
+            return 0L;
+        }
+        return ttl + 1;
+    }
+
+    /**
+     * @return 持有者是否成功写入缓存；超时返回null
+     */
+    private Boolean awaitSignal(CompletableFuture<Boolean> signal, long waitMillis) throws InterruptedException {
+        if (waitMillis <= 0) {
+            return null;
+        }
+        try {
+            return signal.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            // 超时说明持有者可能已宕机，回到循环尝试接管
+            return null;
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String cacheKey = new String(message.getBody(), StandardCharsets.UTF_8);
+        boolean ready = READY_CHANNEL.equals(new String(message.getChannel(), StandardCharsets.UTF_8));
+        CompletableFuture<Boolean> signal = readySignals.remove(cacheKey);
+        if (signal != null) {
+            (ready ? signalsReceived : failuresReceived).increment();
+            signal.complete(ready);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        renewer.shutdownNow();
+    }
+
+    @Override
+    public String statsName() {
+        return "recipe.lock";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("acquired", acquired.sum());
+        stats.put("contended", contended.sum());
+        stats.put("takeovers", takeovers.sum());
+        stats.put("fencedWritesRejected", fencedWritesRejected.sum());
+        stats.put("signalsReceived", signalsReceived.sum());
+        stats.put("failuresReceived", failuresReceived.sum());
+        stats.put("renewals", renewals.sum());
+        stats.put("leasesLost", leasesLost.sum());
+        stats.put("waiting", readySignals.size());
+        return stats;
+    }
+
+    /**
+     * 已获取的租约
+     */
+    public static class Lease {
+        private final String lockKey;
+        private final String token;
+        private final long fence;
+
+        Lease(String lockKey, String token, long fence) {
+            this.lockKey = lockKey;
+            this.token = token;
+            this.fence = fence;
+        }
+
+        public String getLockKey() {
+            return lockKey;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public long getFence() {
+            return fence;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package fridget.fridget.recipe;
+
+import java.util.BitSet;
+
+/**
+ * 食谱食材的位图编码，创建后不再修改，可以在缓存副本之间共享
+ */
+public final class RecipeIngredientBits {
+
+    // 与 Recipe.ingredients 一一对应的食材ID
+    private final int[] ids;
+    private final BitSet bits;
+
+    RecipeIngredientBits(int[] ids, BitSet bits) {
+        this.ids = ids;
+        this.bits = bits;
+    }
+
+    int idAt(int index) {
+        return ids[index];
+    }
+
+    int length() {
+        return ids.length;
+    }
+
+    BitSet bits() {
+        return bits;
+    }
+}
@@ -0,0 +1,119 @@
+package fridget.fridget.recipe;
+
+import fridget.fridget.ingredient.IngredientDictionary;
+import fridget.fridget.ingredient.IngredientNormalizer;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 用位图计算食谱的缺失食材和覆盖率。
+ * <p>
+ * 食谱解析时编码一次（{@link #index}），之后每次请求只需把冰箱编码成位图，
+ * 缺失食材 = 食谱位图 AND NOT 冰箱位图，覆盖率在同一次计算中得出，不再逐个比较字符串。
+ */
+@Component
+public class RecipeIngredientMatcher {
+
+    private final IngredientDictionary dictionary;
+    private final IngredientNormalizer normalizer;
+
+    public RecipeIngredientMatcher(IngredientDictionary dictionary, IngredientNormalizer normalizer) {
+        this.dictionary = dictionary;
+        this.normalizer = normalizer;
+    }
+
+    /**
+     * 把冰箱中的规范食材名称编码为位图。
+     * 只包含已编码食谱中出现过的食材，因此只能与编码之前已经 {@link #index} 过的食谱比较
+     */
+    public BitSet encodeFridge(Collection<String> canonicalNames) {
+        return dictionary.encode(canonicalNames);
+    }
+
+    /**
+     * 为食谱计算食材位图并保存在食谱上，已编码的食谱直接返回
+     */
+    public RecipeIngredientBits index(Recipe recipe) {
+        RecipeIngredientBits encoded = recipe.getIngredientBits();
+        if (encoded != null) {
+            return encoded;
+        }
+        List<Ingredient> ingredients = recipe.getIngredients() == null
+                ? Collections.emptyList() : recipe.getIngredients();
+        int[] ids = new int[ingredients.size()];
+        BitSet bits = new BitSet();
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = dictionary.idOf(normalizer.normalize(ingredients.get(i).getName()));
+            bits.set(ids[i]);
+        }
+        encoded = new RecipeIngredientBits(ids, bits);
+        recipe.setIngredientBits(encoded);
+        return encoded;
+    }
+
+    /**
+     * 只计算覆盖率，不修改食谱（语料库检索候选时使用）
+     *
+     * @param scratch 调用方复用的临时位图，内容会被覆盖；逐个候选计算时不再每次复制食谱位图
+     */
+    public double coverage(Recipe recipe, BitSet fridge, BitSet scratch) {
+        BitSet bits = index(recipe).bits();
+        if (!bits.intersects(fridge)) {
+            return bits.isEmpty() ? 1.0 : 0.0;
+        }
+        scratch.clear();
+        scratch.or(bits);
+        scratch.and(fridge);
+        return (double) scratch.cardinality() / bits.cardinality();
+    }
+
+    /**
+     * 食谱是否包含位图中的任一食材（例如过敏原）
+     */
+    public boolean containsAny(Recipe recipe, BitSet ingredients) {
+        return index(recipe).bits().intersects(ingredients);
+    }
+
+    /**
+     * 为一组食谱（可能是刚解析出、含有第一次出现的食材）设置缺失食材和覆盖率：先编码食谱，再编码冰箱
+     *
+     * @param canonicalFridge 冰箱中的规范食材名称
+     */
+    public void matchAll(Collection<Recipe> recipes, Collection<String> canonicalFridge) {
+        for (Recipe recipe : recipes) {
+            index(recipe);
+        }
+        BitSet fridge = encodeFridge(canonicalFridge);
+        for (Recipe recipe : recipes) {
+            match(recipe, fridge);
+        }
+    }
+
+    /**
+     * 设置食谱的缺失食材（保留食谱中的原始名称）和覆盖率
+     *
+     * @param fridge {@link #encodeFridge} 得到的冰箱位图（在食谱编码之后编码），不会被修改
+     */
+    public void match(Recipe recipe, BitSet fridge) {
+        RecipeIngredientBits encoded = index(recipe);
+        BitSet missing = (BitSet) encoded.bits().clone();
+        missing.andNot(fridge);
+
+        List<String> missingIngredients = new ArrayList<>(missing.cardinality());
+        if (!missing.isEmpty()) {
+            for (int i = 0; i < encoded.length(); i++) {
+                if (missing.get(encoded.idAt(i))) {
+                    missingIngredients.add(recipe.getIngredients().get(i).getName());
+                }
+            }
+        }
+        int total = encoded.bits().cardinality();
+        recipe.setMissingIngredients(missingIngredients);
+        recipe.setCoverage(total == 0 ? 1.0 : (double) (total - missing.cardinality()) / total);
+    }
+}
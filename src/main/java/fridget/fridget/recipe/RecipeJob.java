@@ -0,0 +1,23 @@
+package fridget.fridget.recipe;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// 异步食谱生成任务，以JSON形式保存在Redis中，任意节点都可以查询
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RecipeJob {
+    private String jobId;
+    private String userId;
+    private RecipeJobStatus status;
+    private List<Recipe> recipes;
+    private String message;
+    private long createdAt;
+    private long updatedAt;
+}
@@ -0,0 +1,136 @@
+package fridget.fridget.recipe;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fridget.fridget.common.EntityNotFoundException;
+import fridget.fridget.common.ServiceBusyException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步食谱生成任务。
+ * 提交后立即返回任务ID，生成过程在有界线程池中执行，不再占用Tomcat请求线程；
+ * 任务状态保存在Redis中，因此任意节点都可以响应轮询请求。
+ */
+@Slf4j
+@Service
+public class RecipeJobService {
+
+    // 任务键前缀
+    private static final String JOB_KEY_PREFIX = "recipe:job:";
+    // 线程池满时建议客户端的重试间隔（秒）
+    private static final long RETRY_AFTER_SECONDS = 5;
+
+    private final RecipeService recipeService;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolExecutor executor;
+    private final long jobTtlMinutes;
+
+    public RecipeJobService(RecipeService recipeService,
+                            RedisTemplate<String, String> redisTemplate,
+                            @Qualifier("recipeExecutor") ThreadPoolExecutor executor,
+                            @Value("${recipe.job.ttl-minutes:60}") long jobTtlMinutes) {
+        this.recipeService = recipeService;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = new ObjectMapper();
+        this.executor = executor;
+        this.jobTtlMinutes = jobTtlMinutes;
+    }
+
+    /**
+     * 为当前用户提交一个食谱生成任务
+     *
+     * @return 处于PENDING状态的任务
+     */
+    public RecipeJob submit() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String userId = authentication.getName();
+        long now = System.currentTimeMillis();
+        RecipeJob job = RecipeJob.builder()
+                .jobId(UUID.randomUUID().toString())
+                .userId(userId)
+                .status(RecipeJobStatus.PENDING)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        saveJob(job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            redisTemplate.delete(JOB_KEY_PREFIX + job.getJobId());
+            throw new ServiceBusyException("Too many recipe jobs in progress, please retry later.",
+                    RETRY_AFTER_SECONDS);
+        }
+        return job;
+    }
+
+    /**
+     * 查询当前用户的任务状态
+     *
+     * @param jobId 任务ID
+     * @return 任务
+     */
+    public RecipeJob find(String jobId) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        RecipeJob job = loadJob(jobId);
+        if (job == null || !job.getUserId().equals(authentication.getName())) {
+            throw new EntityNotFoundException("There's no such recipe job.");
+        }
+        return job;
+    }
+
+    private void run(RecipeJob job) {
+        job.setStatus(RecipeJobStatus.RUNNING);
+        job.setUpdatedAt(System.currentTimeMillis());
+        saveJob(job);
+        try {
+            List<Recipe> recipes = recipeService.generateRecipesOrThrow(job.getUserId());
+            job.setRecipes(recipes);
+            job.setStatus(RecipeJobStatus.DONE);
+        } catch (Exception e) {
+            log.warn("食谱任务执行失败: {}", job.getJobId(), e);
+            job.setStatus(RecipeJobStatus.FAILED);
+            job.setMessage(e.getMessage());
+        }
+        job.setUpdatedAt(System.currentTimeMillis());
+        try {
+            saveJob(job);
+        } catch (Exception e) {
+            // 线程池不会记录任务中的异常；任务保持RUNNING直到过期
+            log.error("保存食谱任务结果失败: {} status={}", job.getJobId(), job.getStatus(), e);
+        }
+    }
+
+    private void saveJob(RecipeJob job) {
+        try {
+            redisTemplate.opsForValue().set(JOB_KEY_PREFIX + job.getJobId(),
+                    objectMapper.writeValueAsString(job), jobTtlMinutes, TimeUnit.MINUTES);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize recipe job " + job.getJobId(), e);
+        }
+    }
+
+    private RecipeJob loadJob(String jobId) {
+        String json = redisTemplate.opsForValue().get(JOB_KEY_PREFIX + jobId);
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, RecipeJob.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to read recipe job " + jobId, e);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package fridget.fridget.recipe;
+
+public enum RecipeJobStatus {
+    PENDING,
+    RUNNING,
+    DONE,
+    FAILED
+}
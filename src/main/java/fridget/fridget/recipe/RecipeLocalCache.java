@@ -0,0 +1,180 @@
+package fridget.fridget.recipe;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import fridget.fridget.common.StatsSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 食谱本地一级缓存（L1），缓存已经反序列化的食谱列表，Redis中的原始JSON作为二级缓存（L2）。
+ * <p>
+ * 基于Caffeine（W-TinyLFU准入策略），按条目权重（原始JSON的KB数）限制总容量，并设置较短的过期时间。
+ * 任一节点写入或删除Redis中的食谱缓存时，通过 recipe:l1:invalidate 频道通知其他节点清除各自的L1。
+ * 写入和读取时都做深拷贝（食材、步骤、营养信息不与缓存共享），调用方可以安全地修改返回的食谱。
+ */
+@Component
+public class RecipeLocalCache implements MessageListener, StatsSource {
+
+    private static final String INVALIDATE_CHANNEL = "recipe:l1:invalidate";
+    private static final char MESSAGE_SEPARATOR = '|';
+
+    private final Cache<String, Entry> cache;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final LongAdder l2Hits = new LongAdder();
+    private final LongAdder l2Misses = new LongAdder();
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    public RecipeLocalCache(RedisTemplate<String, String> redisTemplate,
+                            RedisMessageListenerContainer listenerContainer,
+                            @Value("${recipe.l1.max-weight-kb:65536}") long maxWeightKb,
+                            @Value("${recipe.l1.expire-minutes:10}") long expireMinutes) {
+        this(maxWeightKb, expireMinutes);
+        this.redisTemplate = redisTemplate;
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    // 不接入Redis的纯本地缓存，用于基准测试
+    RecipeLocalCache(long maxWeightKb, long expireMinutes) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightKb)
+                .weigher((String key, Entry entry) -> entry.weightKb)
+                .expireAfterWrite(Duration.ofMinutes(expireMinutes))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 从L1读取食谱
+     *
+     * @return 食谱副本，未命中返回null
+     */
+    public List<Recipe> getIfPresent(String cacheKey) {
+        Entry entry = cache.getIfPresent(cacheKey);
+        return entry == null ? null : copyOf(entry.recipes);
+    }
+
+    /**
+     * 将从L2读取或新生成的食谱放入L1
+     *
+     * @param jsonLength 原始JSON长度，用于估算条目权重
+     * @return 食谱副本
+     */
+    public List<Recipe> put(String cacheKey, List<Recipe> recipes, int jsonLength) {
+        List<Recipe> stored = Collections.unmodifiableList(copyOf(recipes));
+        cache.put(cacheKey, new Entry(stored, Math.max(1, jsonLength / 1024)));
+        return copyOf(stored);
+    }
+
+    /**
+     * 记录一次L2（Redis）访问结果
+     */
+    public void recordL2(boolean hit) {
+        if (hit) {
+            l2Hits.increment();
+        } else {
+            l2Misses.increment();
+        }
+    }
+
+    /**
+     * 清除本节点L1中的条目，并通知其他节点清除
+     */
+    public void invalidate(String cacheKey) {
+        cache.invalidate(cacheKey);
+        if (redisTemplate != null) {
+            redisTemplate.convertAndSend(INVALIDATE_CHANNEL, nodeId + MESSAGE_SEPARATOR + cacheKey);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(MESSAGE_SEPARATOR);
+        if (separator < 0 || body.substring(0, separator).equals(nodeId)) {
+            return;
+        }
+        cache.invalidate(body.substring(separator + 1));
+    }
+
+    private static List<Recipe> copyOf(List<Recipe> recipes) {
+        List<Recipe> copies = new ArrayList<>(recipes.size());
+        for (Recipe recipe : recipes) {
+            copies.add(copyOf(recipe));
+        }
+        return copies;
+    }
+
+    /**
+     * 深拷贝食谱中可修改的部分；按用户计算的缺失食材和覆盖率清空，不可修改的打分缓存（食材位图、偏好特征）共享
+     */
+    private static Recipe copyOf(Recipe recipe) {
+        List<Ingredient> ingredients = null;
+        if (recipe.getIngredients() != null) {
+            ingredients = new ArrayList<>(recipe.getIngredients().size());
+            for (Ingredient ingredient : recipe.getIngredients()) {
+                ingredients.add(ingredient == null ? null : new Ingredient(ingredient.getName(), ingredient.getQuantity()));
+            }
+        }
+        Nutrition nutrition = recipe.getNutrition();
+        return recipe.toBuilder()
+                .ingredients(ingredients)
+                .steps(recipe.getSteps() == null ? null : new ArrayList<>(recipe.getSteps()))
+                .nutrition(nutrition == null ? null : new Nutrition(nutrition.getCalories(), nutrition.getProtein(),
+                        nutrition.getCarbs(), nutrition.getFat(), nutrition.getFiber(), nutrition.getSugar(),
+                        nutrition.getSodium()))
+                .missingIngredients(null)
+                .coverage(null)
+                .build();
+    }
+
+    @Override
+    public String statsName() {
+        return "recipe.cache";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        CacheStats l1 = cache.stats();
+        long l2HitCount = l2Hits.sum();
+        long l2Total = l2HitCount + l2Misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("l1Hits", l1.hitCount());
+        stats.put("l1Misses", l1.missCount());
+        stats.put("l1HitRatio", l1.hitRate());
+        stats.put("l1Evictions", l1.evictionCount());
+        stats.put("l1Entries", cache.estimatedSize());
+        stats.put("l2Hits", l2HitCount);
+        stats.put("l2Misses", l2Total - l2HitCount);
+        stats.put("l2HitRatio", l2Total == 0 ? 1.0 : (double) l2HitCount / l2Total);
+        return stats;
+    }
+
+    private static class Entry {
+        private final List<Recipe> recipes;
+        private final int weightKb;
+
+        Entry(List<Recipe> recipes, int weightKb) {
+            this.recipes = recipes;
+            this.weightKb = weightKb;
+        }
+    }
+}
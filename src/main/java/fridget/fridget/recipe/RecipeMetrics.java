@@ -0,0 +1,135 @@
+package fridget.fridget.recipe;
+
+import fridget.fridget.common.RequestTrace;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 食谱推荐流程的Micrometer指标，通过 /actuator/prometheus 导出。
+ * <ul>
+ *     <li>recipe.stage：各阶段耗时（带直方图，可在Prometheus中跨节点聚合分位数），标签 stage</li>
+ *     <li>recipe.recommend：整个推荐请求的耗时，标签 source 为结果来源</li>
+ *     <li>recipe.recommend.outcome：缓存命中、未命中、解析失败、空结果的次数，标签 outcome</li>
+ *     <li>recipe.upstream.in_flight：正在进行的Flask调用数</li>
+ * </ul>
+ * 各阶段同时产生JFR事件，并计入慢请求记录。
+ */
+@Component
+public class RecipeMetrics {
+
+    public enum Stage {
+        FRIDGE_LOAD("fridge_load"),
+        CACHE_KEY("cache_key"),
+        REDIS_GET("redis_get"),
+        REDIS_SET("redis_set"),
+        FLASK_CALL("flask_call"),
+        JSON_PARSE("json_parse"),
+        MISSING_INGREDIENTS("missing_ingredients");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    public enum Outcome {
+        HIT("hit"),
+        MISS("miss"),
+        PARSE_FAILURE("parse_failure"),
+        EMPTY_RESULT("empty_result");
+
+        private final String tag;
+
+        Outcome(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final MeterRegistry registry;
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Map<Outcome, Counter> outcomeCounters = new EnumMap<>(Outcome.class);
+    private final Map<String, Timer> recommendTimers = new ConcurrentHashMap<>();
+    private final AtomicInteger upstreamInFlight = new AtomicInteger();
+
+    public RecipeMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("recipe.stage")
+                    .description("Time spent in each stage of the recipe recommendation pipeline")
+                    .tag("stage", stage.tag)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        for (Outcome outcome : Outcome.values()) {
+            outcomeCounters.put(outcome, Counter.builder("recipe.recommend.outcome")
+                    .tag("outcome", outcome.tag)
+                    .register(registry));
+        }
+        Gauge.builder("recipe.upstream.in_flight", upstreamInFlight, AtomicInteger::get)
+                .description("Flask generate calls currently in progress on this node")
+                .register(registry);
+    }
+
+    /**
+     * 开始一个阶段，同时产生JFR事件并计入当前请求的慢请求明细（见 {@link RequestTrace}）
+     */
+    public Sample start(Stage stage) {
+        return new Sample(stageTimers.get(stage), RequestTrace.stage(stage.tag), Timer.start(registry));
+    }
+
+    public void stop(Sample sample) {
+        sample.span.close();
+        sample.timerSample.stop(sample.timer);
+    }
+
+    public Timer.Sample startRecommend() {
+        return Timer.start(registry);
+    }
+
+    /**
+     * 记录一次推荐请求的总耗时
+     *
+     * @param source 结果来源：cache、corpus、generated、fallback；
+     *               empty 为Flask没有返回内容，busy 为无法降级而拒绝，error 为处理失败返回空列表
+     */
+    public void stopRecommend(Timer.Sample sample, String source) {
+        sample.stop(recommendTimers.computeIfAbsent(source, key -> Timer.builder("recipe.recommend")
+                .description("End-to-end recipe recommendation time")
+                .tag("source", key)
+                .publishPercentileHistogram()
+                .register(registry)));
+    }
+
+    public void record(Outcome outcome) {
+        outcomeCounters.get(outcome).increment();
+    }
+
+    public void upstreamCallStarted() {
+        upstreamInFlight.incrementAndGet();
+    }
+
+    public void upstreamCallFinished() {
+        upstreamInFlight.decrementAndGet();
+    }
+
+    public static final class Sample {
+        private final Timer timer;
+        private final RequestTrace.Span span;
+        private final Timer.Sample timerSample;
+
+        private Sample(Timer timer, RequestTrace.Span span, Timer.Sample timerSample) {
+            this.timer = timer;
+            this.span = span;
+            this.timerSample = timerSample;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package fridget.fridget.recipe;
+
+import fridget.fridget.ingredient.IngredientEmbeddings;
+import fridget.fridget.ingredient.IngredientNormalizer;
+import fridget.fridget.user.dto.UserPreferenceDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 按用户偏好为食谱打分排序，替代Flask中基于spaCy的重排。
+ * <p>
+ * 特征与原Python实现一致：肉、鱼、蛋、奶、蔬菜五个类别得分（食材与类别词相似度大于0.3的部分乘以素食类型权重之和），
+ * 惩罚项（荤食得分之和，最多为-5；与过敏原相似度大于0.15的食材再扣分）和奖励项（蔬菜得分、辣度接近）。
+ * 与用户向量 [meatConsumption, fishConsumption, 0, 0, vegeConsumption, 0, 0] 的欧氏距离越小排名越靠前。
+ * <p>
+ * 每个食谱的类别相似度与用户无关，第一次打分时计算并保存在食谱上，之后每次打分只剩过敏原比较和几次浮点运算。
+ * <p>
+ * 打分依赖 ingredient.embeddings-location 导出的词向量（见 flask/export_ingredient_vectors.py）。
+ * 没有加载词向量时所有类别得分为0，无法代替Flask的排序：此时 {@link #isEnabled()} 为false，
+ * Flask照常按偏好排序，{@link #rank} 保持Flask返回的顺序。
+ */
+@Slf4j
+@Component
+public class RecipePreferenceScorer {
+
+    private static final String[] CATEGORIES = {"meat", "fish", "egg", "dairy", "vegetable"};
+    private static final int MEAT = 0;
+    private static final int FISH = 1;
+    private static final int EGG = 2;
+    private static final int DAIRY = 3;
+    private static final int VEGETABLE = 4;
+
+    private static final double CATEGORY_THRESHOLD = 0.3;
+    private static final double ALLERGY_THRESHOLD = 0.15;
+
+    // 素食类型 -> 五个类别的权重，与Flask中的vegan_dict一致
+    private static final Map<String, double[]> VEGAN_WEIGHTS = new HashMap<>();
+    private static final double[] DEFAULT_WEIGHTS = {1, 1, 1, 1, 1};
+
+    static {
+        VEGAN_WEIGHTS.put("strict", new double[]{-1, -1, -1, -1, 1});
+        VEGAN_WEIGHTS.put("lacto", new double[]{-1, -1, -1, 1, 1});
+        VEGAN_WEIGHTS.put("ovo", new double[]{-1, -1, 1, -1, 1});
+        VEGAN_WEIGHTS.put("pescatarian", new double[]{-1, 1, 1, 1, 1});
+        VEGAN_WEIGHTS.put("flexitarian", new double[]{0.5, 0.5, 1, 1, 1});
+        VEGAN_WEIGHTS.put("none", DEFAULT_WEIGHTS);
+    }
+
+    private final IngredientEmbeddings embeddings;
+    private final IngredientNormalizer normalizer;
+    private final int[] categoryIds = new int[CATEGORIES.length];
+
+    public RecipePreferenceScorer(IngredientEmbeddings embeddings, IngredientNormalizer normalizer) {
+        this.embeddings = embeddings;
+        this.normalizer = normalizer;
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            categoryIds[i] = embeddings.idOf(CATEGORIES[i]);
+        }
+        if (!isEnabled()) {
+            log.warn("未加载食材词向量（ingredient.embeddings-location），按偏好排序仍由Flask完成");
+        }
+    }
+
+    /**
+     * 是否在Java端按偏好排序；为false时应让Flask排序（不发送skipRanking）
+     */
+    public boolean isEnabled() {
+        return embeddings.size() > 0;
+    }
+
+    /**
+     * 按用户偏好对食谱原地排序，最符合偏好的在前；偏好为空或未启用时保持原顺序
+     */
+    public void rank(List<Recipe> recipes, UserPreferenceDto preferences) {
+        if (!isEnabled() || preferences == null || recipes.size() < 2) {
+            return;
+        }
+        Allergens allergens = allergens(preferences);
+        Map<Recipe, Double> distances = new IdentityHashMap<>();
+        for (Recipe recipe : recipes) {
+            distances.put(recipe, distance(features(recipe, preferences, allergens), preferences));
+        }
+        recipes.sort((a, b) -> Double.compare(distances.get(a), distances.get(b)));
+    }
+
+    /**
+     * 计算食谱的7维特征：[肉, 鱼, 蛋, 奶, 蔬菜, 惩罚, 奖励]
+     */
+    double[] features(Recipe recipe, UserPreferenceDto preferences, Allergens allergens) {
+        Features cached = index(recipe);
+        double[] weights = VEGAN_WEIGHTS.getOrDefault(preferences.getVegan(), DEFAULT_WEIGHTS);
+        double[] scores = new double[CATEGORIES.length];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = cached.categorySums[i] * weights[i];
+        }
+
+        double penalty = Math.min(scores[MEAT] + scores[FISH] + scores[EGG] + scores[DAIRY], -5);
+        double reward = scores[VEGETABLE] > 2 ? scores[VEGETABLE] + 1 : scores[VEGETABLE];
+
+        for (int a = 0; a < allergens.vectorIds.length; a++) {
+            for (int i = 0; i < cached.vectorIds.length; i++) {
+                double similarity = allergens.canonicalNames[a].equals(cached.canonicalNames[i])
+                        ? 1.0 : embeddings.cosine(allergens.vectorIds[a], cached.vectorIds[i]);
+                if (similarity > ALLERGY_THRESHOLD) {
+                    penalty -= Math.max(5, 10 * similarity);
+                }
+            }
+        }
+
+        if (Math.abs(recipe.getSpiceLevel() - preferences.getSpiciness()) <= 1) {
+            reward += 0.5;
+        }
+        return new double[]{scores[MEAT], scores[FISH], scores[EGG], scores[DAIRY], scores[VEGETABLE],
+                penalty, reward};
+    }
+
+    private static double distance(double[] features, UserPreferenceDto preferences) {
+        double[] user = {preferences.getMeatConsumption(), preferences.getFishConsumption(), 0, 0,
+                preferences.getVegeConsumption(), 0, 0};
+        double sum = 0;
+        for (int i = 0; i < user.length; i++) {
+            double diff = features[i] - user[i];
+            sum += diff * diff;
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * 每次排序计算一次过敏原的向量ID和规范名称，不在每个食谱上重复规范化
+     */
+    Allergens allergens(UserPreferenceDto preferences) {
+        List<String> allergies = preferences.getAllergies() == null
+                ? Collections.emptyList() : preferences.getAllergies();
+        int[] vectorIds = new int[allergies.size()];
+        String[] canonicalNames = new String[allergies.size()];
+        for (int i = 0; i < vectorIds.length; i++) {
+            vectorIds[i] = vectorIdOf(allergies.get(i));
+            canonicalNames[i] = normalizer.normalize(allergies.get(i));
+        }
+        return new Allergens(vectorIds, canonicalNames);
+    }
+
+    /**
+     * 计算并保存食谱与用户无关的部分：各食材的向量ID和五个类别的相似度之和
+     */
+    private Features index(Recipe recipe) {
+        Features features = recipe.getPreferenceFeatures();
+        if (features != null) {
+            return features;
+        }
+        List<Ingredient> ingredients = recipe.getIngredients() == null
+                ? Collections.emptyList() : recipe.getIngredients();
+        int[] vectorIds = new int[ingredients.size()];
+        String[] canonicalNames = new String[ingredients.size()];
+        double[] categorySums = new double[CATEGORIES.length];
+        for (int i = 0; i < vectorIds.length; i++) {
+            String name = ingredients.get(i).getName();
+            vectorIds[i] = vectorIdOf(name);
+            canonicalNames[i] = normalizer.normalize(name);
+            for (int c = 0; c < CATEGORIES.length; c++) {
+                double similarity = embeddings.cosine(categoryIds[c], vectorIds[i]);
+                if (similarity > CATEGORY_THRESHOLD) {
+                    categorySums[c] += similarity;
+                }
+            }
+        }
+        features = new Features(vectorIds, canonicalNames, categorySums);
+        recipe.setPreferenceFeatures(features);
+        return features;
+    }
+
+    // 先按原名（小写）查找向量，找不到再按规范名称查找
+    private int vectorIdOf(String name) {
+        if (name == null) {
+            return IngredientEmbeddings.UNKNOWN;
+        }
+        int id = embeddings.idOf(name.trim().toLowerCase(Locale.ROOT));
+        return id != IngredientEmbeddings.UNKNOWN ? id : embeddings.idOf(normalizer.normalize(name));
+    }
+
+    static final class Allergens {
+        private final int[] vectorIds;
+        private final String[] canonicalNames;
+
+        private Allergens(int[] vectorIds, String[] canonicalNames) {
+            this.vectorIds = vectorIds;
+            this.canonicalNames = canonicalNames;
+        }
+    }
+
+    /**
+     * 食谱中与用户无关的打分特征，创建后不再修改
+     */
+    public static final class Features {
+        private final int[] vectorIds;
+        private final String[] canonicalNames;
+        private final double[] categorySums;
+
+        Features(int[] vectorIds, String[] canonicalNames, double[] categorySums) {
+            this.vectorIds = vectorIds;
+            this.canonicalNames = canonicalNames;
+            this.categorySums = categorySums;
+        }
+    }
+}
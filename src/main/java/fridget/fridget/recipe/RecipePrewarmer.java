@@ -0,0 +1,134 @@
+package fridget.fridget.recipe;
+
+import fridget.fridget.common.Debouncer;
+import fridget.fridget.common.StatsSource;
+import fridget.fridget.ingredient.FridgeChangedEvent;
+import fridget.fridget.ingredient.IngredientNormalizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 冰箱变化后预先生成食谱，使随后的推荐请求命中缓存。
+ * <p>
+ * 同一用户连续编辑时防抖（最后一次编辑后安静 debounceMillis 才执行），一串编辑只生成一次；
+ * 生成在容量很小的 recipePrewarmExecutor 中进行，队列满时丢弃。
+ * <p>
+ * 旧冰箱的缓存不主动删除：缓存键由冰箱内容决定、被所有相同冰箱的用户共享，
+ * 无法可靠地判断是否还有其他用户在使用（从未编辑过冰箱的用户不会被记录），删除只会让他们的下一次推荐未命中。
+ * 不再使用的缓存在过期时间到达后由Redis清除。
+ */
+@Slf4j
+@Component
+public class RecipePrewarmer implements StatsSource, DisposableBean {
+
+    private final RecipeService recipeService;
+    private final IngredientNormalizer ingredientNormalizer;
+    private final ThreadPoolExecutor executor;
+    private final boolean enabled;
+    private final ScheduledExecutorService scheduler;
+    private final Debouncer<String, FridgeChangedEvent> debouncer;
+
+    private final LongAdder events = new LongAdder();
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public RecipePrewarmer(RecipeService recipeService, IngredientNormalizer ingredientNormalizer,
+                           @Qualifier("recipePrewarmExecutor") ThreadPoolExecutor executor,
+                           @Value("${recipe.prewarm.enabled:true}") boolean enabled,
+                           @Value("${recipe.prewarm.debounce-millis:3000}") long debounceMillis) {
+        this.recipeService = recipeService;
+        this.ingredientNormalizer = ingredientNormalizer;
+        this.executor = executor;
+        this.enabled = enabled;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "recipe-prewarm-debounce");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 合并后保留第一次编辑前的冰箱和最后一次编辑后的冰箱
+        this.debouncer = new Debouncer<>(scheduler, debounceMillis,
+                (first, latest) -> new FridgeChangedEvent(latest.getUserId(),
+                        first.getPreviousIngredients(), latest.getCurrentIngredients()),
+                (userId, change) -> submit(change));
+    }
+
+    @EventListener
+    public void onFridgeChanged(FridgeChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        events.increment();
+        debouncer.submit(event.getUserId(), event);
+    }
+
+    private void submit(FridgeChangedEvent change) {
+        try {
+            executor.execute(() -> prewarm(change));
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+        }
+    }
+
+    private void prewarm(FridgeChangedEvent change) {
+        runs.increment();
+        String previousKey = cacheKeyOf(change.getPreviousIngredients());
+        String currentKey = cacheKeyOf(change.getCurrentIngredients());
+        // 冰箱为空，或规范化后没有变化（例如删掉又加回同一食材）
+        if (currentKey == null || currentKey.equals(previousKey)) {
+            return;
+        }
+        try {
+            if (recipeService.prewarm(change.getUserId(), change.getCurrentIngredients())) {
+                generated.increment();
+            }
+        } catch (Exception e) {
+            failures.increment();
+            log.warn("预生成食谱失败 userId={}: {}", change.getUserId(), e.toString());
+        }
+    }
+
+    private String cacheKeyOf(List<String> ingredients) {
+        SortedSet<String> fridge = ingredientNormalizer.normalizeAll(ingredients);
+        return fridge.isEmpty() ? null : RecipeService.generateCacheKey(fridge);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public String statsName() {
+        return "recipe.prewarm";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("events", events.sum());
+        stats.put("coalesced", debouncer.coalescedCount());
+        stats.put("pending", debouncer.pendingCount());
+        stats.put("runs", runs.sum());
+        stats.put("generated", generated.sum());
+        stats.put("failures", failures.sum());
+        stats.put("dropped", dropped.sum());
+        return stats;
+    }
+}
@@ -1,20 +1,40 @@
 package fridget.fridget.recipe;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import fridget.fridget.common.PayloadLogSampler;
+import fridget.fridget.common.RequestTrace;
+import fridget.fridget.common.ServiceBusyException;
+import fridget.fridget.common.SingleFlight;
+import fridget.fridget.common.SlowRequestRecorder;
+import fridget.fridget.common.UpstreamUnavailableException;
+import fridget.fridget.ingredient.IngredientNormalizer;
 import fridget.fridget.ingredient.IngredientService;
 import fridget.fridget.ingredient.UserIngredient;
 import fridget.fridget.user.UserService;
 import fridget.fridget.user.dto.UserPreferenceDto;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.http.*;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.ResourceAccessException;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 // 内部类用于解析Flask返回的JSON结构
 class RecipeWrapper {
@@ -38,47 +58,78 @@ class RecipeWrapper {
     }
 }
 
+@Slf4j
 @Service
 public class RecipeService {
 
     private final IngredientService ingredientService;
     private final UserService userService;
     private final ObjectMapper objectMapper;
-    private final RestTemplate restTemplate;
+    private final ObjectReader recipeListReader;
+    private final FlaskRecipeClient flaskRecipeClient;
     private final RedisTemplate<String, String> redisTemplate;
+    private final SingleFlight<String, String> generationFlight;
+    private final RecipeGenerationLock generationLock;
+    private final RecipeLocalCache recipeLocalCache;
+    private final IngredientNormalizer ingredientNormalizer;
+    private final RecipeIngredientMatcher ingredientMatcher;
+    private final RecipeCorpus recipeCorpus;
+    private final RecipePreferenceScorer preferenceScorer;
+    private final RecipeUpstreamGuard upstreamGuard;
+    private final RecipeMetrics metrics;
+    private final SlowRequestRecorder slowRequestRecorder;
+    private final PayloadLogSampler payloadLogSampler;
 
     // 缓存键前缀
     private static final String RECIPE_CACHE_PREFIX = "recipe:";
+    // 过期副本键前缀，Flask不可用时降级使用
+    private static final String STALE_CACHE_PREFIX = "recipe:stale:";
     // 缓存过期时间（24小时）
     private static final long CACHE_EXPIRATION_HOURS = 24;
+    // 过期副本保留时间（7天）
+    private static final long STALE_EXPIRATION_HOURS = 24 * 7;
 
     public RecipeService(IngredientService ingredientService, UserService userService,
-            RedisTemplate<String, String> redisTemplate) {
+            FlaskRecipeClient flaskRecipeClient, RedisTemplate<String, String> redisTemplate,
+            SingleFlight<String, String> generationFlight, RecipeGenerationLock generationLock,
+            RecipeLocalCache recipeLocalCache, IngredientNormalizer ingredientNormalizer,
+            RecipeIngredientMatcher ingredientMatcher, RecipeCorpus recipeCorpus,
+            RecipePreferenceScorer preferenceScorer, RecipeUpstreamGuard upstreamGuard, RecipeMetrics metrics,
+            SlowRequestRecorder slowRequestRecorder, PayloadLogSampler payloadLogSampler) {
         this.ingredientService = ingredientService;
         this.userService = userService;
         this.objectMapper = new ObjectMapper();
-        this.restTemplate = new RestTemplate();
+        this.recipeListReader = objectMapper.readerFor(new TypeReference<List<RecipeWrapper>>() {
+        });
+        this.flaskRecipeClient = flaskRecipeClient;
         this.redisTemplate = redisTemplate;
+        this.generationFlight = generationFlight;
+        this.generationLock = generationLock;
+        this.recipeLocalCache = recipeLocalCache;
+        this.ingredientNormalizer = ingredientNormalizer;
+        this.ingredientMatcher = ingredientMatcher;
+        this.recipeCorpus = recipeCorpus;
+        this.preferenceScorer = preferenceScorer;
+        this.upstreamGuard = upstreamGuard;
+        this.metrics = metrics;
+        this.slowRequestRecorder = slowRequestRecorder;
+        this.payloadLogSampler = payloadLogSampler;
     }
 
     /**
-     * 根据用户食材列表生成缓存键
-     * 
-     * @param userIngredients 用户食材列表
+     * 根据规范化后的食材集合生成缓存键
+     *
+     * @param canonicalIngredients 已规范化、去重并排序的食材名称，见 {@link IngredientNormalizer#normalizeAll}
      * @return 缓存键
      */
-    private String generateCacheKey(List<String> userIngredients) {
+    static String generateCacheKey(SortedSet<String> canonicalIngredients) {
         try {
-            // 对食材列表进行排序以确保一致性
-            List<String> sortedIngredients = new ArrayList<>(userIngredients);
-            Collections.sort(sortedIngredients);
-
-            // 将食材列表转换为字符串
-            String ingredientsString = String.join(",", sortedIngredients);
+            // 将食材集合转换为字符串（已排序，保证一致性）
+            String ingredientsString = String.join(",", canonicalIngredients);
 
             // 使用MD5生成哈希值作为缓存键的一部分
             MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] hashBytes = md.digest(ingredientsString.getBytes());
+            byte[] hashBytes = md.digest(ingredientsString.getBytes(StandardCharsets.UTF_8));
             StringBuilder sb = new StringBuilder();
             for (byte b : hashBytes) {
                 sb.append(String.format("%02x", b));
@@ -87,162 +138,603 @@ public class RecipeService {
             return RECIPE_CACHE_PREFIX + sb.toString();
         } catch (NoSuchAlgorithmException e) {
             // 如果MD5不可用，使用简单的哈希码
-            return RECIPE_CACHE_PREFIX + Math.abs(userIngredients.hashCode());
+            return RECIPE_CACHE_PREFIX + Math.abs(canonicalIngredients.hashCode());
         }
     }
 
     /**
      * 从缓存获取食谱
-     * 
+     *
      * @param cacheKey 缓存键
      * @return 缓存的食谱列表，如果不存在则返回null
      */
     private List<Recipe> getRecipesFromCache(String cacheKey) {
+        // 先查本地L1，命中时无需访问Redis和反序列化
+        List<Recipe> localRecipes = recipeLocalCache.getIfPresent(cacheKey);
+        if (localRecipes != null) {
+            metrics.record(RecipeMetrics.Outcome.HIT);
+            return localRecipes;
+        }
         try {
-            String cachedJson = redisTemplate.opsForValue().get(cacheKey);
+            String cachedJson = readCachedJson(cacheKey);
+            recipeLocalCache.recordL2(cachedJson != null);
             if (cachedJson != null) {
-                System.out.println("🎯 从缓存获取食谱: " + cacheKey);
-                List<RecipeWrapper> recipeWrappers = objectMapper.readValue(cachedJson,
-                        new TypeReference<List<RecipeWrapper>>() {
-                        });
-                List<Recipe> recipes = new ArrayList<>();
-                for (RecipeWrapper wrapper : recipeWrappers) {
-                    recipes.add(wrapper.getRecipe());
-                }
-                return recipes;
+                log.debug("从Redis缓存获取食谱 cacheKey={}", cacheKey);
+                List<Recipe> recipes = parseRecipes(cachedJson);
+                recipeCorpus.remember(recipes);
+                metrics.record(RecipeMetrics.Outcome.HIT);
+                return recipeLocalCache.put(cacheKey, recipes, cachedJson.length());
             }
         } catch (Exception e) {
-            System.out.println("⚠️ 缓存读取失败: " + e.getMessage());
+            metrics.record(RecipeMetrics.Outcome.PARSE_FAILURE);
+            log.warn("缓存解析失败 cacheKey={} error={}", cacheKey, e.toString());
         }
+        metrics.record(RecipeMetrics.Outcome.MISS);
         return null;
     }
 
     /**
-     * 将食谱存储到缓存
-     * 
+     * 读取缓存中的原始JSON，Redis异常时视为未命中
+     */
+    private String readCachedJson(String cacheKey) {
+        RecipeMetrics.Sample sample = metrics.start(RecipeMetrics.Stage.REDIS_GET);
+        try {
+            return redisTemplate.opsForValue().get(cacheKey);
+        } catch (Exception e) {
+            log.warn("缓存读取失败 cacheKey={} error={}", cacheKey, e.toString());
+            return null;
+        } finally {
+            metrics.stop(sample);
+        }
+    }
+
+    /**
+     * 在租约保护下将生成的食谱写入缓存；租约已被其他节点接管时放弃写入（由新的持有者写入）
+     *
      * @param cacheKey    缓存键
      * @param jsonContent Flask返回的原始JSON内容
      */
-    private void saveRecipesToCache(String cacheKey, String jsonContent) {
+    private void saveGeneratedRecipes(RecipeGenerationLock.Lease lease, String cacheKey, String jsonContent) {
+        RecipeMetrics.Sample sample = metrics.start(RecipeMetrics.Stage.REDIS_SET);
+        boolean saved;
         try {
-            redisTemplate.opsForValue().set(cacheKey, jsonContent, CACHE_EXPIRATION_HOURS, TimeUnit.HOURS);
-            System.out.println("💾 食谱已缓存: " + cacheKey + " (过期时间: " + CACHE_EXPIRATION_HOURS + "小时)");
+            saved = generationLock.saveIfHolder(lease, cacheKey, jsonContent,
+                    TimeUnit.HOURS.toSeconds(CACHE_EXPIRATION_HOURS));
+        } finally {
+            metrics.stop(sample);
+        }
+        if (saved) {
+            recipeLocalCache.invalidate(cacheKey);
+            saveStaleCopy(cacheKey, jsonContent);
+            log.debug("食谱已缓存 cacheKey={} ttlHours={}", cacheKey, CACHE_EXPIRATION_HOURS);
+        }
+    }
+
+    private static String staleKey(String cacheKey) {
+        return STALE_CACHE_PREFIX + cacheKey.substring(RECIPE_CACHE_PREFIX.length());
+    }
+
+    /**
+     * 保存一份保留时间更长的副本，正常缓存过期后Flask又不可用时降级使用
+     */
+    private void saveStaleCopy(String cacheKey, String jsonContent) {
+        RecipeMetrics.Sample sample = metrics.start(RecipeMetrics.Stage.REDIS_SET);
+        try {
+            redisTemplate.opsForValue().set(staleKey(cacheKey), jsonContent, STALE_EXPIRATION_HOURS, TimeUnit.HOURS);
         } catch (Exception e) {
-            System.out.println("⚠️ 缓存存储失败: " + e.getMessage());
+            log.warn("过期副本存储失败 cacheKey={} error={}", cacheKey, e.toString());
+        } finally {
+            metrics.stop(sample);
         }
     }
 
-    public List<Recipe> generateRecipes() {
-        long totalStart = System.currentTimeMillis();
+    /**
+     * Flask不可用时的降级结果：先用过期副本，其次不限覆盖率从语料库取食谱
+     *
+     * @return 降级食谱（已设置缺失食材并按偏好排序）
+     * @throws UpstreamUnavailableException 没有可用的降级结果
+     */
+    private List<Recipe> fallbackRecipes(String cacheKey, SortedSet<String> fridge, UserPreferenceDto userPreferenceDto,
+            UpstreamUnavailableException cause) {
+        List<Recipe> recipes = null;
+        String staleJson = readCachedJson(staleKey(cacheKey));
+        if (staleJson != null) {
+            try {
+                recipes = parseRecipes(staleJson);
+                upstreamGuard.recordStaleFallback();
+                log.info("Flask不可用，使用过期缓存 cacheKey={}", cacheKey);
+            } catch (IOException e) {
+                log.warn("过期缓存解析失败 cacheKey={} error={}", cacheKey, e.toString());
+            }
+        }
+        if (recipes == null || recipes.isEmpty()) {
+            recipes = recipeCorpus.recommendAny(ingredientMatcher.encodeFridge(fridge), allergyBits(userPreferenceDto));
+            if (recipes.isEmpty()) {
+                throw cause;
+            }
+            upstreamGuard.recordCorpusFallback();
+            log.info("Flask不可用，从语料库降级推荐 cacheKey={} recipes={}", cacheKey, recipes.size());
+        }
+        matchMissingIngredients(recipes, fridge);
+        preferenceScorer.rank(recipes, userPreferenceDto);
+        return recipes;
+    }
+
+    /**
+     * 获取用户冰箱中的食材名称
+     */
+    private List<String> loadUserIngredientNames(String userId) {
+        RecipeMetrics.Sample sample = metrics.start(RecipeMetrics.Stage.FRIDGE_LOAD);
         try {
-            // 1. 사용자 재료 가져오기
-            List<UserIngredient> userIngredientsList = ingredientService.findMyIngredients();
+            List<UserIngredient> userIngredientsList = ingredientService.findIngredientsByUserId(userId);
             List<String> userIngredients = new ArrayList<>();
             for (UserIngredient ingredient : userIngredientsList) {
                 userIngredients.add(ingredient.getName());
             }
-            System.out.println("🥬 사용자 재료: " + userIngredients);
+            return userIngredients;
+        } finally {
+            metrics.stop(sample);
+        }
+    }
+
+    /**
+     * 计算每个食谱相对于冰箱的缺失食材
+     */
+    private void matchMissingIngredients(List<Recipe> recipes, SortedSet<String> fridge) {
+        RecipeMetrics.Sample sample = metrics.start(RecipeMetrics.Stage.MISSING_INGREDIENTS);
+        ingredientMatcher.matchAll(recipes, fridge);
+        metrics.stop(sample);
+    }
+
+    /**
+     * 规范化食材并生成缓存键
+     */
+    private String cacheKeyOf(SortedSet<String> fridge) {
+        RecipeMetrics.Sample sample = metrics.start(RecipeMetrics.Stage.CACHE_KEY);
+        String cacheKey = generateCacheKey(fridge);
+        metrics.stop(sample);
+        return cacheKey;
+    }
+
+    /**
+     * 从语料库按冰箱覆盖率推荐食谱，排除含有用户过敏原的食谱
+     *
+     * @return 推荐结果，覆盖率足够的食谱不足时返回null
+     */
+    private List<Recipe> recommendFromCorpus(UserPreferenceDto userPreferenceDto, SortedSet<String> fridge) {
+        return recipeCorpus.recommend(ingredientMatcher.encodeFridge(fridge), allergyBits(userPreferenceDto));
+    }
+
+    private BitSet allergyBits(UserPreferenceDto userPreferenceDto) {
+        List<String> allergies = userPreferenceDto.getAllergies() == null
+                ? Collections.emptyList() : userPreferenceDto.getAllergies();
+        return ingredientMatcher.encodeFridge(ingredientNormalizer.normalizeAll(allergies));
+    }
+
+    public List<Recipe> generateRecipes() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return generateRecipes(authentication.getName());
+    }
+
+    /**
+     * 为指定用户生成食谱，不依赖当前线程的安全上下文
+     *
+     * @param userId 用户ID
+     * @return 食谱列表，失败时返回空列表
+     * @throws UpstreamUnavailableException Flask不可用且没有过期缓存或语料库可以降级
+     */
+    public List<Recipe> generateRecipes(String userId) {
+        return traced(userId, true);
+    }
+
+    /**
+     * 与 {@link #generateRecipes(String)} 相同，但处理失败时抛出异常而不是返回空列表（异步任务使用，据此把任务标记为FAILED）
+     *
+     * @param userId 用户ID
+     * @return 食谱列表
+     * @throws UpstreamUnavailableException Flask不可用且没有过期缓存或语料库可以降级
+     * @throws IllegalStateException 其他处理失败
+     */
+    public List<Recipe> generateRecipesOrThrow(String userId) {
+        return traced(userId, false);
+    }
 
-            // 2. 缓存键生成
-            String cacheKey = generateCacheKey(userIngredients);
-            System.out.println("🔑 缓存键: " + cacheKey);
+    private List<Recipe> traced(String userId, boolean emptyOnFailure) {
+        // HTTP请求已由 RequestTraceFilter 开始记录，这里只对异步任务线程生效
+        RequestTrace trace = slowRequestRecorder.begin("recipe.generate");
+        try {
+            return recommend(userId, emptyOnFailure);
+        } finally {
+            slowRequestRecorder.finish(trace);
+        }
+    }
+
+    private List<Recipe> recommend(String userId, boolean emptyOnFailure) {
+        long totalStart = System.currentTimeMillis();
+        Timer.Sample total = metrics.startRecommend();
+        long deadline = upstreamGuard.newDeadline();
+        // 每条返回路径设置结果来源，异常时保持 error
+        String source = "error";
+        try {
+            // 1. 사용자 재료 가져오기
+            List<String> userIngredients = loadUserIngredientNames(userId);
+            log.debug("用户食材 userId={} ingredients={}", userId, userIngredients);
+
+            // 2. 缓存键生成（规范化后的食材集合，同义词、大小写、单复数不同的冰箱共享缓存）
+            SortedSet<String> fridge = ingredientNormalizer.normalizeAll(userIngredients);
+            String cacheKey = cacheKeyOf(fridge);
+            log.debug("缓存键 userId={} cacheKey={}", userId, cacheKey);
+            UserPreferenceDto userPreferenceDto = userService.findPreferencesByUserId(userId);
 
             // 3. 缓存检查
             List<Recipe> cachedRecipes = getRecipesFromCache(cacheKey);
             if (cachedRecipes != null) {
                 // 计算缺失食材信息
-                for (Recipe recipe : cachedRecipes) {
-                    List<String> missingIngredients = new ArrayList<>();
-                    for (Ingredient ingredient : recipe.getIngredients()) {
-                        if (!userIngredients.contains(ingredient.getName().toLowerCase())) {
-                            missingIngredients.add(ingredient.getName());
-                        }
-                    }
-                    recipe.setMissingIngredients(missingIngredients);
-                }
+                matchMissingIngredients(cachedRecipes, fridge);
+                // 缓存按冰箱共享，排序按当前用户的偏好进行
+                preferenceScorer.rank(cachedRecipes, userPreferenceDto);
 
-                long totalEnd = System.currentTimeMillis();
-                System.out.println("总耗时（缓存命中）: " + (totalEnd - totalStart) + " ms");
+                log.debug("推荐完成 userId={} source=cache cacheKey={} elapsedMs={}",
+                        userId, cacheKey, System.currentTimeMillis() - totalStart);
+                source = "cache";
                 return cachedRecipes;
             }
 
-            System.out.println("🚫 缓存未命中，调用AI生成食谱...");
-
-            UserPreferenceDto userPreferenceDto = userService.findMyPreferences();
-            // 4. Flask
-            String flaskUrl = "http://localhost:5001/generate";
-
-            Map<String, Object> body = new HashMap<>();
-            body.put("userIngredients", userIngredients);
-            body.put("userPreferences", userPreferenceDto);
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
+            // 4. 语料库中覆盖率足够的食谱足够多时直接返回，不调用Flask
+            List<Recipe> corpusRecipes = recommendFromCorpus(userPreferenceDto, fridge);
+            if (corpusRecipes != null) {
+                preferenceScorer.rank(corpusRecipes, userPreferenceDto);
+                log.debug("推荐完成 userId={} source=corpus recipes={} elapsedMs={}",
+                        userId, corpusRecipes.size(), System.currentTimeMillis() - totalStart);
+                source = "corpus";
+                return corpusRecipes;
+            }
 
-            long callStart = System.currentTimeMillis();
-            ResponseEntity<String> response = restTemplate.postForEntity(flaskUrl, entity, String.class);
-            long callEnd = System.currentTimeMillis();
+            log.debug("缓存未命中，调用AI生成食谱 userId={} cacheKey={}", userId, cacheKey);
 
-            if (response.getStatusCode() != HttpStatus.OK) {
-                System.out.println("❌ Flask 서버 호출 실패: " + response.getStatusCode() + " - 不缓存失败结果");
+            // 5. 同一缓存键的并发未命中只调用一次Flask，其余请求共享结果或异常
+            String jsonContent;
+            try {
+                jsonContent = generationFlight.execute(cacheKey,
+                        () -> generateRecipesJson(userId, cacheKey, userIngredients, deadline));
+            } catch (UpstreamUnavailableException e) {
+                List<Recipe> fallback = fallbackRecipes(cacheKey, fridge, userPreferenceDto, e);
+                source = "fallback";
+                return fallback;
+            }
+            if (jsonContent == null) {
+                source = "empty";
                 return Collections.emptyList();
             }
 
-            // 5. 결과 파싱
-            String jsonContent = response.getBody();
-            System.out.println("Flask 응답 JSON: " + jsonContent);
+            // 6. 결과 파싱（解析结果同时放入L1，返回的是副本）
+            List<Recipe> recipes = recipeLocalCache.put(cacheKey, parseRecipes(jsonContent), jsonContent.length());
 
-            if (jsonContent == null || jsonContent.trim().isEmpty()) {
-                System.out.println("❌ Flask 返回空内容 - 不缓存失败结果");
-                return Collections.emptyList();
+            // 7. 재료 누락 정보 계산
+            matchMissingIngredients(recipes, fridge);
+            preferenceScorer.rank(recipes, userPreferenceDto);
+
+            log.info("推荐完成 userId={} source=generated cacheKey={} recipes={} elapsedMs={}",
+                    userId, cacheKey, recipes.size(), System.currentTimeMillis() - totalStart);
+            source = "generated";
+
+            return recipes;
+
+        } catch (ServiceBusyException e) {
+            source = "busy";
+            throw e;
+        } catch (Exception e) {
+            log.error("食谱推荐失败 userId={}", userId, e);
+            if (!emptyOnFailure) {
+                throw new IllegalStateException("Recipe generation failed.", e);
             }
+            return Collections.emptyList();
+        } finally {
+            metrics.stopRecommend(total, source);
+        }
+    }
 
-            List<RecipeWrapper> recipeWrappers;
-            List<Recipe> recipes;
-            try {
-                recipeWrappers = objectMapper.readValue(jsonContent, new TypeReference<List<RecipeWrapper>>() {
-                });
+    /**
+     * 冰箱变化后预先生成食谱（{@link RecipePrewarmer} 调用）。
+     * 缓存已有或语料库足够推荐时不调用Flask，生成结果写入缓存，下一次推荐直接命中。
+     *
+     * @param userIngredients 变化后的冰箱食材名称
+     * @return 是否调用了Flask并生成了食谱
+     * @throws UpstreamUnavailableException Flask不可用
+     */
+    boolean prewarm(String userId, List<String> userIngredients) throws Exception {
+        SortedSet<String> fridge = ingredientNormalizer.normalizeAll(userIngredients);
+        if (fridge.isEmpty()) {
+            return false;
+        }
+        String cacheKey = generateCacheKey(fridge);
+        if (readCachedJson(cacheKey) != null) {
+            return false;
+        }
+        UserPreferenceDto userPreferenceDto = userService.findPreferencesByUserId(userId);
+        if (recommendFromCorpus(userPreferenceDto, fridge) != null) {
+            return false;
+        }
+        long deadline = upstreamGuard.newDeadline();
+        String jsonContent = generationFlight.execute(cacheKey,
+                () -> generateRecipesJson(userId, cacheKey, userIngredients, deadline));
+        return jsonContent != null;
+    }
 
-                // RecipeWrapper에서 Recipe 객체만 추출
-                recipes = new ArrayList<>();
-                for (RecipeWrapper wrapper : recipeWrappers) {
-                    recipes.add(wrapper.getRecipe());
-                }
+    /**
+     * 缓存未命中时生成食谱JSON：集群内同一缓存键只有持有租约的节点调用Flask，其余节点等待结果
+     *
+     * @return 食谱JSON，失败时返回null
+     */
+    private String generateRecipesJson(String userId, String cacheKey, List<String> userIngredients,
+            long deadline) throws InterruptedException {
+        // 可能有请求刚刚完成生成并写入缓存，调用Flask前再检查一次
+        String cachedJson = readCachedJson(cacheKey);
+        if (cachedJson != null) {
+            return cachedJson;
+        }
+        return generationLock.generateOnce(cacheKey, () -> readCachedJson(cacheKey),
+                lease -> callFlask(userId, cacheKey, userIngredients, deadline, lease));
+    }
 
-                // 6. 成功时缓存结果
-                if (!recipes.isEmpty()) {
-                    saveRecipesToCache(cacheKey, jsonContent);
-                } else {
-                    System.out.println("⚠️ 生成的食谱列表为空 - 不缓存空结果");
-                }
+    /**
+     * 调用Flask生成食谱，成功时在租约保护下写入缓存并返回原始JSON。
+     * 返回为空或解析失败时返回null，不缓存失败结果。
+     *
+     * @return Flask返回的原始JSON，失败时返回null
+     * @throws UpstreamUnavailableException 被熔断、隔离或截止时间拒绝，或调用失败
+     */
+    private String callFlask(String userId, String cacheKey, List<String> userIngredients, long deadline,
+            RecipeGenerationLock.Lease lease) {
+        UserPreferenceDto userPreferenceDto = userService.findPreferencesByUserId(userId);
+        long callStart = System.currentTimeMillis();
+        RecipeMetrics.Sample sample = metrics.start(RecipeMetrics.Stage.FLASK_CALL);
+        metrics.upstreamCallStarted();
+        ResponseEntity<String> response;
+        try {
+            response = upstreamGuard.call(deadline,
+                    timeoutMillis -> flaskRecipeClient.generate(userIngredients, userPreferenceDto, timeoutMillis));
+        } finally {
+            metrics.upstreamCallFinished();
+            metrics.stop(sample);
+        }
+        log.debug("Flask调用完成 cacheKey={} status={} elapsedMs={}",
+                cacheKey, response.getStatusCodeValue(), System.currentTimeMillis() - callStart);
 
-            } catch (Exception parseException) {
-                System.out.println("❌ JSON解析失败: " + parseException.getMessage() + " - 不缓存失败结果");
-                return Collections.emptyList();
-            }
+        if (response.getStatusCode() != HttpStatus.OK) {
+            log.warn("Flask调用失败，不缓存失败结果 cacheKey={} status={}", cacheKey, response.getStatusCodeValue());
+            return null;
+        }
 
-            // 7. 재료 누락 정보 계산
-            for (Recipe recipe : recipes) {
-                List<String> missingIngredients = new ArrayList<>();
-                for (Ingredient ingredient : recipe.getIngredients()) {
-                    if (!userIngredients.contains(ingredient.getName().toLowerCase())) {
-                        missingIngredients.add(ingredient.getName());
-                    }
-                }
-                recipe.setMissingIngredients(missingIngredients);
+        String jsonContent = response.getBody();
+        // 响应体可能有几十KB，只在DEBUG下抽样并截断记录
+        if (log.isDebugEnabled()) {
+            String sampled = payloadLogSampler.sample(jsonContent);
+            if (sampled != null) {
+                log.debug("Flask响应 cacheKey={} chars={} body={}", cacheKey, jsonContent.length(), sampled);
             }
+        }
 
-            long totalEnd = System.currentTimeMillis();
-            System.out.println("🚀 Flask 호출 시간: " + (callEnd - callStart) + " ms");
-            System.out.println("⏱️ 총 소요 시간（AI生成）: " + (totalEnd - totalStart) + " ms ("
-                    + ((totalEnd - totalStart) / 1000.0) + "초)");
-            System.out.println("✅ 成功生成 " + recipes.size() + " 个食谱并已缓存");
+        if (jsonContent == null || jsonContent.trim().isEmpty()) {
+            metrics.record(RecipeMetrics.Outcome.EMPTY_RESULT);
+            log.warn("Flask返回空内容，不缓存失败结果 cacheKey={}", cacheKey);
+            return null;
+        }
+
+        List<Recipe> recipes;
+        try {
+            recipes = parseRecipes(jsonContent);
+            if (recipes.isEmpty()) {
+                metrics.record(RecipeMetrics.Outcome.EMPTY_RESULT);
+                log.warn("生成的食谱列表为空，不缓存空结果 cacheKey={}", cacheKey);
+                return null;
+            }
+        } catch (Exception parseException) {
+            metrics.record(RecipeMetrics.Outcome.PARSE_FAILURE);
+            log.warn("Flask响应解析失败，不缓存失败结果 cacheKey={} error={}", cacheKey, parseException.toString());
+            return null;
+        }
+        recipeCorpus.save(recipes);
+        saveGeneratedRecipes(lease, cacheKey, jsonContent);
+        return jsonContent;
+    }
 
+    /**
+     * 解析Flask返回的JSON，提取其中的Recipe对象，并计算食材位图
+     */
+    private List<Recipe> parseRecipes(String jsonContent) throws IOException {
+        RecipeMetrics.Sample sample = metrics.start(RecipeMetrics.Stage.JSON_PARSE);
+        try {
+            List<RecipeWrapper> recipeWrappers = recipeListReader.readValue(jsonContent);
+            // RecipeWrapper에서 Recipe 객체만 추출
+            List<Recipe> recipes = new ArrayList<>();
+            for (RecipeWrapper wrapper : recipeWrappers) {
+                ingredientMatcher.index(wrapper.getRecipe());
+                recipes.add(wrapper.getRecipe());
+            }
             return recipes;
+        } finally {
+            metrics.stop(sample);
+        }
+    }
+
+    /**
+     * 流式生成食谱：每解析出一个完整的食谱就立即交给consumer（已附带缺失食材信息）。
+     * 缓存或语料库命中时按用户偏好排序后推送；都未命中时边读取Flask响应边推送（按生成顺序），结束后写入缓存和语料库。
+     * 与 {@link #generateRecipes(String)} 共用合并和集群租约：同一缓存键只有一个请求调用Flask，
+     * 其余请求（流式或非流式、本节点或其他节点）等待结果写入缓存后整体推送。
+     * Flask不可用时与 {@link #generateRecipes(String)} 一样降级到过期缓存或语料库。
+     *
+     * @param userId   用户ID
+     * @param consumer 接收每个食谱的回调
+     * @return 推送的食谱数量
+     */
+    public int streamRecipes(String userId, Consumer<Recipe> consumer) throws IOException {
+        RequestTrace trace = slowRequestRecorder.begin("recipe.stream");
+        try {
+            return stream(userId, consumer);
+        } finally {
+            slowRequestRecorder.finish(trace);
+        }
+    }
+
+    private int stream(String userId, Consumer<Recipe> consumer) throws IOException {
+        long totalStart = System.currentTimeMillis();
+        List<String> userIngredients = loadUserIngredientNames(userId);
+        SortedSet<String> fridge = ingredientNormalizer.normalizeAll(userIngredients);
+        String cacheKey = cacheKeyOf(fridge);
+        UserPreferenceDto userPreferenceDto = userService.findPreferencesByUserId(userId);
+
+        // 缓存（L1或L2）命中时解析只需几毫秒，整体解析后按用户偏好排序再推送
+        List<Recipe> cachedRecipes = getRecipesFromCache(cacheKey);
+        if (cachedRecipes != null) {
+            matchMissingIngredients(cachedRecipes, fridge);
+            preferenceScorer.rank(cachedRecipes, userPreferenceDto);
+            cachedRecipes.forEach(consumer);
+            log.debug("流式推荐完成 userId={} source=cache cacheKey={} elapsedMs={}",
+                    userId, cacheKey, System.currentTimeMillis() - totalStart);
+            return cachedRecipes.size();
+        }
+
+        List<Recipe> corpusRecipes = recommendFromCorpus(userPreferenceDto, fridge);
+        if (corpusRecipes != null) {
+            preferenceScorer.rank(corpusRecipes, userPreferenceDto);
+            log.debug("流式推荐 userId={} source=corpus recipes={}", userId, corpusRecipes.size());
+            corpusRecipes.forEach(consumer);
+            return corpusRecipes.size();
+        }
 
+        log.debug("缓存未命中，流式调用AI生成食谱 userId={} cacheKey={}", userId, cacheKey);
+        long deadline = upstreamGuard.newDeadline();
+        // 只有本请求调用Flask时才会边生成边推送；共享其他请求的结果时为0，拿到完整结果后再推送
+        int[] streamed = new int[1];
+        String jsonContent;
+        try {
+            jsonContent = generationFlight.execute(cacheKey, () -> {
+                String cachedJson = readCachedJson(cacheKey);
+                if (cachedJson != null) {
+                    return cachedJson;
+                }
+                return generationLock.generateOnce(cacheKey, () -> readCachedJson(cacheKey),
+                        lease -> streamFromFlask(cacheKey, userIngredients, userPreferenceDto, fridge, deadline,
+                                recipe -> {
+                                    streamed[0]++;
+                                    consumer.accept(recipe);
+                                }, lease));
+            });
+        } catch (UpstreamUnavailableException e) {
+            // 已经推送了部分食谱时不再混入降级结果，不完整的结果也不写入缓存
+            if (streamed[0] > 0) {
+                throw e;
+            }
+            List<Recipe> fallback = fallbackRecipes(cacheKey, fridge, userPreferenceDto, e);
+            fallback.forEach(consumer);
+            return fallback.size();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for recipe generation");
         } catch (Exception e) {
-            e.printStackTrace();
-            return Collections.emptyList();
+            throw new IOException(e);
         }
+
+        if (jsonContent != null && streamed[0] == 0) {
+            // 其他请求或节点生成的结果：整体解析后按用户偏好排序再推送
+            List<Recipe> recipes = recipeLocalCache.put(cacheKey, parseRecipes(jsonContent), jsonContent.length());
+            matchMissingIngredients(recipes, fridge);
+            preferenceScorer.rank(recipes, userPreferenceDto);
+            recipes.forEach(consumer);
+            streamed[0] = recipes.size();
+        }
+        log.info("流式推荐完成 userId={} source=generated cacheKey={} recipes={} elapsedMs={}",
+                userId, cacheKey, streamed[0], System.currentTimeMillis() - totalStart);
+        return streamed[0];
     }
-}
\ No newline at end of file
+
+    /**
+     * 流式调用Flask，每解析出一个食谱就交给consumer；完整读完后在租约保护下写入缓存和语料库。
+     * 客户端中途断开时停止推送但继续读完响应，结果写入缓存供合并等待的请求和客户端重连使用。
+     *
+     * @return 完整结果的JSON，生成结果为空时返回null
+     * @throws UpstreamUnavailableException 被熔断、隔离或截止时间拒绝，或调用失败（包括流中途失败）
+     */
+    private String streamFromFlask(String cacheKey, List<String> userIngredients, UserPreferenceDto userPreferenceDto,
+            SortedSet<String> fridge, long deadline, Consumer<Recipe> consumer, RecipeGenerationLock.Lease lease) {
+        List<String> rawRecipes = new ArrayList<>();
+        List<Recipe> generated = new ArrayList<>();
+        boolean[] clientGone = new boolean[1];
+        RecipeMetrics.Sample sample = metrics.start(RecipeMetrics.Stage.FLASK_CALL);
+        metrics.upstreamCallStarted();
+        try {
+            upstreamGuard.call(deadline, timeoutMillis -> {
+                flaskRecipeClient.streamGenerate(userIngredients, userPreferenceDto, timeoutMillis, body -> {
+                    try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+                        readRecipeArray(parser, fridge, recipe -> {
+                            generated.add(recipe);
+                            if (clientGone[0]) {
+                                return;
+                            }
+                            try {
+                                consumer.accept(recipe);
+                            } catch (UncheckedIOException e) {
+                                clientGone[0] = true;
+                                log.debug("客户端已断开，继续读取生成结果 cacheKey={}", cacheKey);
+                            }
+                        }, rawRecipes);
+                    }
+                });
+                return null;
+            });
+        } finally {
+            metrics.upstreamCallFinished();
+            metrics.stop(sample);
+        }
+
+        if (rawRecipes.isEmpty()) {
+            metrics.record(RecipeMetrics.Outcome.EMPTY_RESULT);
+            log.warn("生成的食谱列表为空，不缓存空结果 cacheKey={}", cacheKey);
+            return null;
+        }
+        String jsonContent = "[" + String.join(",", rawRecipes) + "]";
+        recipeCorpus.save(generated);
+        saveGeneratedRecipes(lease, cacheKey, jsonContent);
+        return jsonContent;
+    }
+
+    /**
+     * 增量解析 [{"recipe": {...}, "score": 0.0}, ...] 数组，每读完一个元素就回调一次
+     *
+     * @param rawRecipes 收集每个元素的原始JSON，用于写入缓存
+     * @throws ResourceAccessException Flask在流中写入了错误元素，或数组没有正常结束（生成中途失败），
+     *                                 由保护层计为上游失败，不完整的结果不写入缓存
+     */
+    private int readRecipeArray(JsonParser parser, SortedSet<String> fridge, Consumer<Recipe> consumer,
+            List<String> rawRecipes) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IOException("Expected a JSON array of recipes");
+        }
+        int count = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+            JsonNode node = objectMapper.readTree(parser);
+            if (node.has("error")) {
+                throw new ResourceAccessException("Flask recipe stream failed: " + node.get("error").asText());
+            }
+            RecipeWrapper wrapper = objectMapper.treeToValue(node, RecipeWrapper.class);
+            if (wrapper.getRecipe() == null) {
+                continue;
+            }
+            rawRecipes.add(node.toString());
+            Recipe recipe = wrapper.getRecipe();
+            // 食谱中可能有第一次出现的食材，先编码食谱再编码冰箱
+            ingredientMatcher.matchAll(Collections.singletonList(recipe), fridge);
+            consumer.accept(recipe);
+            count++;
+        }
+        if (token != JsonToken.END_ARRAY) {
+            throw new ResourceAccessException("Flask recipe stream ended before the array was complete");
+        }
+        return count;
+    }
+}
@@ -0,0 +1,94 @@
+package fridget.fridget.recipe;
+
+import fridget.fridget.common.ServiceBusyException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以SSE方式推送食谱：每解析出一个食谱就发送一个recipe事件，全部完成后发送done事件
+ */
+@Slf4j
+@Service
+public class RecipeStreamService {
+
+    // Flask最长可能需要180秒，留出余量
+    private static final long STREAM_TIMEOUT_MILLIS = 200_000L;
+    private static final long RETRY_AFTER_MILLIS = 5_000L;
+
+    private final RecipeService recipeService;
+    private final ThreadPoolExecutor executor;
+
+    public RecipeStreamService(RecipeService recipeService,
+                               @Qualifier("recipeExecutor") ThreadPoolExecutor executor) {
+        this.recipeService = recipeService;
+        this.executor = executor;
+    }
+
+    public SseEmitter stream() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String userId = authentication.getName();
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MILLIS);
+        try {
+            executor.execute(() -> run(userId, emitter));
+        } catch (RejectedExecutionException e) {
+            // SSE响应无法再走JSON异常处理，直接推送busy事件并通过retry字段告知重连间隔
+            try {
+                emitter.send(SseEmitter.event().name("busy")
+                        .reconnectTime(RETRY_AFTER_MILLIS)
+                        .data("Too many recipe streams in progress, please retry later."));
+                emitter.complete();
+            } catch (IOException sendException) {
+                emitter.completeWithError(sendException);
+            }
+        }
+        return emitter;
+    }
+
+    private void run(String userId, SseEmitter emitter) {
+        try {
+            int count = recipeService.streamRecipes(userId, recipe -> send(emitter,
+                    SseEmitter.event().name("recipe").data(recipe, MediaType.APPLICATION_JSON)));
+            send(emitter, SseEmitter.event().name("done").data(count));
+            emitter.complete();
+        } catch (ServiceBusyException e) {
+            // Flask不可用且没有降级结果
+            try {
+                emitter.send(SseEmitter.event().name("busy")
+                        .reconnectTime(TimeUnit.SECONDS.toMillis(e.getRetryAfterSeconds()))
+                        .data(e.getMessage()));
+                emitter.complete();
+            } catch (Exception sendException) {
+                emitter.completeWithError(sendException);
+            }
+        } catch (Exception e) {
+            log.warn("食谱流式推送失败: {}", userId, e);
+            try {
+                emitter.send(SseEmitter.event().name("error").data("Recipe generation failed"));
+                emitter.complete();
+            } catch (Exception sendException) {
+                // 客户端已断开连接
+                emitter.completeWithError(sendException);
+            }
+        }
+    }
+
+    private void send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException e) {
+            // 客户端断开时停止推送；上游响应仍会读完并写入缓存（见 RecipeService#streamRecipes）
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package fridget.fridget.recipe;
+
+import fridget.fridget.common.CircuitBreaker;
+import fridget.fridget.common.StatsSource;
+import fridget.fridget.common.UpstreamUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * Flask调用的保护层：信号量隔离（限制同时进行的上游调用数）、熔断器（按失败率和慢调用率）和请求截止时间。
+ * <p>
+ * 每个请求在入口处得到一个截止时间，剩余时间随调用传给Flask（X-Request-Timeout-Ms），Flask据此缩短LLM超时。
+ * 任何一层拒绝或调用失败（{@link RestClientException}）都抛出 {@link UpstreamUnavailableException}，
+ * 由调用方降级到过期缓存或语料库。
+ */
+@Slf4j
+@Component
+public class RecipeUpstreamGuard implements StatsSource {
+
+    private final Semaphore bulkhead;
+    private final int maxConcurrent;
+    private final long bulkheadWaitMillis;
+    private final long deadlineMillis;
+    private final CircuitBreaker circuitBreaker;
+
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rejectedByBulkhead = new LongAdder();
+    private final LongAdder rejectedByCircuit = new LongAdder();
+    private final LongAdder deadlineExceeded = new LongAdder();
+    private final LongAdder staleFallbacks = new LongAdder();
+    private final LongAdder corpusFallbacks = new LongAdder();
+
+    public RecipeUpstreamGuard(@Value("${recipe.upstream.max-concurrent:16}") int maxConcurrent,
+                               @Value("${recipe.upstream.bulkhead-wait-millis:0}") long bulkheadWaitMillis,
+                               @Value("${recipe.upstream.deadline-millis:180000}") long deadlineMillis,
+                               @Value("${recipe.upstream.circuit.window-size:20}") int windowSize,
+                               @Value("${recipe.upstream.circuit.minimum-calls:5}") int minimumCalls,
+                               @Value("${recipe.upstream.circuit.failure-rate:0.5}") double failureRate,
+                               @Value("${recipe.upstream.circuit.slow-call-millis:90000}") long slowCallMillis,
+                               @Value("${recipe.upstream.circuit.slow-call-rate:0.8}") double slowCallRate,
+                               @Value("${recipe.upstream.circuit.open-millis:30000}") long openMillis) {
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.maxConcurrent = maxConcurrent;
+        this.bulkheadWaitMillis = bulkheadWaitMillis;
+        this.deadlineMillis = deadlineMillis;
+        this.circuitBreaker = new CircuitBreaker(windowSize, minimumCalls, failureRate,
+                slowCallMillis, slowCallRate, openMillis);
+    }
+
+    /**
+     * 为新请求计算截止时间（epoch毫秒）
+     */
+    public long newDeadline() {
+        return System.currentTimeMillis() + deadlineMillis;
+    }
+
+    /**
+     * 在保护下调用上游
+     *
+     * @param deadline 截止时间（epoch毫秒）
+     * @param upstream 上游调用，参数为剩余毫秒数
+     * @throws UpstreamUnavailableException 被拒绝或调用失败
+     */
+    public <T> T call(long deadline, LongFunction<T> upstream) {
+        CircuitBreaker.Permission permission = circuitBreaker.tryAcquirePermission();
+        if (permission == null) {
+            rejectedByCircuit.increment();
+            throw new UpstreamUnavailableException("Recipe generation is temporarily unavailable.",
+                    retryAfterSeconds(circuitBreaker.remainingOpenMillis()));
+        }
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(bulkheadWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            circuitBreaker.releasePermission(permission);
+            rejectedByBulkhead.increment();
+            throw new UpstreamUnavailableException("Too many recipe generations in progress.", 5);
+        }
+
+        try {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                circuitBreaker.releasePermission(permission);
+                deadlineExceeded.increment();
+                throw new UpstreamUnavailableException("Recipe generation deadline exceeded.", 5);
+            }
+            long start = System.currentTimeMillis();
+            try {
+                T result = upstream.apply(remaining);
+                circuitBreaker.onSuccess(permission, System.currentTimeMillis() - start);
+                successes.increment();
+                return result;
+            } catch (RestClientException e) {
+                circuitBreaker.onFailure(permission, System.currentTimeMillis() - start);
+                failures.increment();
+                log.warn("Flask调用失败: {}", e.getMessage());
+                throw new UpstreamUnavailableException("Recipe generation failed.", 5, e);
+            } catch (RuntimeException e) {
+                // 与上游无关的异常（例如SSE客户端断开）不计入熔断统计
+                circuitBreaker.releasePermission(permission);
+                throw e;
+            }
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    public void recordStaleFallback() {
+        staleFallbacks.increment();
+    }
+
+    public void recordCorpusFallback() {
+        corpusFallbacks.increment();
+    }
+
+    private static long retryAfterSeconds(long millis) {
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(millis + 999));
+    }
+
+    @Override
+    public String statsName() {
+        return "recipe.upstream";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>(circuitBreaker.stats());
+        stats.put("inFlight", maxConcurrent - bulkhead.availablePermits());
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("successes", successes.sum());
+        stats.put("failures", failures.sum());
+        stats.put("rejectedByCircuit", rejectedByCircuit.sum());
+        stats.put("rejectedByBulkhead", rejectedByBulkhead.sum());
+        stats.put("deadlineExceeded", deadlineExceeded.sum());
+        stats.put("staleFallbacks", staleFallbacks.sum());
+        stats.put("corpusFallbacks", corpusFallbacks.sum());
+        return stats;
+    }
+}
@@ -1,8 +1,16 @@
 package fridget.fridget.securities;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import fridget.fridget.common.RequestTrace;
+import fridget.fridget.common.StatsSource;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -12,73 +20,228 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
 
-import javax.servlet.*;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
+/**
+ * JWT认证过滤器，每个请求只执行一次（见 SecurityConfig 中禁用的自动注册）。
+ * <p>
+ * 公开接口（{@link #PUBLIC_PATHS}）不解析令牌。验证通过的令牌按SHA-256摘要缓存认证信息，
+ * 缓存条目在令牌的 exp 时刻过期，命中时不再做签名校验和声明解析。已吊销（登出）的令牌见 {@link TokenRevocationService}。
+ */
+@Slf4j
 @Component
-public class JwtAuthFilter extends GenericFilter {
+public class JwtAuthFilter extends OncePerRequestFilter implements StatsSource {
+
+    // 无需登录的接口，SecurityConfig 中 permitAll 使用同一份列表（Actuator 供健康检查）
+    // Prometheus 抓取只在管理端口上免登录，见 SecurityConfig
+    public static final String[] PUBLIC_PATHS = {"/user/create", "/doLogin", "/api/generate-recipes",
+            "/actuator/health"};
 
     private final JwtTokenProvider jwtTokenProvider;
     private final RefreshTokenService refreshTokenService;
-
-    @Value("${jwt.secretKey}")
-    private String secretKey;
+    private final TokenRevocationService tokenRevocationService;
+    private final String secretKey;
+    private final RequestMatcher publicPaths = new OrRequestMatcher(Arrays.stream(PUBLIC_PATHS)
+            .map(AntPathRequestMatcher::new)
+            .collect(Collectors.toList()));
+    private final Cache<String, VerifiedToken> verifiedTokens;
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
 
     public static final String HEADER_KEY = "Authorization";
     public static final String PREFIX = "Bearer ";
 
-    public JwtAuthFilter(JwtTokenProvider jwtTokenProvider, RefreshTokenService refreshTokenService) {
+    public JwtAuthFilter(JwtTokenProvider jwtTokenProvider, RefreshTokenService refreshTokenService,
+                         TokenRevocationService tokenRevocationService,
+                         @Value("${jwt.secretKey}") String secretKey,
+                         @Value("${jwt.auth-cache.max-size:10000}") long cacheMaxSize) {
         this.jwtTokenProvider = jwtTokenProvider;
         this.refreshTokenService = refreshTokenService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.secretKey = secretKey;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, value.expiresAtMillis - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (publicPaths.matches(request)) {
+            skipped.increment();
+            return true;
+        }
+        return false;
     }
 
     @Override
-    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
-        String bearerToken = ((HttpServletRequest) servletRequest).getHeader(HEADER_KEY);
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String bearerToken = request.getHeader(HEADER_KEY);
         if (bearerToken != null && bearerToken.startsWith(PREFIX)) {
-            String token = bearerToken.substring(7);
-            try {
-                Claims claims = Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token).getBody();
-                setAuthentication(claims);
-            } catch (ExpiredJwtException e) {
-                System.out.println("🚨 Access Token이 만료되었어요! Refresh Token 확인 중..");
-
-                String userId = e.getClaims().getSubject();
-                String storedRefreshToken = refreshTokenService.getRefreshToken(userId);
-
-                if (storedRefreshToken == null) {
-                    System.out.println("🚨 Refresh Token이 없어요! 새로운 Refresh Token을 발급하고 Redis에 저장해요!");
-                    String newRefreshToken = jwtTokenProvider.createRefreshToken(userId);
-                    refreshTokenService.saveRefreshToken(userId, newRefreshToken);
-                    storedRefreshToken = newRefreshToken;
-                }
-                String newAccessToken = jwtTokenProvider.createAccessToken(userId, (String) e.getClaims().get("role"));
-                ((HttpServletResponse) servletResponse).setHeader("newAccessToken", newAccessToken);
-                System.out.println("✅ 새로운 Access Token 발급이 완료됐어요!");
-                Claims newClaims = jwtTokenProvider.getClaims(newAccessToken);
-                setAuthentication(newClaims);
-            } catch (Exception e) {
-                HttpServletResponse httpServletResponse = (HttpServletResponse) servletResponse;
-                httpServletResponse.setStatus(HttpStatus.UNAUTHORIZED.value());
-                System.out.println("❌ Access Token이 유효하지 않아, Refresh Token도 발급받을 수 없어요!");
-                httpServletResponse.setContentType("application/json");
+            try (RequestTrace.Span span = RequestTrace.stage("jwt_auth")) {
+                authenticateOrRefresh(response, bearerToken.substring(PREFIX.length()));
             }
         }
-        filterChain.doFilter(servletRequest, servletResponse);
+        filterChain.doFilter(request, response);
+    }
+
+    private void authenticateOrRefresh(HttpServletResponse response, String token) {
+        try {
+            SecurityContextHolder.getContext().setAuthentication(authenticate(token));
+        } catch (ExpiredJwtException e) {
+            if (isRefreshable(e.getClaims())) {
+                refreshAccessToken(e.getClaims(), response);
+            } else {
+                log.debug("过期令牌不能换发 userId={}", e.getClaims().getSubject());
+                reject(response);
+            }
+        } catch (Exception e) {
+            // 无效令牌可能被大量重放，只在DEBUG下记录
+            log.debug("访问令牌无效 error={}", e.toString());
+            reject(response);
+        }
+    }
+
+    /**
+     * 过期令牌能否换发：在换发窗口内，并且没有登出（吊销记录保留到换发窗口结束）。
+     * 引入吊销之前签发的令牌没有 jti，无法吊销，以登出时删除的刷新令牌是否仍在判断
+     */
+    private boolean isRefreshable(Claims expiredClaims) {
+        if (expiredClaims.getExpiration() == null
+                || !tokenRevocationService.withinRefreshWindow(expiredClaims.getExpiration().getTime())) {
+            return false;
+        }
+        if (expiredClaims.getId() == null) {
+            return refreshTokenService.getRefreshToken(expiredClaims.getSubject()) != null;
+        }
+        return !tokenRevocationService.isRevoked(expiredClaims.getId());
+    }
+
+    private void refreshAccessToken(Claims expiredClaims, HttpServletResponse response) {
+        String userId = expiredClaims.getSubject();
+        boolean refreshTokenIssued = refreshTokenService.getRefreshToken(userId) == null;
+        if (refreshTokenIssued) {
+            String newRefreshToken = jwtTokenProvider.createRefreshToken(userId);
+            refreshTokenService.saveRefreshToken(userId, newRefreshToken);
+        }
+        String newAccessToken = jwtTokenProvider.createAccessToken(userId, (String) expiredClaims.get("role"));
+        response.setHeader("newAccessToken", newAccessToken);
+        log.info("访问令牌已过期，已换发新令牌 userId={} refreshTokenIssued={}", userId, refreshTokenIssued);
+        SecurityContextHolder.getContext().setAuthentication(authenticate(newAccessToken));
     }
 
+    private void reject(HttpServletResponse response) {
+        rejected.increment();
+        response.setStatus(HttpStatus.UNAUTHORIZED.value());
+        response.setContentType("application/json");
+    }
+
+    /**
+     * 校验令牌并返回认证信息，已验证且未过期的令牌直接从缓存返回。
+     * 吊销检查每次都做（通常只查本地布隆过滤器），缓存命中也不能跳过。
+     * 没有 jti 的旧令牌无法吊销，接受到自然过期（不超过 jwt.expiration），避免上线时所有用户被登出
+     */
+    Authentication authenticate(String token) {
+        String key = digest(token);
+        VerifiedToken verified = verifiedTokens.getIfPresent(key);
+        if (verified == null || verified.expiresAtMillis <= System.currentTimeMillis()) {
+            Claims claims = Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token).getBody();
+            Date expiration = claims.getExpiration();
+            verified = new VerifiedToken(toAuthentication(claims), claims.getId(),
+                    expiration == null ? Long.MAX_VALUE : expiration.getTime());
+            if (expiration != null) {
+                verifiedTokens.put(key, verified);
+            }
+        }
+        if (tokenRevocationService.isRevoked(verified.jti)) {
+            throw new JwtException("Token has been revoked.");
+        }
+        return verified.authentication;
+    }
 
-    private void setAuthentication(Claims claims) {
+    private static Authentication toAuthentication(Claims claims) {
         List<GrantedAuthority> authorities = new ArrayList<>();
         authorities.add(new SimpleGrantedAuthority("ROLE_" + claims.get("role")));
         UserDetails userDetails = new User(claims.getSubject(), "", authorities);
-        Authentication authentication = new UsernamePasswordAuthenticationToken(userDetails, "", userDetails.getAuthorities());
-        SecurityContextHolder.getContext().setAuthentication(authentication);
+        return new UsernamePasswordAuthenticationToken(userDetails, "", userDetails.getAuthorities());
+    }
+
+    // 缓存键使用令牌摘要，不在内存中保存令牌原文
+    private static String digest(String token) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(md.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "jwt.auth";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        CacheStats cacheStats = verifiedTokens.stats();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cacheHits", cacheStats.hitCount());
+        stats.put("cacheMisses", cacheStats.missCount());
+        stats.put("cacheHitRatio", cacheStats.hitRate());
+        stats.put("cachedTokens", verifiedTokens.estimatedSize());
+        stats.put("skippedPublicPaths", skipped.sum());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+
+    private static final class VerifiedToken {
+        private final Authentication authentication;
+        private final String jti;
+        private final long expiresAtMillis;
+
+        private VerifiedToken(Authentication authentication, String jti, long expiresAtMillis) {
+            this.authentication = authentication;
+            this.jti = jti;
+            this.expiresAtMillis = expiresAtMillis;
+        }
     }
 }
@@ -7,6 +7,7 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import java.util.Date;
+import java.util.UUID;
 
 @Component
 @Slf4j
@@ -31,6 +32,8 @@ public class JwtTokenProvider {
         Date now = new Date();
         JwtBuilder jwtBuilder = Jwts.builder();
         jwtBuilder.setClaims(claims);
+        // jti，登出时按此吊销
+        jwtBuilder.setId(UUID.randomUUID().toString());
         jwtBuilder.setIssuedAt(now);
         jwtBuilder.setExpiration(new Date(now.getTime() + accessTokenExpiration * 1000L)); // 30초
         jwtBuilder.signWith(SignatureAlgorithm.HS256, secretKey);
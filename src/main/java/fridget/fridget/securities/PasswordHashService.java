@@ -0,0 +1,122 @@
+package fridget.fridget.securities;
+
+import fridget.fridget.common.LatencyWindow;
+import fridget.fridget.common.ServiceBusyException;
+import fridget.fridget.common.StatsSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 密码哈希（BCrypt）的计算和校验，在专用的有界线程池中执行。
+ * <p>
+ * 登录高峰时最多占用 password.hash.pool-size 个核心，不会挤占食谱推荐等其他请求；
+ * 队列满或等待超时时立即返回 503 并带 Retry-After，而不是让请求线程排队。
+ */
+@Component
+public class PasswordHashService implements StatsSource {
+
+    private static final int LATENCY_WINDOW_SIZE = 500;
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+    private final long retryAfterSeconds;
+    private final LatencyWindow queueWait = new LatencyWindow(LATENCY_WINDOW_SIZE);
+    private final LatencyWindow hashTime = new LatencyWindow(LATENCY_WINDOW_SIZE);
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    public PasswordHashService(PasswordEncoder passwordEncoder,
+                               @Qualifier("passwordHashExecutor") ThreadPoolExecutor executor,
+                               @Value("${password.hash.timeout-millis:5000}") long timeoutMillis,
+                               @Value("${password.hash.retry-after-seconds:2}") long retryAfterSeconds) {
+        this.passwordEncoder = passwordEncoder;
+        this.executor = executor;
+        this.timeoutMillis = timeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String encode(String rawPassword) {
+        return run(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return run(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    private <T> T run(Callable<T> hashing) {
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                queueWait.record(TimeUnit.NANOSECONDS.toMillis(startedAt - submittedAt));
+                try {
+                    return hashing.call();
+                } finally {
+                    hashTime.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw busy();
+        }
+        try {
+            T result = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            completed.increment();
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timedOut.increment();
+            throw busy();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw busy();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private ServiceBusyException busy() {
+        return new ServiceBusyException("Too many login requests in progress, please retry later.", retryAfterSeconds);
+    }
+
+    @Override
+    public String statsName() {
+        return "password.hash";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("completed", completed.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("timedOut", timedOut.sum());
+        stats.put("queueWaitP50", queueWait.percentile(0.5));
+        stats.put("queueWaitP99", queueWait.percentile(0.99));
+        stats.put("hashTimeP50", hashTime.percentile(0.5));
+        stats.put("hashTimeP99", hashTime.percentile(0.99));
+        return stats;
+    }
+}
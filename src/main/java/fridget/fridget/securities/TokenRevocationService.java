@@ -0,0 +1,167 @@
+package fridget.fridget.securities;
+
+import fridget.fridget.common.RotatingBloomFilter;
+import fridget.fridget.common.StatsSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 访问令牌吊销（登出）。
+ * <p>
+ * 已吊销令牌的 jti 写入 Redis（jwt:revoked:{jti}），并通过 jwt:revoked 频道通知所有节点。
+ * 访问令牌过期后在换发窗口（jwt.refresh-expiration）内仍可以换发新令牌，所以吊销记录保留到 exp + 换发窗口，
+ * 超过换发窗口的过期令牌不再换发（见 {@link #withinRefreshWindow(long)}），吊销记录随之失效。
+ * <p>
+ * 每个节点在本地维护按"令牌有效期 + 换发窗口"轮换的布隆过滤器，绝大多数请求只查本地过滤器；
+ * 只有过滤器判断"可能已吊销"时才查询Redis确认。节点启动时从Redis加载仍在保留期内的吊销记录。
+ * jwt.revocation.expected-revocations 应按这段时间内的登出次数估算。
+ */
+@Slf4j
+@Component
+public class TokenRevocationService implements MessageListener, StatsSource {
+
+    private static final String KEY_PREFIX = "jwt:revoked:";
+    private static final String REVOKED_CHANNEL = "jwt:revoked";
+
+    private final RotatingBloomFilter filter;
+    private final long refreshWindowMillis;
+    private final LongAdder revocations = new LongAdder();
+    private final LongAdder localNegatives = new LongAdder();
+    private final LongAdder redisChecks = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    public TokenRevocationService(RedisTemplate<String, String> redisTemplate,
+                                  RedisMessageListenerContainer listenerContainer,
+                                  @Value("${jwt.expiration}") long accessTokenExpirationSeconds,
+                                  @Value("${jwt.refresh-expiration}") long refreshExpirationSeconds,
+                                  @Value("${jwt.revocation.expected-revocations:100000}") int expectedRevocations,
+                                  @Value("${jwt.revocation.false-positive-rate:0.01}") double falsePositiveRate) {
+        this(accessTokenExpirationSeconds, refreshExpirationSeconds, expectedRevocations, falsePositiveRate);
+        this.redisTemplate = redisTemplate;
+        listenerContainer.addMessageListener(this, new ChannelTopic(REVOKED_CHANNEL));
+    }
+
+    // 不接入Redis，只使用本地过滤器（过滤器命中即视为已吊销），用于测试和基准测试
+    public TokenRevocationService(long accessTokenExpirationSeconds, long refreshExpirationSeconds,
+                                  int expectedRevocations, double falsePositiveRate) {
+        this.refreshWindowMillis = TimeUnit.SECONDS.toMillis(refreshExpirationSeconds);
+        // 一代过滤器覆盖"令牌有效期 + 换发窗口"，吊销记录至少保留到换发窗口结束
+        this.filter = new RotatingBloomFilter(expectedRevocations, falsePositiveRate,
+                TimeUnit.SECONDS.toMillis(accessTokenExpirationSeconds) + refreshWindowMillis);
+    }
+
+    @PostConstruct
+    public void loadRevoked() {
+        if (redisTemplate == null) {
+            return;
+        }
+        ScanOptions options = ScanOptions.scanOptions().match(KEY_PREFIX + "*").count(1000).build();
+        int loaded = 0;
+        try (Cursor<byte[]> cursor = redisTemplate.executeWithStickyConnection(connection -> connection.scan(options))) {
+            while (cursor != null && cursor.hasNext()) {
+                String key = new String(cursor.next(), StandardCharsets.UTF_8);
+                filter.add(key.substring(KEY_PREFIX.length()));
+                loaded++;
+            }
+            log.info("已加载 {} 条令牌吊销记录", loaded);
+        } catch (Exception e) {
+            log.warn("加载令牌吊销记录失败，仅使用之后收到的吊销通知", e);
+        }
+    }
+
+    /**
+     * 吊销令牌，直到令牌过期后的换发窗口结束
+     *
+     * @param jti             令牌ID
+     * @param expiresAtMillis 令牌过期时间
+     */
+    public void revoke(String jti, long expiresAtMillis) {
+        long ttlMillis = expiresAtMillis + refreshWindowMillis - System.currentTimeMillis();
+        if (jti == null || ttlMillis <= 0) {
+            return;
+        }
+        filter.add(jti);
+        revocations.increment();
+        if (redisTemplate != null) {
+            redisTemplate.opsForValue().set(KEY_PREFIX + jti, "1", ttlMillis, TimeUnit.MILLISECONDS);
+            redisTemplate.convertAndSend(REVOKED_CHANNEL, jti);
+        }
+    }
+
+    /**
+     * 过期的访问令牌是否还能换发新令牌：超过换发窗口后吊销记录已经删除，不能再换发
+     */
+    public boolean withinRefreshWindow(long expiresAtMillis) {
+        return expiresAtMillis + refreshWindowMillis > System.currentTimeMillis();
+    }
+
+    /**
+     * 令牌是否已吊销。本地过滤器判断一定未吊销时不访问Redis；Redis不可用时按已吊销处理
+     */
+    public boolean isRevoked(String jti) {
+        if (jti == null) {
+            return false;
+        }
+        if (!filter.mightContain(jti)) {
+            localNegatives.increment();
+            return false;
+        }
+        if (redisTemplate == null) {
+            return true;
+        }
+        redisChecks.increment();
+        boolean revoked;
+        try {
+            revoked = Boolean.TRUE.equals(redisTemplate.hasKey(KEY_PREFIX + jti));
+        } catch (Exception e) {
+            log.warn("查询令牌吊销记录失败: jti={}", jti, e);
+            revoked = true;
+        }
+        if (revoked) {
+            confirmed.increment();
+        }
+        return revoked;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        filter.add(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String statsName() {
+        return "jwt.revocation";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long checks = redisChecks.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("revocations", revocations.sum());
+        stats.put("localNegatives", localNegatives.sum());
+        stats.put("redisChecks", checks);
+        stats.put("confirmedRevoked", confirmed.sum());
+        stats.put("falsePositives", checks - confirmed.sum());
+        stats.put("filterBits", filter.bitCount());
+        stats.put("filterHashes", filter.hashCount());
+        return stats;
+    }
+}
@@ -7,7 +7,6 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 import lombok.Data;
 
@@ -35,7 +34,7 @@ public class User {
     private int spiciness;
     private List<String> allergies;
 
-    @DBRef
+    // 冰箱食材内嵌在用户文档中，读取用户时一次取回（旧数据为DBRef，见 UserIngredientMigration）
     @Builder.Default
     private List<UserIngredient> userIngredients = new ArrayList<>();
 
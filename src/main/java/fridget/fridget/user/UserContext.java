@@ -0,0 +1,151 @@
+package fridget.fridget.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import fridget.fridget.common.EntityNotFoundException;
+import fridget.fridget.common.RequestTrace;
+import fridget.fridget.common.StatsSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用户上下文，user 和 ingredient 下的服务统一从这里读取用户文档。
+ * <p>
+ * 两级缓存：同一个HTTP请求内只加载一次（存放在请求属性中）；跨请求使用短TTL的Caffeine缓存。
+ * 所有修改用户文档的地方都要调用 {@link #invalidate(String)}，并通过 user:context:invalidate 频道通知其他节点。
+ * 返回的用户对象是共享的，调用方不能修改，修改用户必须走数据库更新。
+ */
+@Component
+public class UserContext implements MessageListener, StatsSource {
+
+    private static final String INVALIDATE_CHANNEL = "user:context:invalidate";
+    private static final String REQUEST_ATTRIBUTE_PREFIX = UserContext.class.getName() + ".";
+    private static final char MESSAGE_SEPARATOR = '|';
+
+    private final UserRepository userRepository;
+    private final Cache<String, User> cache;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final LongAdder requestHits = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    public UserContext(UserRepository userRepository,
+                       RedisTemplate<String, String> redisTemplate,
+                       RedisMessageListenerContainer listenerContainer,
+                       @Value("${user.context.max-size:10000}") long maxSize,
+                       @Value("${user.context.ttl-seconds:30}") long ttlSeconds) {
+        this(userRepository, maxSize, ttlSeconds);
+        this.redisTemplate = redisTemplate;
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    // 不接入Redis的纯本地缓存，用于测试和基准测试
+    public UserContext(UserRepository userRepository, long maxSize, long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 读取用户：先查本次请求已加载的，再查本地缓存，最后查数据库
+     *
+     * @throws EntityNotFoundException 用户不存在
+     */
+    public User get(String userId) {
+        User user = find(userId);
+        if (user == null) {
+            throw new EntityNotFoundException("There's no such user.");
+        }
+        return user;
+    }
+
+    /**
+     * 读取用户，不存在时返回null（不存在的结果不缓存，注册后可以立即读到）
+     */
+    public User find(String userId) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        String attributeName = REQUEST_ATTRIBUTE_PREFIX + userId;
+        if (attributes != null) {
+            User user = (User) attributes.getAttribute(attributeName, RequestAttributes.SCOPE_REQUEST);
+            if (user != null) {
+                requestHits.increment();
+                return user;
+            }
+        }
+        User user = cache.get(userId, this::load);
+        if (user != null && attributes != null) {
+            attributes.setAttribute(attributeName, user, RequestAttributes.SCOPE_REQUEST);
+        }
+        return user;
+    }
+
+    private User load(String userId) {
+        loads.increment();
+        try (RequestTrace.Span span = RequestTrace.stage("user_load")) {
+            return userRepository.findByUserId(userId).orElse(null);
+        }
+    }
+
+    /**
+     * 清除用户缓存（包括本次请求已加载的），并通知其他节点清除
+     */
+    public void invalidate(String userId) {
+        cache.invalidate(userId);
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.removeAttribute(REQUEST_ATTRIBUTE_PREFIX + userId, RequestAttributes.SCOPE_REQUEST);
+        }
+        if (redisTemplate != null) {
+            redisTemplate.convertAndSend(INVALIDATE_CHANNEL, nodeId + MESSAGE_SEPARATOR + userId);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(MESSAGE_SEPARATOR);
+        if (separator < 0 || body.substring(0, separator).equals(nodeId)) {
+            return;
+        }
+        cache.invalidate(body.substring(separator + 1));
+    }
+
+    @Override
+    public String statsName() {
+        return "user.context";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        CacheStats cacheStats = cache.stats();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requestHits", requestHits.sum());
+        stats.put("cacheHits", cacheStats.hitCount());
+        stats.put("cacheMisses", cacheStats.missCount());
+        stats.put("cacheHitRatio", cacheStats.hitRate());
+        stats.put("mongoLoads", loads.sum());
+        stats.put("evictions", cacheStats.evictionCount());
+        stats.put("size", cache.estimatedSize());
+        return stats;
+    }
+}
@@ -3,9 +3,11 @@ package fridget.fridget.user;
 import fridget.fridget.common.CommonResponse;
 import fridget.fridget.securities.JwtTokenProvider;
 import fridget.fridget.securities.RefreshTokenService;
+import fridget.fridget.securities.TokenRevocationService;
 import fridget.fridget.user.dto.LoginReqDto;
 import fridget.fridget.user.dto.UserCreateReqDto;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -21,12 +23,15 @@ public class UserController {
     private UserService userService;
     private final JwtTokenProvider jwtTokenProvider;
     private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationService tokenRevocationService;
 
     public UserController(UserService userService,
-                          JwtTokenProvider jwtTokenProvider, RefreshTokenService refreshTokenService) {
+                          JwtTokenProvider jwtTokenProvider, RefreshTokenService refreshTokenService,
+                          TokenRevocationService tokenRevocationService) {
         this.userService = userService;
         this.jwtTokenProvider = jwtTokenProvider;
         this.refreshTokenService = refreshTokenService;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     @PreAuthorize("hasRole('ADMIN')")
@@ -61,9 +66,17 @@ public class UserController {
     @PostMapping("/doLogout")
     public ResponseEntity<CommonResponse> logout(@RequestBody Map<String, String> request) {
         String accessToken = request.get("token");
-        Claims claims = jwtTokenProvider.getClaims(accessToken);
+        Claims claims;
+        try {
+            claims = jwtTokenProvider.getClaims(accessToken);
+        } catch (ExpiredJwtException e) {
+            // 过期令牌在换发窗口内仍能换发新令牌，同样需要吊销
+            claims = e.getClaims();
+        }
         String userId = claims.getSubject();
         refreshTokenService.deleteRefreshToken(userId);
+        // 访问令牌在过期前也立即失效
+        tokenRevocationService.revoke(claims.getId(), claims.getExpiration().getTime());
         return new ResponseEntity<>(new CommonResponse(HttpStatus.OK, "Logout Success", null), HttpStatus.OK);
     }
 
@@ -1,13 +1,12 @@
 package fridget.fridget.user;
 
 
-import fridget.fridget.common.EntityNotFoundException;
+import fridget.fridget.securities.PasswordHashService;
 import fridget.fridget.user.dto.LoginReqDto;
 import fridget.fridget.user.dto.UserCreateReqDto;
 import fridget.fridget.user.dto.UserPreferenceDto;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -17,11 +16,14 @@ import java.util.List;
 @Transactional
 public class UserService {
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashService passwordHashService;
+    private final UserContext userContext;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordHashService passwordHashService,
+                       UserContext userContext) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashService = passwordHashService;
+        this.userContext = userContext;
     }
 
     public List<User> findAllUsers() {
@@ -33,15 +35,19 @@ public class UserService {
         if (userRepository.findByUserId(userCreateReqDto.getUserId()).isPresent()) {
             throw new IllegalArgumentException("UserID is already in use.");
         }
-        userCreateReqDto.setUserPassword(passwordEncoder.encode(userCreateReqDto.getUserPassword()));
+        userCreateReqDto.setUserPassword(passwordHashService.encode(userCreateReqDto.getUserPassword()));
         User user = User.toEntity(userCreateReqDto);
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        userContext.invalidate(saved.getUserId());
+        return saved;
     }
 
     public User login(LoginReqDto loginReqDto) throws IllegalArgumentException {
-        User user = userRepository.findByUserId(loginReqDto.getUserId()).orElseThrow(()
-                -> new IllegalArgumentException("Login Failed! There's no such user."));
-        if (!passwordEncoder.matches(loginReqDto.getUserPassword(), user.getUserPassword())) {
+        User user = userContext.find(loginReqDto.getUserId());
+        if (user == null) {
+            throw new IllegalArgumentException("Login Failed! There's no such user.");
+        }
+        if (!passwordHashService.matches(loginReqDto.getUserPassword(), user.getUserPassword())) {
             throw new IllegalArgumentException("Wrong password!");
         }
         return user;
@@ -49,9 +55,12 @@ public class UserService {
 
     public UserPreferenceDto findMyPreferences() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String userId = authentication.getName();
-        User user = userRepository.findByUserId(userId).orElseThrow(() -> new EntityNotFoundException(
-                "There's no such user."));
+        return findPreferencesByUserId(authentication.getName());
+    }
+
+    // 按用户ID获取偏好，供没有安全上下文的后台线程使用
+    public UserPreferenceDto findPreferencesByUserId(String userId) {
+        User user = userContext.get(userId);
         UserPreferenceDto userPreferenceDto = new UserPreferenceDto();
         userPreferenceDto.setVegan(user.getVegan());
         userPreferenceDto.setMeatConsumption(user.getMeatConsumption());
@@ -0,0 +1,108 @@
+package fridget.fridget.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, 1_000, 0.8, 30_000, now::get);
+
+    private void call(boolean success, long durationMillis) {
+        CircuitBreaker.Permission permission = breaker.tryAcquirePermission();
+        assertThat(permission).isNotNull();
+        if (success) {
+            breaker.onSuccess(permission, durationMillis);
+        } else {
+            breaker.onFailure(permission, durationMillis);
+        }
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            call(false, 10);
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() {
+        call(true, 10);
+        call(false, 10);
+        call(true, 10);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        call(false, 10);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isNull();
+        assertThat(breaker.remainingOpenMillis()).isEqualTo(30_000);
+    }
+
+    @Test
+    void opensWhenMostCallsAreSlow() {
+        for (int i = 0; i < 4; i++) {
+            call(true, 5_000);
+        }
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void halfOpenAllowsSingleProbeAndClosesOnSuccess() {
+        open();
+        now.addAndGet(30_000);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        CircuitBreaker.Permission probe = breaker.tryAcquirePermission();
+        assertThat(probe).isNotNull();
+        assertThat(breaker.tryAcquirePermission()).isNull();
+        breaker.onSuccess(probe, 10);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquirePermission()).isNotNull();
+    }
+
+    @Test
+    void callStartedBeforeOpeningCannotCloseHalfOpenBreaker() {
+        CircuitBreaker.Permission slowCall = breaker.tryAcquirePermission();
+        open();
+        now.addAndGet(30_000);
+        CircuitBreaker.Permission probe = breaker.tryAcquirePermission();
+
+        // 打开前放行的调用在探测期间成功返回
+        breaker.onSuccess(slowCall, 10);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.stats()).containsEntry("staleOutcomes", 1L);
+        breaker.onFailure(probe, 10);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void outcomesFromBeforeClosingDoNotCountAfterwards() {
+        CircuitBreaker.Permission stale = breaker.tryAcquirePermission();
+        open();
+        now.addAndGet(30_000);
+        call(true, 10);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        breaker.onFailure(stale, 10);
+
+        assertThat(breaker.stats()).containsEntry("bufferedCalls", 0);
+    }
+
+    @Test
+    void failedProbeReopens() {
+        open();
+        now.addAndGet(30_000);
+
+        call(false, 10);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.remainingOpenMillis()).isEqualTo(30_000);
+    }
+}
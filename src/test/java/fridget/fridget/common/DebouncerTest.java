@@ -0,0 +1,61 @@
+package fridget.fridget.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DebouncerTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void burstOfSubmissionsRunsOnceWithMergedValue() throws InterruptedException {
+        Map<String, String> fired = new ConcurrentHashMap<>();
+        List<String> firedKeys = new CopyOnWriteArrayList<>();
+        // 保留第一次提交的前半部分和最后一次提交的后半部分
+        Debouncer<String, String> debouncer = new Debouncer<>(scheduler, 100,
+                (existing, latest) -> existing.split(">")[0] + ">" + latest.split(">")[1],
+                (key, value) -> {
+                    firedKeys.add(key);
+                    fired.put(key, value);
+                });
+
+        debouncer.submit("user", "a>b");
+        debouncer.submit("user", "b>c");
+        debouncer.submit("user", "c>d");
+        debouncer.submit("other", "x>y");
+        Thread.sleep(400);
+
+        assertThat(firedKeys).containsExactlyInAnyOrder("user", "other");
+        assertThat(fired.get("user")).isEqualTo("a>d");
+        assertThat(debouncer.coalescedCount()).isEqualTo(2);
+        assertThat(debouncer.pendingCount()).isZero();
+    }
+
+    @Test
+    void submissionsFarApartRunSeparately() throws InterruptedException {
+        List<String> fired = new CopyOnWriteArrayList<>();
+        Debouncer<String, String> debouncer = new Debouncer<>(scheduler, 50,
+                (existing, latest) -> latest, (key, value) -> fired.add(value));
+
+        debouncer.submit("user", "first");
+        Thread.sleep(250);
+        debouncer.submit("user", "second");
+        Thread.sleep(250);
+
+        assertThat(fired).containsExactly("first", "second");
+    }
+}
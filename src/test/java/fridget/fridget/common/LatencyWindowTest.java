@@ -0,0 +1,38 @@
+package fridget.fridget.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyWindowTest {
+
+    @Test
+    void percentilesOverRecordedSamples() {
+        LatencyWindow window = new LatencyWindow(100);
+        for (int i = 1; i <= 100; i++) {
+            window.record(i);
+        }
+
+        assertThat(window.percentile(0.5)).isEqualTo(50);
+        assertThat(window.percentile(0.95)).isEqualTo(95);
+        assertThat(window.percentile(0.99)).isEqualTo(99);
+        assertThat(window.percentile(1.0)).isEqualTo(100);
+    }
+
+    @Test
+    void oldSamplesAreOverwritten() {
+        LatencyWindow window = new LatencyWindow(3);
+        window.record(1000);
+        window.record(1);
+        window.record(2);
+        window.record(3);
+
+        assertThat(window.count()).isEqualTo(3);
+        assertThat(window.percentile(1.0)).isEqualTo(3);
+    }
+
+    @Test
+    void emptyWindowReturnsZero() {
+        assertThat(new LatencyWindow(10).percentile(0.99)).isZero();
+    }
+}
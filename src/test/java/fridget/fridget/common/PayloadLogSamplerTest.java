@@ -0,0 +1,27 @@
+package fridget.fridget.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PayloadLogSamplerTest {
+
+    @Test
+    void truncatesSampledPayloadsToMaxChars() {
+        PayloadLogSampler sampler = new PayloadLogSampler(5, 1.0, () -> 0.0);
+
+        assertThat(sampler.sample("abc")).isEqualTo("abc");
+        assertThat(sampler.sample("abcdefgh")).isEqualTo("abcde...(共8字符)");
+        assertThat(sampler.sample(null)).isNull();
+    }
+
+    @Test
+    void skipsPayloadsOutsideSampleRate() {
+        double[] next = {0.05};
+        PayloadLogSampler sampler = new PayloadLogSampler(100, 0.1, () -> next[0]);
+
+        assertThat(sampler.sample("body")).isEqualTo("body");
+        next[0] = 0.5;
+        assertThat(sampler.sample("body")).isNull();
+    }
+}
@@ -0,0 +1,45 @@
+package fridget.fridget.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RotatingBloomFilterTest {
+
+    @Test
+    void neverReturnsFalseNegativesAndKeepsFalsePositivesNearTarget() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(10_000, 0.01, 60_000);
+        String[] added = new String[10_000];
+        for (int i = 0; i < added.length; i++) {
+            added[i] = UUID.randomUUID().toString();
+            filter.add(added[i]);
+        }
+        for (String value : added) {
+            assertThat(filter.mightContain(value)).isTrue();
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+    }
+
+    @Test
+    void entriesSurviveOneRotationAndExpireAfterTwo() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        RotatingBloomFilter filter = new RotatingBloomFilter(100, 0.01, 1000, now::get);
+        filter.add("jti-1");
+
+        now.addAndGet(1000);
+        assertThat(filter.mightContain("jti-1")).isTrue();
+
+        now.addAndGet(1000);
+        assertThat(filter.mightContain("jti-1")).isFalse();
+    }
+}
@@ -0,0 +1,95 @@
+package fridget.fridget.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    @Test
+    void concurrentCallersShareOneExecution() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("test");
+        AtomicInteger loaderCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(pool.submit(() -> singleFlight.execute("recipe:abc", () -> {
+                    loaderCalls.incrementAndGet();
+                    release.await(5, TimeUnit.SECONDS);
+                    return "recipes";
+                })));
+            }
+            waitForWaiters(singleFlight, CALLERS - 1);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("recipes");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertThat(loaderCalls.get()).isEqualTo(1);
+        assertThat(singleFlight.stats().get("executions")).isEqualTo(1L);
+        assertThat(singleFlight.stats().get("savedCalls")).isEqualTo((long) CALLERS - 1);
+        assertThat(singleFlight.stats().get("inFlight")).isEqualTo(0);
+    }
+
+    @Test
+    void waitersReceiveTheLeadersFailure() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("test");
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = pool.submit(() -> singleFlight.execute("recipe:abc", () -> {
+                release.await(5, TimeUnit.SECONDS);
+                throw new IllegalStateException("flask down");
+            }));
+            waitForInFlight(singleFlight);
+            Future<String> follower = pool.submit(() -> singleFlight.execute("recipe:abc", () -> "unused"));
+            waitForWaiters(singleFlight, 1);
+            release.countDown();
+
+            assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+            assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void completedKeysAreNotCached() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("test");
+        AtomicInteger loaderCalls = new AtomicInteger();
+        singleFlight.execute("recipe:abc", () -> "first" + loaderCalls.incrementAndGet());
+        String second = singleFlight.execute("recipe:abc", () -> "second" + loaderCalls.incrementAndGet());
+        assertThat(second).isEqualTo("second2");
+    }
+
+    private void waitForInFlight(SingleFlight<String, String> singleFlight) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while ((int) singleFlight.stats().get("inFlight") == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private void waitForWaiters(SingleFlight<String, String> singleFlight, long waiters) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while ((long) singleFlight.stats().get("savedCalls") < waiters && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package fridget.fridget.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlowRequestRecorderTest {
+
+    private final AtomicLong now = new AtomicLong(10 * 60_000L);
+    private final SlowRequestRecorder recorder = new SlowRequestRecorder(3, 60, now::get);
+
+    private static SlowRequest request(String name, double millis) {
+        return new SlowRequest(name, 0, millis, Collections.emptyList());
+    }
+
+    private List<String> slowestNames() {
+        return recorder.slowest().stream().map(SlowRequest::getName).collect(Collectors.toList());
+    }
+
+    @Test
+    void keepsSlowestRequestsAcrossBuckets() {
+        recorder.record(request("a", 10));
+        recorder.record(request("b", 50));
+        now.addAndGet(60_000);
+        recorder.record(request("c", 30));
+        recorder.record(request("d", 5));
+        recorder.record(request("e", 40));
+
+        assertThat(slowestNames()).containsExactly("b", "e", "c");
+    }
+
+    @Test
+    void replacesFastestEntryWhenBucketIsFull() {
+        recorder.record(request("a", 10));
+        recorder.record(request("b", 20));
+        recorder.record(request("c", 30));
+        recorder.record(request("d", 5));
+        recorder.record(request("e", 25));
+
+        assertThat(slowestNames()).containsExactly("c", "e", "b");
+    }
+
+    @Test
+    void dropsRequestsOlderThanWindow() {
+        recorder.record(request("old", 100));
+        now.addAndGet(60 * 60_000L);
+        recorder.record(request("new", 1));
+
+        assertThat(slowestNames()).containsExactly("new");
+    }
+
+    @Test
+    void recordsStagesOfTracedRequest() {
+        RequestTrace trace = recorder.begin("GET /recipe/recommend");
+        assertThat(recorder.begin("nested")).isNull();
+        try (RequestTrace.Span span = RequestTrace.stage("redis_get")) {
+            // 空阶段
+        }
+        try (RequestTrace.Span span = RequestTrace.stage("redis_get")) {
+            // 空阶段
+        }
+        recorder.finish(trace);
+
+        SlowRequest recorded = recorder.slowest().get(0);
+        assertThat(recorded.getName()).isEqualTo("GET /recipe/recommend");
+        assertThat(recorded.getStages()).hasSize(1);
+        assertThat(recorded.getStages().get(0).getStage()).isEqualTo("redis_get");
+        assertThat(recorded.getStages().get(0).getCount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,89 @@
+package fridget.fridget.common;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatsMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicLong hits = new AtomicLong(3);
+    private final AtomicInteger statsCalls = new AtomicInteger();
+
+    private final StatsSource cache = new StatsSource() {
+        @Override
+        public String statsName() {
+            return "test.cache";
+        }
+
+        @Override
+        public Map<String, Object> stats() {
+            statsCalls.incrementAndGet();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("hits", hits.get());
+            stats.put("hitRatio", 0.5);
+            stats.put("enabled", true);
+            stats.put("state", "CLOSED");
+            return stats;
+        }
+    };
+
+    private final StatsSource pool = new StatsSource() {
+        @Override
+        public String statsName() {
+            return "test.pool";
+        }
+
+        @Override
+        public Map<String, Object> stats() {
+            Map<String, Object> worker = new LinkedHashMap<>();
+            worker.put("requests", 7L);
+            worker.put("healthy", false);
+            return Collections.singletonMap("http://worker-1", worker);
+        }
+    };
+
+    private double gauge(String name, String stat) {
+        return registry.get(name).tag("stat", stat).gauge().value();
+    }
+
+    @Test
+    void registersNumericAndBooleanStatsAsGauges() {
+        new StatsMetrics(registry, Arrays.asList(cache, pool), 0);
+
+        assertThat(gauge("test.cache", "hits")).isEqualTo(3.0);
+        assertThat(gauge("test.cache", "hitRatio")).isEqualTo(0.5);
+        assertThat(gauge("test.cache", "enabled")).isEqualTo(1.0);
+        assertThat(registry.find("test.cache").tag("stat", "state").gauge()).isNull();
+        assertThat(registry.get("test.pool").tags("entry", "http://worker-1", "stat", "requests").gauge().value())
+                .isEqualTo(7.0);
+        assertThat(registry.get("test.pool").tags("entry", "http://worker-1", "stat", "healthy").gauge().value())
+                .isZero();
+
+        // 读取的是 /admin/stats 的同一份实时数据
+        hits.set(10);
+        assertThat(gauge("test.cache", "hits")).isEqualTo(10.0);
+    }
+
+    @Test
+    void gaugesOfOneSourceShareSnapshotWithinInterval() {
+        new StatsMetrics(registry, Collections.singletonList(cache), 60_000);
+        int callsAfterRegistration = statsCalls.get();
+
+        hits.set(10);
+        gauge("test.cache", "hits");
+        gauge("test.cache", "hitRatio");
+        gauge("test.cache", "enabled");
+
+        assertThat(statsCalls.get()).isEqualTo(callsAfterRegistration);
+        assertThat(gauge("test.cache", "hits")).isEqualTo(3.0);
+    }
+}
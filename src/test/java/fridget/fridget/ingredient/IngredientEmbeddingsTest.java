@@ -0,0 +1,113 @@
+package fridget.fridget.ingredient;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class IngredientEmbeddingsTest {
+
+    // 未归一化的向量；"牛肉" 的UTF-8长度不是4的倍数，用来检查词表后的对齐
+    private static final String VECTORS = "5 2\n"
+            + "beef 1 0\n"
+            + "pork 3 4\n"
+            + "meat 0 2\n"
+            + "soy_sauce -1 0\n"
+            + "牛肉 2 0\n"
+            + "zero 0 0\n";
+
+    private static final List<String> WORDS = Arrays.asList("beef", "pork", "meat", "soy sauce", "牛肉");
+
+    @TempDir
+    Path tempDir;
+
+    private static InputStream text() {
+        return new ByteArrayInputStream(VECTORS.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void cosineOfNormalizedVectors() throws IOException {
+        HeapIngredientEmbeddings embeddings = HeapIngredientEmbeddings.load(text());
+
+        assertThat(embeddings.dimension()).isEqualTo(2);
+        // 零向量无法归一化，被跳过
+        assertThat(embeddings.size()).isEqualTo(5);
+        assertThat(embeddings.idOf("zero")).isEqualTo(IngredientEmbeddings.UNKNOWN);
+        int beef = embeddings.idOf("beef");
+        assertThat(embeddings.cosine(beef, beef)).isCloseTo(1.0, within(1e-6));
+        assertThat(embeddings.cosine(beef, embeddings.idOf("pork"))).isCloseTo(0.6, within(1e-6));
+        assertThat(embeddings.cosine(embeddings.idOf("pork"), embeddings.idOf("meat"))).isCloseTo(0.8, within(1e-6));
+        assertThat(embeddings.cosine(beef, embeddings.idOf("soy sauce"))).isCloseTo(-1.0, within(1e-6));
+        assertThat(embeddings.cosine(beef, IngredientEmbeddings.UNKNOWN)).isZero();
+    }
+
+    @Test
+    void binaryRoundTripMatchesTextVectors() throws IOException {
+        HeapIngredientEmbeddings heap = HeapIngredientEmbeddings.load(text());
+        Path binary = tempDir.resolve("vectors.bin");
+        try (OutputStream out = Files.newOutputStream(binary)) {
+            MappedIngredientEmbeddings.convert(text(), out);
+        }
+
+        MappedIngredientEmbeddings mapped = new MappedIngredientEmbeddings(binary);
+
+        assertThat(mapped.size()).isEqualTo(heap.size());
+        assertThat(mapped.dimension()).isEqualTo(heap.dimension());
+        for (String a : WORDS) {
+            assertThat(mapped.idOf(a)).as(a).isEqualTo(heap.idOf(a));
+            for (String b : WORDS) {
+                assertThat(mapped.cosine(mapped.idOf(a), mapped.idOf(b))).as(a + "/" + b)
+                        .isCloseTo(heap.cosine(heap.idOf(a), heap.idOf(b)), within(1e-6));
+            }
+        }
+        assertThat(mapped.idOf("zero")).isEqualTo(IngredientEmbeddings.UNKNOWN);
+    }
+
+    @Test
+    void mappedRejectsOtherAndTruncatedFiles() throws IOException {
+        Path text = tempDir.resolve("vectors.txt");
+        Files.write(text, VECTORS.getBytes(StandardCharsets.UTF_8));
+        assertThatThrownBy(() -> new MappedIngredientEmbeddings(text)).isInstanceOf(IOException.class);
+
+        Path binary = tempDir.resolve("vectors.bin");
+        try (OutputStream out = Files.newOutputStream(binary)) {
+            MappedIngredientEmbeddings.convert(text(), out);
+        }
+        byte[] bytes = Files.readAllBytes(binary);
+        Path truncated = tempDir.resolve("truncated.bin");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - Float.BYTES));
+        assertThatThrownBy(() -> new MappedIngredientEmbeddings(truncated))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Truncated");
+    }
+
+    @Test
+    void emptyLocationDisablesEmbeddingsButMissingFileFails() throws IOException {
+        DefaultResourceLoader resourceLoader = new DefaultResourceLoader();
+
+        HeapIngredientEmbeddings disabled = new HeapIngredientEmbeddings("", resourceLoader);
+        assertThat(disabled.size()).isZero();
+        assertThat(disabled.cosine(disabled.idOf("beef"), disabled.idOf("meat"))).isZero();
+
+        assertThatThrownBy(() -> new HeapIngredientEmbeddings("classpath:no-such-vectors.txt", resourceLoader))
+                .isInstanceOf(FileNotFoundException.class);
+
+        Path text = tempDir.resolve("vectors.txt");
+        Files.write(text, VECTORS.getBytes(StandardCharsets.UTF_8));
+        assertThat(new HeapIngredientEmbeddings(text.toUri().toString(), resourceLoader).size()).isEqualTo(5);
+    }
+}
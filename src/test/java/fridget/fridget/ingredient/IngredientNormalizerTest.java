@@ -0,0 +1,43 @@
+package fridget.fridget.ingredient;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngredientNormalizerTest {
+
+    private static final String DICTIONARY = "# 注释\n"
+            + "番茄 = 西红柿, 洋柿子, tomato\n"
+            + "鸡蛋 = 蛋, egg\n";
+
+    private final IngredientNormalizer normalizer = new IngredientNormalizer(IngredientNormalizer.loadSynonyms(
+            new ByteArrayInputStream(DICTIONARY.getBytes(StandardCharsets.UTF_8))));
+
+    IngredientNormalizerTest() throws IOException {
+    }
+
+    @Test
+    void variantsMapToCanonicalName() {
+        for (String name : Arrays.asList("Tomato", "tomato ", "番茄", "西红柿", "Tomatoes", "ＴＯＭＡＴＯ")) {
+            assertThat(normalizer.normalize(name)).as(name).isEqualTo("番茄");
+        }
+    }
+
+    @Test
+    void unknownNamesAreFoldedAndSingularized() {
+        assertThat(normalizer.normalize("  Cherry   Tomatoes ")).isEqualTo("cherry tomato");
+        assertThat(normalizer.normalize("Berries")).isEqualTo("berry");
+        assertThat(normalizer.normalize("hummus")).isEqualTo("hummus");
+    }
+
+    @Test
+    void normalizeAllDeduplicatesAndSorts() {
+        assertThat(normalizer.normalizeAll(Arrays.asList("Eggs", "西红柿", "鸡蛋", "tomato", " ")))
+                .containsExactly("番茄", "鸡蛋");
+    }
+}
@@ -0,0 +1,173 @@
+package fridget.fridget.ingredient;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import fridget.fridget.ingredient.dto.IngredientsReqDto;
+import fridget.fridget.user.User;
+import fridget.fridget.user.UserContext;
+import fridget.fridget.user.UserRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 并发增删冰箱食材不丢失更新。需要本地Mongo（-Dtest.mongo.uri，默认 mongodb://localhost:27017），不可用时跳过。
+ */
+class IngredientServiceConcurrencyTest {
+
+    private static final String USER_ID = "concurrency-user";
+    private static final int THREADS = 16;
+    private static final int PER_THREAD = 10;
+
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private IngredientService ingredientService;
+
+    @BeforeEach
+    void setUp() {
+        client = MongoClients.create(System.getProperty("test.mongo.uri", "mongodb://localhost:27017"));
+        mongoTemplate = new MongoTemplate(client, "fridget_test");
+        try {
+            mongoTemplate.executeCommand(new Document("ping", 1));
+        } catch (Exception e) {
+            client.close();
+            assumeTrue(false, "Mongo不可用: " + e.getMessage());
+        }
+        mongoTemplate.getDb().drop();
+        mongoTemplate.save(User.builder().userId(USER_ID).build());
+        UserRepository userRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(UserRepository.class);
+        ingredientService = new IngredientService(new UserContext(userRepository, 1000, 30), null, mongoTemplate, event -> {
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (mongoTemplate != null && client != null) {
+            mongoTemplate.getDb().drop();
+            client.close();
+        }
+    }
+
+    private static IngredientsReqDto dto(String name) {
+        IngredientsReqDto dto = new IngredientsReqDto();
+        dto.setName(name);
+        dto.setCategory("vegetable");
+        return dto;
+    }
+
+    private List<String> storedNames() {
+        return ingredientService.findIngredientsByUserId(USER_ID).stream()
+                .map(UserIngredient::getName).sorted().collect(Collectors.toList());
+    }
+
+    private void runConcurrently(List<Runnable> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (Runnable task : tasks) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    void concurrentAddsAreAllKept() throws Exception {
+        List<Runnable> tasks = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            tasks.add(() -> {
+                for (int i = 0; i < PER_THREAD; i++) {
+                    ingredientService.addIngredients(USER_ID,
+                            Collections.singletonList(dto("食材-" + thread + "-" + i)));
+                }
+            });
+            for (int i = 0; i < PER_THREAD; i++) {
+                expected.add("食材-" + t + "-" + i);
+            }
+        }
+
+        runConcurrently(tasks);
+
+        Collections.sort(expected);
+        assertThat(storedNames()).isEqualTo(expected);
+    }
+
+    @Test
+    void concurrentAddsAndRemovesDoNotOverwriteEachOther() throws Exception {
+        List<IngredientsReqDto> initial = new ArrayList<>();
+        for (int i = 0; i < THREADS * PER_THREAD; i++) {
+            initial.add(dto("旧-" + i));
+        }
+        ingredientService.addIngredients(USER_ID, initial);
+
+        List<Runnable> tasks = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            tasks.add(() -> {
+                for (int i = 0; i < PER_THREAD; i++) {
+                    int index = thread * PER_THREAD + i;
+                    if (thread % 2 == 0) {
+                        ingredientService.removeIngredients(USER_ID, Collections.singletonList(dto("旧-" + index)));
+                    } else {
+                        ingredientService.addIngredients(USER_ID, Collections.singletonList(dto("新-" + index)));
+                    }
+                }
+            });
+            for (int i = 0; i < PER_THREAD; i++) {
+                int index = t * PER_THREAD + i;
+                expected.add("旧-" + index);
+                if (t % 2 != 0) {
+                    expected.add("新-" + index);
+                }
+            }
+        }
+        for (int t = 0; t < THREADS; t += 2) {
+            for (int i = 0; i < PER_THREAD; i++) {
+                expected.remove("旧-" + (t * PER_THREAD + i));
+            }
+        }
+
+        runConcurrently(tasks);
+
+        Collections.sort(expected);
+        assertThat(storedNames()).isEqualTo(expected);
+    }
+
+    @Test
+    void addReturnsUpdatedListAndRemoveReturnsRemovedItems() {
+        List<UserIngredient> afterAdd = ingredientService.addIngredients(USER_ID,
+                List.of(dto("番茄"), dto("鸡蛋"), dto("葱")));
+        List<UserIngredient> removed = ingredientService.removeIngredients(USER_ID, List.of(dto("鸡蛋"), dto("葱")));
+
+        assertThat(afterAdd).extracting(UserIngredient::getName).containsExactly("番茄", "鸡蛋", "葱");
+        assertThat(afterAdd).allSatisfy(ingredient -> assertThat(ingredient.getId()).isNotNull());
+        assertThat(removed).extracting(UserIngredient::getName).containsExactly("鸡蛋", "葱");
+        assertThat(storedNames()).containsExactly("番茄");
+    }
+}
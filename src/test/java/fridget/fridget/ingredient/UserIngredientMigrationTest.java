@@ -0,0 +1,118 @@
+package fridget.fridget.ingredient;
+
+import com.mongodb.DBRef;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserIngredientMigrationTest {
+
+    private final ObjectId ingredientId = new ObjectId();
+    private final Document stored = new Document("_id", ingredientId).append("name", "番茄").append("category", "vegetable");
+    private final Document user = new Document("_id", "user-1")
+            .append("userIngredients", Collections.singletonList(new DBRef("UserIngredient", ingredientId)));
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> users = mock(MongoCollection.class);
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> ingredients = mock(MongoCollection.class);
+    @SuppressWarnings("unchecked")
+    private final FindIterable<Document> userFind = mock(FindIterable.class);
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.collectionExists("UserIngredient")).thenReturn(true);
+        when(mongoTemplate.getCollection("User")).thenReturn(users);
+        when(mongoTemplate.getCollection("UserIngredient")).thenReturn(ingredients);
+        when(users.find(any(Bson.class))).thenReturn(userFind);
+        when(userFind.projection(any())).thenReturn(userFind);
+        when(userFind.iterator()).thenAnswer(invocation -> cursor(Collections.singletonList(user)));
+        FindIterable<Document> ingredientFind = findIterable(Collections.singletonList(stored));
+        when(ingredients.find(any(Bson.class))).thenReturn(ingredientFind);
+        when(ingredients.countDocuments()).thenReturn(1L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MongoCursor<Document> cursor(List<Document> documents) {
+        Iterator<Document> iterator = documents.iterator();
+        MongoCursor<Document> cursor = mock(MongoCursor.class);
+        when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> iterator.next());
+        return cursor;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static FindIterable<Document> findIterable(List<Document> documents) {
+        FindIterable<Document> find = mock(FindIterable.class);
+        when(find.iterator()).thenAnswer(invocation -> cursor(documents));
+        return find;
+    }
+
+    private static UpdateResult matched(long count) {
+        return UpdateResult.acknowledged(count, count, null);
+    }
+
+    private void run() {
+        new UserIngredientMigration(mongoTemplate, true).run();
+    }
+
+    @Test
+    void deletesReferencedIngredientsOnlyAfterConditionalUpdate() {
+        when(users.updateOne(any(Bson.class), any(Bson.class))).thenReturn(matched(1));
+
+        run();
+
+        InOrder order = inOrder(users, ingredients);
+        order.verify(users).updateOne(any(Bson.class), any(Bson.class));
+        order.verify(ingredients).deleteMany(any(Bson.class));
+    }
+
+    @Test
+    void keepsIngredientsWhenAnotherNodeMigratedFirst() {
+        when(users.updateOne(any(Bson.class), any(Bson.class))).thenReturn(matched(0));
+        // 重新读取时用户已被其他节点改写为内嵌文档
+        when(userFind.first()).thenReturn(new Document("_id", "user-1")
+                .append("userIngredients", Collections.singletonList(new Document("_id", ingredientId).append("name", "番茄"))));
+
+        run();
+
+        verify(users, times(1)).updateOne(any(Bson.class), any(Bson.class));
+        verify(ingredients, never()).deleteMany(any(Bson.class));
+    }
+
+    @Test
+    void retriesWithFreshArrayAndGivesUpWithoutDeleting() {
+        when(users.updateOne(any(Bson.class), any(Bson.class))).thenReturn(matched(0));
+        // 每次重新读取时数组都已被并发修改，但仍包含DBRef
+        when(userFind.first()).thenReturn(new Document("_id", "user-1").append("userIngredients",
+                Arrays.asList(new DBRef("UserIngredient", ingredientId), new Document("name", "鸡蛋"))));
+
+        run();
+
+        verify(users, times(3)).updateOne(any(Bson.class), any(Bson.class));
+        verify(ingredients, never()).deleteMany(any(Bson.class));
+        verify(ingredients, never()).drop();
+    }
+}
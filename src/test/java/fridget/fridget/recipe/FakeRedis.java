@@ -0,0 +1,198 @@
+package fridget.fridget.recipe;
+
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 测试用的内存Redis：覆盖 RedisTemplate 中食谱缓存和生成租约用到的操作。
+ * 所有操作串行执行，Lua脚本按脚本内容模拟；发布的消息同步投递给通过 {@link #listenerContainer()} 注册的监听器。
+ */
+class FakeRedis extends RedisTemplate<String, String> {
+
+    private final Map<String, String> values = new HashMap<>();
+    private final Map<String, Long> expiresAt = new HashMap<>();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final List<String> published = new CopyOnWriteArrayList<>();
+    private final ValueOperations<String, String> valueOperations = operations(ValueOperations.class, this::onValue);
+
+    /**
+     * 监听器容器，注册的监听器会收到 {@link #convertAndSend} 和脚本中 PUBLISH 的消息
+     */
+    RedisMessageListenerContainer listenerContainer() {
+        RedisMessageListenerContainer container = mock(RedisMessageListenerContainer.class);
+        doAnswer(invocation -> {
+            ChannelTopic topic = invocation.getArgument(1);
+            subscriptions.add(new Subscription(topic.getTopic(), invocation.getArgument(0)));
+            return null;
+        }).when(container).addMessageListener(any(MessageListener.class), any(ChannelTopic.class));
+        return container;
+    }
+
+    /**
+     * 已发布的消息，格式为 频道:内容
+     */
+    List<String> published() {
+        return published;
+    }
+
+    synchronized String get(String key) {
+        evictIfExpired(key);
+        return values.get(key);
+    }
+
+    synchronized void put(String key, String value, long ttlMillis) {
+        values.put(key, value);
+        expiresAt.put(key, System.currentTimeMillis() + ttlMillis);
+    }
+
+    @Override
+    public synchronized Boolean hasKey(String key) {
+        evictIfExpired(key);
+        return values.containsKey(key);
+    }
+
+    @Override
+    public synchronized Boolean delete(String key) {
+        expiresAt.remove(key);
+        return values.remove(key) != null;
+    }
+
+    @Override
+    public synchronized Boolean expire(String key, long timeout, TimeUnit unit) {
+        if (!hasKey(key)) {
+            return false;
+        }
+        expiresAt.put(key, System.currentTimeMillis() + unit.toMillis(timeout));
+        return true;
+    }
+
+    @Override
+    public synchronized Long getExpire(String key, TimeUnit timeUnit) {
+        if (!hasKey(key)) {
+            return -2L;
+        }
+        Long expiry = expiresAt.get(key);
+        if (expiry == null) {
+            return -1L;
+        }
+        return timeUnit.convert(expiry - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void convertAndSend(String channel, Object message) {
+        String body = String.valueOf(message);
+        published.add(channel + ":" + body);
+        for (Subscription subscription : subscriptions) {
+            if (subscription.channel.equals(channel)) {
+                subscription.listener.onMessage(new DefaultMessage(channel.getBytes(StandardCharsets.UTF_8),
+                        body.getBytes(StandardCharsets.UTF_8)), null);
+            }
+        }
+    }
+
+    @Override
+    public ValueOperations<String, String> opsForValue() {
+        return valueOperations;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+        String source = script.getScriptAsString();
+        boolean holder = args.length > 0 && args[0].equals(get(keys.get(0)));
+        if (source.contains("PEXPIRE")) {
+            if (holder) {
+                expire(keys.get(0), Long.parseLong((String) args[1]), TimeUnit.MILLISECONDS);
+            }
+        } else if (source.contains("'SET', KEYS[2]")) {
+            if (holder) {
+                put(keys.get(1), (String) args[1], TimeUnit.SECONDS.toMillis(Long.parseLong((String) args[2])));
+                convertAndSend((String) args[3], keys.get(1));
+            }
+        } else if (source.contains("'DEL'")) {
+            if (holder) {
+                delete(keys.get(0));
+            }
+        } else {
+            throw new UnsupportedOperationException(source);
+        }
+        return (T) Long.valueOf(holder ? 1L : 0L);
+    }
+
+    private synchronized Object onValue(Method method, Object[] args) {
+        String key = args.length > 0 ? (String) args[0] : null;
+        switch (method.getName() + "/" + args.length) {
+            case "get/1":
+                return get(key);
+            case "set/2":
+                values.put(key, (String) args[1]);
+                expiresAt.remove(key);
+                return null;
+            case "set/3":
+                put(key, (String) args[1], ((Duration) args[2]).toMillis());
+                return null;
+            case "set/4":
+                put(key, (String) args[1], ((TimeUnit) args[3]).toMillis((Long) args[2]));
+                return null;
+            case "setIfAbsent/3":
+                if (get(key) != null) {
+                    return false;
+                }
+                put(key, (String) args[1], ((Duration) args[2]).toMillis());
+                return true;
+            case "increment/1":
+                long next = Long.parseLong(values.getOrDefault(key, "0")) + 1;
+                values.put(key, String.valueOf(next));
+                return next;
+            default:
+                throw new UnsupportedOperationException(method.toString());
+        }
+    }
+
+    private void evictIfExpired(String key) {
+        Long expiry = expiresAt.get(key);
+        if (expiry != null && expiry <= System.currentTimeMillis()) {
+            expiresAt.remove(key);
+            values.remove(key);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T operations(Class<?> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.handle(method, args == null ? new Object[0] : args));
+    }
+
+    private interface Handler {
+        Object handle(Method method, Object[] args);
+    }
+
+    private static class Subscription {
+        private final String channel;
+        private final MessageListener listener;
+
+        Subscription(String channel, MessageListener listener) {
+            this.channel = channel;
+            this.listener = listener;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package fridget.fridget.recipe;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpServer;
+import fridget.fridget.user.dto.UserPreferenceDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FlaskRecipeBatcherTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger batchCalls = new AtomicInteger();
+    private final AtomicReference<JsonNode> lastBatch = new AtomicReference<>();
+    private HttpServer server;
+    private FlaskWorkerPool pool;
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    /**
+     * 批量接口桩：每个冰箱返回一个以第一个食材命名的食谱，食材为 "skip" 的冰箱不返回结果，
+     * 批内有食材为 "fail" 的冰箱时整个批次返回500
+     */
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/generate/batch", exchange -> {
+            batchCalls.incrementAndGet();
+            JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+            lastBatch.set(body);
+            JsonNode requests = body.path("requests");
+            for (JsonNode request : requests) {
+                if ("fail".equals(request.path("userIngredients").path(0).asText())) {
+                    exchange.sendResponseHeaders(500, -1);
+                    exchange.close();
+                    return;
+                }
+            }
+            ObjectNode response = objectMapper.createObjectNode();
+            ArrayNode results = response.putArray("results");
+            for (JsonNode request : requests) {
+                String ingredient = request.path("userIngredients").path(0).asText();
+                if ("skip".equals(ingredient)) {
+                    continue;
+                }
+                ObjectNode result = results.addObject().put("id", request.path("id").asText());
+                result.putArray("recipes").addObject().put("score", 0)
+                        .putObject("recipe").put("name", ingredient + "料理");
+            }
+            byte[] responseBody = objectMapper.writeValueAsBytes(response);
+            exchange.sendResponseHeaders(200, responseBody.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(responseBody);
+            }
+        });
+        server.start();
+        pool = new FlaskWorkerPool(Collections.singletonList("http://127.0.0.1:" + server.getAddress().getPort()),
+                8, 8, 1000, 5000, 3, 3.0, 60_000);
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+        callers.shutdownNow();
+    }
+
+    private static UserPreferenceDto preferences(int spiciness) {
+        UserPreferenceDto preferences = new UserPreferenceDto();
+        preferences.setSpiciness(spiciness);
+        return preferences;
+    }
+
+    private Future<String> submit(FlaskRecipeBatcher batcher, String ingredient) {
+        return callers.submit(() -> batcher.generate(Collections.singletonList(ingredient), preferences(3), true, 5000));
+    }
+
+    private List<String> generateConcurrently(FlaskRecipeBatcher batcher, String... ingredients) throws Exception {
+        List<Future<String>> futures = new ArrayList<>();
+        for (String ingredient : ingredients) {
+            futures.add(submit(batcher, ingredient));
+        }
+        List<String> results = new ArrayList<>();
+        for (Future<String> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    private String recipeName(String json) throws IOException {
+        return objectMapper.readTree(json).path(0).path("recipe").path("name").asText();
+    }
+
+    @Test
+    void fullBatchIsSentOnceAndDemultiplexed() throws Exception {
+        FlaskRecipeBatcher batcher = new FlaskRecipeBatcher(pool, true, 10_000, 3);
+
+        List<String> results = generateConcurrently(batcher, "番茄", "土豆", "豆腐");
+
+        assertThat(batchCalls.get()).isEqualTo(1);
+        assertThat(recipeName(results.get(0))).isEqualTo("番茄料理");
+        assertThat(recipeName(results.get(1))).isEqualTo("土豆料理");
+        assertThat(recipeName(results.get(2))).isEqualTo("豆腐料理");
+        assertThat(batcher.stats().get("avgBatchSize")).isEqualTo(3.0);
+        // 与 /generate 一样带上每个用户的偏好
+        for (JsonNode request : lastBatch.get().path("requests")) {
+            assertThat(request.path("userPreferences").path("spiciness").asInt()).isEqualTo(3);
+            assertThat(request.path("skipRanking").asBoolean()).isTrue();
+        }
+        batcher.destroy();
+    }
+
+    @Test
+    void windowFlushesPartialBatch() throws Exception {
+        FlaskRecipeBatcher batcher = new FlaskRecipeBatcher(pool, true, 200, 8);
+
+        List<String> results = generateConcurrently(batcher, "番茄", "土豆");
+
+        assertThat(batchCalls.get()).isEqualTo(1);
+        assertThat(recipeName(results.get(1))).isEqualTo("土豆料理");
+        batcher.destroy();
+    }
+
+    @Test
+    void missingResultAndSingleRequestFallBackToDirectCall() throws Exception {
+        FlaskRecipeBatcher batcher = new FlaskRecipeBatcher(pool, true, 200, 8);
+
+        List<String> results = generateConcurrently(batcher, "番茄", "skip");
+        String single = batcher.generate(Collections.singletonList("土豆"), preferences(0), true, 5000);
+
+        assertThat(recipeName(results.get(0))).isEqualTo("番茄料理");
+        assertThat(results.get(1)).isNull();
+        assertThat(single).isNull();
+        assertThat(batchCalls.get()).isEqualTo(1);
+        assertThat(batcher.stats().get("missingResults")).isEqualTo(1L);
+        batcher.destroy();
+    }
+
+    @Test
+    void windowTimerOfFullBatchDoesNotFlushNextBatch() throws Exception {
+        FlaskRecipeBatcher batcher = new FlaskRecipeBatcher(pool, true, 400, 2);
+
+        // 第一批在窗口内凑满发出，它的定时器在400毫秒时仍会触发
+        generateConcurrently(batcher, "番茄", "土豆");
+        Thread.sleep(200);
+        Future<String> second = submit(batcher, "豆腐");
+        Thread.sleep(300);
+        Future<String> third = submit(batcher, "白菜");
+
+        // 第一批的定时器不会把豆腐单独发出，它等到白菜到达、凑满后一起发出
+        assertThat(recipeName(second.get())).isEqualTo("豆腐料理");
+        assertThat(recipeName(third.get())).isEqualTo("白菜料理");
+        assertThat(batchCalls.get()).isEqualTo(2);
+        assertThat(batcher.stats().get("singles")).isEqualTo(0L);
+        batcher.destroy();
+    }
+
+    @Test
+    void failedBatchFallsBackToDirectCallsAndCountsOnce() throws Exception {
+        FlaskRecipeBatcher batcher = new FlaskRecipeBatcher(pool, true, 10_000, 3);
+
+        List<String> results = generateConcurrently(batcher, "番茄", "fail", "豆腐");
+
+        // 不向等待者抛出异常，否则每个等待者都会被熔断器记一次失败
+        assertThat(results).containsOnlyNulls();
+        assertThat(batchCalls.get()).isEqualTo(1);
+        assertThat(batcher.stats().get("failures")).isEqualTo(1L);
+        batcher.destroy();
+    }
+}
@@ -0,0 +1,136 @@
+package fridget.fridget.recipe;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FlaskRequestHedgerTest {
+
+    private final List<HttpServer> servers = new ArrayList<>();
+
+    @AfterEach
+    void stopServers() {
+        servers.forEach(server -> server.stop(0));
+    }
+
+    private String stub(String name, long delayMillis) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/generate", exchange -> {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = name.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            } catch (IOException ignored) {
+                // 对冲中落后的一方连接已被中止
+            }
+        });
+        server.start();
+        servers.add(server);
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private static FlaskWorkerPool pool(String... urls) {
+        return new FlaskWorkerPool(Arrays.asList(urls), 8, 4, 1000, 5000, 100, 1000.0, 60_000);
+    }
+
+    private static String generate(FlaskWorkerPool pool, FlaskRequestHedger hedger) {
+        return hedger.call(baseUrl -> pool.restTemplate().postForObject(baseUrl + "/generate", "{}", String.class));
+    }
+
+    @Test
+    void slowPrimaryIsHedgedToAnotherWorker() throws IOException {
+        FlaskWorkerPool pool = pool(stub("slow", 3000), stub("fast", 0));
+        FlaskRequestHedger hedger = new FlaskRequestHedger(pool, true, 0.95, 0, 100, 1.0, 100, 16);
+
+        for (int i = 0; i < 4; i++) {
+            long start = System.currentTimeMillis();
+            assertThat(generate(pool, hedger)).isEqualTo("fast");
+            assertThat(System.currentTimeMillis() - start).isLessThan(2000);
+        }
+
+        assertThat(hedger.stats().get("hedgeWins")).isEqualTo(hedger.stats().get("hedged"));
+        assertThat((long) hedger.stats().get("hedged")).isPositive();
+        hedger.destroy();
+    }
+
+    @Test
+    void hedgesStayWithinBudget() throws IOException {
+        FlaskWorkerPool pool = pool(stub("a", 300), stub("b", 300));
+        FlaskRequestHedger hedger = new FlaskRequestHedger(pool, true, 0.95, 0, 50, 0.25, 100, 16);
+
+        for (int i = 0; i < 8; i++) {
+            generate(pool, hedger);
+        }
+
+        // 每个请求积累0.25个令牌，8个请求最多对冲2次
+        assertThat((long) hedger.stats().get("hedged")).isLessThanOrEqualTo(2);
+        hedger.destroy();
+    }
+
+    @Test
+    void abortedAttemptCountsTowardsThreshold() throws Exception {
+        FlaskWorkerPool pool = pool(stub("slow", 3000), stub("fast", 0));
+        FlaskRequestHedger hedger = new FlaskRequestHedger(pool, true, 0.95, 0, 200, 1.0, 100, 16);
+
+        assertThat(generate(pool, hedger)).isEqualTo("fast");
+
+        // 被中止的慢请求至少耗时200毫秒（对冲阈值），而不是只留下快请求的样本
+        long deadline = System.currentTimeMillis() + 2000;
+        while ((long) hedger.stats().get("attemptLatencyP99") < 200 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat((long) hedger.stats().get("attemptLatencyP99")).isGreaterThanOrEqualTo(200);
+        hedger.destroy();
+    }
+
+    @Test
+    void callsBeyondExecutorLimitRunOnCallerThread() throws Exception {
+        FlaskWorkerPool pool = pool(stub("a", 300), stub("b", 300));
+        // 线程上限为2：一个调用的主请求加对冲请求
+        FlaskRequestHedger hedger = new FlaskRequestHedger(pool, true, 0.95, 0, 50, 1.0, 100, 1);
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            results.add(callers.submit(() -> generate(pool, hedger)));
+        }
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isIn("a", "b");
+        }
+
+        assertThat((long) hedger.stats().get("executorFull")).isPositive();
+        callers.shutdownNow();
+        hedger.destroy();
+    }
+
+    @Test
+    void disabledHedgerCallsOnce() throws IOException {
+        FlaskWorkerPool pool = pool(stub("a", 200), stub("b", 200));
+        FlaskRequestHedger hedger = new FlaskRequestHedger(pool, false, 0.95, 0, 50, 1.0, 100, 16);
+
+        generate(pool, hedger);
+
+        assertThat(hedger.stats().get("hedged")).isEqualTo(0L);
+        hedger.destroy();
+    }
+}
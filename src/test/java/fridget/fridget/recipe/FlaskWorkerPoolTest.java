@@ -0,0 +1,298 @@
+package fridget.fridget.recipe;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FlaskWorkerPoolTest {
+
+    private final List<HttpServer> servers = new ArrayList<>();
+
+    @AfterEach
+    void stopServers() {
+        servers.forEach(server -> server.stop(0));
+    }
+
+    /**
+     * 本地桩服务：/generate 返回自己的名字，/health 返回指定状态码
+     */
+    private String stub(String name, int healthStatus, AtomicInteger generateCalls) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/generate", exchange -> {
+            generateCalls.incrementAndGet();
+            byte[] body = name.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/health", exchange -> {
+            exchange.sendResponseHeaders(healthStatus, -1);
+            exchange.close();
+        });
+        server.start();
+        servers.add(server);
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private static FlaskWorkerPool pool(String... urls) {
+        return new FlaskWorkerPool(Arrays.asList(urls), 8, 4, 1000, 1000, 3, 3.0, 60_000);
+    }
+
+    @Test
+    void routesToWorkerWithFewestOutstandingRequests() {
+        FlaskWorkerPool pool = pool("http://a", "http://b");
+
+        FlaskWorkerPool.Worker first = pool.acquire(null);
+        FlaskWorkerPool.Worker second = pool.acquire(null);
+
+        assertThat(second).isNotSameAs(first);
+        pool.release(first, 10, true);
+        assertThat(pool.acquire(null)).isSameAs(first);
+    }
+
+    @Test
+    void ejectsWorkerAfterConsecutiveFailuresButKeepsLastOne() {
+        FlaskWorkerPool pool = pool("http://good", "http://bad");
+        FlaskWorkerPool.Worker good = null;
+        for (int i = 0; i < 3; i++) {
+            FlaskWorkerPool.Worker a = pool.acquire(null);
+            FlaskWorkerPool.Worker b = pool.acquire(null);
+            good = a.url.endsWith("good") ? a : b;
+            pool.release(good, 10, true);
+            pool.release(a == good ? b : a, 10, false);
+        }
+
+        for (int i = 0; i < 5; i++) {
+            FlaskWorkerPool.Worker worker = pool.acquire(null);
+            assertThat(worker).isSameAs(good);
+            // 剩下的实例也连续失败，但它是最后一个可用实例，不会被剔除
+            pool.release(worker, 10, false);
+        }
+        assertThat(good.ejections.sum()).isZero();
+    }
+
+    @Test
+    void ejectsWorkerMuchSlowerThanTheOthers() {
+        FlaskWorkerPool pool = pool("http://fast", "http://slow");
+        FlaskWorkerPool.Worker fast = null;
+        FlaskWorkerPool.Worker slow = null;
+        for (int i = 0; i < 5; i++) {
+            FlaskWorkerPool.Worker a = pool.acquire(null);
+            FlaskWorkerPool.Worker b = pool.acquire(null);
+            fast = a.url.endsWith("fast") ? a : b;
+            slow = a == fast ? b : a;
+            pool.release(fast, 100, true);
+            pool.release(slow, 1000, true);
+        }
+
+        assertThat(slow.ejections.sum()).isEqualTo(1);
+        for (int i = 0; i < 3; i++) {
+            assertThat(pool.acquire(null)).isSameAs(fast);
+        }
+    }
+
+    @Test
+    void healthCheckTakesDownWorkerOutOfRotation() throws IOException {
+        AtomicInteger healthyCalls = new AtomicInteger();
+        AtomicInteger unhealthyCalls = new AtomicInteger();
+        FlaskWorkerPool pool = pool(stub("up", 200, healthyCalls), stub("down", 503, unhealthyCalls));
+
+        pool.checkHealth();
+        for (int i = 0; i < 4; i++) {
+            String body = pool.call(baseUrl -> pool.restTemplate().postForObject(baseUrl + "/generate", "{}", String.class));
+            assertThat(body).isEqualTo("up");
+        }
+
+        assertThat(healthyCalls.get()).isEqualTo(4);
+        assertThat(unhealthyCalls.get()).isZero();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> down = (Map<String, Object>) pool.stats().values().toArray()[1];
+        assertThat(down.get("healthy")).isEqualTo(false);
+    }
+
+    @Test
+    void keepsOnlyWorkerWhenHealthCheckReportsItDown() throws IOException {
+        AtomicInteger generateCalls = new AtomicInteger();
+        FlaskWorkerPool pool = pool(stub("down", 503, generateCalls));
+
+        pool.checkHealth();
+
+        String body = pool.call(baseUrl -> pool.restTemplate().postForObject(baseUrl + "/generate", "{}", String.class));
+        assertThat(body).isEqualTo("down");
+        assertThat(generateCalls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void fallsBackToLeastRecentlyFailedWorkerWhenAllAreDown() throws Exception {
+        String first = stub("first", 503, new AtomicInteger());
+        String second = stub("second", 503, new AtomicInteger());
+        FlaskWorkerPool pool = pool(first, second);
+        pool.checkHealth();
+
+        // 两个实例都下线时选择失败最早的 first；它的调用再次失败后改为选择 second
+        FlaskWorkerPool.Worker worker = pool.acquire(null);
+        assertThat(worker.url).isEqualTo(first);
+        Thread.sleep(5);
+        pool.release(worker, 10, false);
+        for (int i = 0; i < 3; i++) {
+            worker = pool.acquire(null);
+            assertThat(worker.url).isEqualTo(second);
+            pool.cancel(worker);
+        }
+        // 对冲请求不会发到已下线的实例
+        assertThat(pool.acquire(pool.acquire(null))).isNull();
+    }
+
+    @Test
+    void healthCheckIsNotQueuedBehindBusyGenerations() throws Exception {
+        CountDownLatch arrived = new CountDownLatch(4);
+        CountDownLatch release = new CountDownLatch(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/generate", exchange -> {
+            arrived.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.createContext("/health", exchange -> {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        servers.add(server);
+        String url = "http://127.0.0.1:" + server.getAddress().getPort();
+        // 每个实例最多4个连接，全部被进行中的生成请求占用
+        FlaskWorkerPool pool = pool(url);
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 4; i++) {
+                callers.execute(() -> pool.call(baseUrl -> pool.restTemplate()
+                        .postForObject(baseUrl + "/generate", "{}", String.class)));
+            }
+            assertThat(arrived.await(5, TimeUnit.SECONDS)).isTrue();
+
+            pool.checkHealth();
+
+            @SuppressWarnings("unchecked")
+            Map<String, Object> worker = (Map<String, Object>) pool.stats().get(url);
+            assertThat(worker.get("healthy")).isEqualTo(true);
+        } finally {
+            release.countDown();
+            callers.shutdown();
+            callers.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void readTimeoutDoesNotOutliveRequestDeadline() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/generate", exchange -> {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        servers.add(server);
+        // 固定读取超时10秒，请求只剩300毫秒
+        FlaskWorkerPool pool = new FlaskWorkerPool(
+                Arrays.asList("http://127.0.0.1:" + server.getAddress().getPort()), 8, 4, 1000, 10_000, 3, 3.0, 60_000);
+        long start = System.currentTimeMillis();
+
+        assertThatThrownBy(() -> pool.call(baseUrl -> FlaskWorkerPool.beforeDeadline(start + 300,
+                () -> pool.restTemplate().postForObject(baseUrl + "/generate", "{}", String.class))))
+                .isInstanceOf(ResourceAccessException.class);
+        assertThat(System.currentTimeMillis() - start).isLessThan(3000);
+    }
+
+    @Test
+    void keepsLastWorkerWhenProbeCannotConnect() {
+        FlaskWorkerPool pool = pool("http://127.0.0.1:1");
+
+        pool.checkHealth();
+
+        assertThat(pool.call(baseUrl -> baseUrl)).isEqualTo("http://127.0.0.1:1");
+    }
+
+    @Test
+    void takesDownUnreachableWorkerWhenOthersAreAvailable() throws IOException {
+        String up = stub("up", 200, new AtomicInteger());
+        FlaskWorkerPool pool = pool(up, "http://127.0.0.1:1");
+
+        pool.checkHealth();
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(pool.call(baseUrl -> baseUrl)).isEqualTo(up);
+        }
+    }
+
+    @Test
+    void clientDisconnectsAndClientErrorsDoNotEjectWorkers() {
+        FlaskWorkerPool pool = pool("http://a", "http://b");
+
+        for (int i = 0; i < 10; i++) {
+            assertThatThrownBy(() -> pool.call(baseUrl -> {
+                throw new UncheckedIOException(new IOException("Broken pipe"));
+            })).isInstanceOf(UncheckedIOException.class);
+            assertThatThrownBy(() -> pool.call(baseUrl -> {
+                throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+            })).isInstanceOf(HttpClientErrorException.class);
+        }
+
+        for (Object stats : pool.stats().values()) {
+            assertThat((Map<?, ?>) stats).containsEntry("failures", 0L).containsEntry("ejections", 0L)
+                    .containsEntry("outstanding", 0);
+        }
+    }
+
+    @Test
+    void serverErrorsAndTimeoutsCountAsWorkerFailures() {
+        FlaskWorkerPool pool = pool("http://a", "http://b");
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> pool.call(baseUrl -> {
+                throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR);
+            })).isInstanceOf(HttpServerErrorException.class);
+            assertThatThrownBy(() -> pool.call(baseUrl -> {
+                throw new ResourceAccessException("Read timed out");
+            })).isInstanceOf(ResourceAccessException.class);
+        }
+
+        long failures = pool.stats().values().stream()
+                .mapToLong(stats -> (Long) ((Map<?, ?>) stats).get("failures"))
+                .sum();
+        assertThat(failures).isEqualTo(4);
+    }
+}
@@ -0,0 +1,98 @@
+package fridget.fridget.recipe;
+
+import fridget.fridget.ingredient.IngredientDictionary;
+import fridget.fridget.ingredient.IngredientNormalizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class RecipeCorpusTest {
+
+    private final IngredientNormalizer normalizer = new IngredientNormalizer(Collections.emptyMap());
+    private final RecipeIngredientMatcher matcher = new RecipeIngredientMatcher(new IngredientDictionary(), normalizer);
+
+    private RecipeCorpus corpus(int maxCandidates) {
+        return new RecipeCorpus(mock(RecipeRepository.class), matcher, normalizer,
+                true, 5, 1, 0.5, 0.2, maxCandidates);
+    }
+
+    private static Recipe recipe(String name, String... ingredientNames) {
+        Recipe recipe = new Recipe();
+        recipe.setName(name);
+        List<Ingredient> ingredients = new ArrayList<>();
+        for (String ingredientName : ingredientNames) {
+            ingredients.add(new Ingredient(ingredientName, "适量"));
+        }
+        recipe.setIngredients(ingredients);
+        return recipe;
+    }
+
+    /**
+     * 20个都用盐的食谱，其中2个用番茄
+     */
+    private static List<Recipe> saltyCorpus() {
+        List<Recipe> recipes = new ArrayList<>();
+        recipes.add(recipe("番茄炒蛋", "tomato", "egg", "salt"));
+        recipes.add(recipe("番茄汤", "tomato", "salt"));
+        for (int i = 0; i < 18; i++) {
+            recipes.add(recipe("菜" + i, "vegetable" + i, "salt"));
+        }
+        return recipes;
+    }
+
+    private BitSet fridge(String... names) {
+        return matcher.encodeFridge(normalizer.normalizeAll(Arrays.asList(names)));
+    }
+
+    @Test
+    void commonIngredientsDoNotRecallWholeCorpus() {
+        RecipeCorpus corpus = corpus(2000);
+        corpus.save(saltyCorpus());
+
+        List<Recipe> result = corpus.recommend(fridge("tomato", "egg", "salt"), new BitSet());
+
+        assertThat(result).extracting(Recipe::getName).containsExactly("番茄炒蛋", "番茄汤");
+        assertThat(result.get(0).getCoverage()).isEqualTo(1.0);
+        assertThat(corpus.stats()).containsEntry("stopWordsSkipped", 1L);
+    }
+
+    @Test
+    void fridgeWithOnlyCommonIngredientsStillUsesThem() {
+        RecipeCorpus corpus = corpus(2000);
+        corpus.save(saltyCorpus());
+
+        List<Recipe> result = corpus.recommendAny(fridge("salt"), new BitSet());
+
+        assertThat(result).hasSize(5);
+        assertThat(corpus.stats()).containsEntry("stopWordsSkipped", 0L);
+    }
+
+    @Test
+    void candidatesAreCappedRarestFirst() {
+        RecipeCorpus corpus = corpus(2);
+        corpus.save(saltyCorpus());
+
+        List<Recipe> result = corpus.recommendAny(fridge("tomato", "salt"), new BitSet());
+
+        // 番茄的列表最短，先被召回并占满上限
+        assertThat(result).extracting(Recipe::getName).containsExactlyInAnyOrder("番茄炒蛋", "番茄汤");
+        assertThat(corpus.stats()).containsEntry("candidatesTruncated", 1L);
+    }
+
+    @Test
+    void excludesRecipesWithAllergens() {
+        RecipeCorpus corpus = corpus(2000);
+        corpus.save(saltyCorpus());
+
+        List<Recipe> result = corpus.recommend(fridge("tomato", "egg", "salt"), fridge("egg"));
+
+        assertThat(result).extracting(Recipe::getName).containsExactly("番茄汤");
+    }
+}
@@ -0,0 +1,199 @@
+package fridget.fridget.recipe;
+
+import fridget.fridget.common.UpstreamUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RecipeGenerationLockTest {
+
+    private static final String CACHE_KEY = "recipe:abc";
+    private static final long TTL_SECONDS = 3600;
+
+    private final FakeRedis redis = new FakeRedis();
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+    // 两个节点共享同一个Redis
+    private RecipeGenerationLock nodeA;
+    private RecipeGenerationLock nodeB;
+
+    private void startNodes(long leaseMillis) {
+        nodeA = new RecipeGenerationLock(redis, redis.listenerContainer(), leaseMillis, 10_000);
+        nodeB = new RecipeGenerationLock(redis, redis.listenerContainer(), leaseMillis, 10_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+        nodeA.destroy();
+        nodeB.destroy();
+    }
+
+    private String readCache() {
+        return redis.get(CACHE_KEY);
+    }
+
+    /**
+     * nodeA 持有租约，生成逻辑阻塞到 release 打开后执行 body
+     */
+    private Future<String> holdLease(CountDownLatch acquired, CountDownLatch release,
+                                     Function<RecipeGenerationLock.Lease, String> body) {
+        return pool.submit(() -> nodeA.generateOnce(CACHE_KEY, this::readCache, lease -> {
+            acquired.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return body.apply(lease);
+        }));
+    }
+
+    private void waitForWaiter(RecipeGenerationLock lock) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Integer.valueOf(1).equals(lock.stats().get("waiting")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(lock.stats().get("waiting")).isEqualTo(1);
+    }
+
+    @Test
+    void waiterIsWokenWithHolderResultWithoutGenerating() throws Exception {
+        startNodes(10_000);
+        CountDownLatch acquired = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> holder = holdLease(acquired, release, lease -> {
+            nodeA.saveIfHolder(lease, CACHE_KEY, "[recipes]", TTL_SECONDS);
+            return "[recipes]";
+        });
+        assertThat(acquired.await(5, TimeUnit.SECONDS)).isTrue();
+
+        AtomicInteger waiterGenerations = new AtomicInteger();
+        Future<String> waiter = pool.submit(() -> nodeB.generateOnce(CACHE_KEY, this::readCache, lease -> {
+            waiterGenerations.incrementAndGet();
+            return "[other]";
+        }));
+        waitForWaiter(nodeB);
+        long releasedAt = System.currentTimeMillis();
+        release.countDown();
+
+        assertThat(holder.get(5, TimeUnit.SECONDS)).isEqualTo("[recipes]");
+        assertThat(waiter.get(5, TimeUnit.SECONDS)).isEqualTo("[recipes]");
+        // 由通知唤醒，而不是等到10秒的租约过期
+        assertThat(System.currentTimeMillis() - releasedAt).isLessThan(5000);
+        assertThat(waiterGenerations).hasValue(0);
+        assertThat(nodeB.stats()).containsEntry("contended", 1L).containsEntry("signalsReceived", 1L);
+        assertThat(redis.published()).containsExactly("recipe:ready:" + CACHE_KEY);
+    }
+
+    @Test
+    void waitersBackOffWhenHolderFails() throws Exception {
+        startNodes(10_000);
+        CountDownLatch acquired = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> holder = holdLease(acquired, release, lease -> {
+            throw new IllegalStateException("flask down");
+        });
+        assertThat(acquired.await(5, TimeUnit.SECONDS)).isTrue();
+
+        AtomicInteger waiterGenerations = new AtomicInteger();
+        Future<String> waiter = pool.submit(() -> nodeB.generateOnce(CACHE_KEY, this::readCache, lease -> {
+            waiterGenerations.incrementAndGet();
+            return "[other]";
+        }));
+        waitForWaiter(nodeB);
+        release.countDown();
+
+        assertThatThrownBy(() -> holder.get(5, TimeUnit.SECONDS)).hasRootCauseInstanceOf(IllegalStateException.class);
+        // 失败通知让等待者降级，而不是各自调用Flask
+        assertThatThrownBy(() -> waiter.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(UpstreamUnavailableException.class);
+        assertThat(waiterGenerations).hasValue(0);
+        assertThat(nodeB.stats()).containsEntry("failuresReceived", 1L).containsEntry("takeovers", 0L);
+        assertThat(redis.published()).containsExactly("recipe:failed:" + CACHE_KEY);
+        // 租约已释放，下一次请求可以重新生成
+        assertThat(redis.hasKey("recipe:lock:" + CACHE_KEY)).isFalse();
+    }
+
+    @Test
+    void renewsLeaseWhileGenerationOutlivesIt() throws Exception {
+        startNodes(150);
+        CountDownLatch acquired = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> holder = holdLease(acquired, release, lease -> {
+            nodeA.saveIfHolder(lease, CACHE_KEY, "[recipes]", TTL_SECONDS);
+            return "[recipes]";
+        });
+        assertThat(acquired.await(5, TimeUnit.SECONDS)).isTrue();
+
+        AtomicInteger waiterGenerations = new AtomicInteger();
+        Future<String> waiter = pool.submit(() -> nodeB.generateOnce(CACHE_KEY, this::readCache, lease -> {
+            waiterGenerations.incrementAndGet();
+            return "[other]";
+        }));
+        // 生成耗时为租约时长的数倍
+        Thread.sleep(600);
+        release.countDown();
+
+        assertThat(holder.get(5, TimeUnit.SECONDS)).isEqualTo("[recipes]");
+        assertThat(waiter.get(5, TimeUnit.SECONDS)).isEqualTo("[recipes]");
+        assertThat(waiterGenerations).hasValue(0);
+        assertThat((Long) nodeA.stats().get("renewals")).isGreaterThan(0L);
+        assertThat(nodeB.stats()).containsEntry("takeovers", 0L);
+    }
+
+    @Test
+    void takesOverWhenHolderStopsRenewing() throws Exception {
+        startNodes(200);
+        // 已宕机节点留下的租约，不会再续期
+        redis.put("recipe:lock:" + CACHE_KEY, "1:dead-node", 200);
+
+        String result = nodeB.generateOnce(CACHE_KEY, this::readCache, lease -> {
+            nodeB.saveIfHolder(lease, CACHE_KEY, "[recipes]", TTL_SECONDS);
+            return "[recipes]";
+        });
+
+        assertThat(result).isEqualTo("[recipes]");
+        assertThat(readCache()).isEqualTo("[recipes]");
+        assertThat(nodeB.stats()).containsEntry("takeovers", 1L);
+    }
+
+    @Test
+    void rejectsWriteFromHolderWhoseLeaseWasTakenOver() throws Exception {
+        startNodes(10_000);
+        CountDownLatch acquired = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger staleWrites = new AtomicInteger();
+        Future<String> holder = holdLease(acquired, release, lease -> {
+            if (nodeA.saveIfHolder(lease, CACHE_KEY, "[stale]", TTL_SECONDS)) {
+                staleWrites.incrementAndGet();
+            }
+            return null;
+        });
+        assertThat(acquired.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // 租约丢失（例如Redis主从切换），另一个节点以更大的fence接管
+        redis.delete("recipe:lock:" + CACHE_KEY);
+        String result = nodeB.generateOnce(CACHE_KEY, this::readCache, lease -> {
+            assertThat(lease.getFence()).isEqualTo(2L);
+            nodeB.saveIfHolder(lease, CACHE_KEY, "[fresh]", TTL_SECONDS);
+            return "[fresh]";
+        });
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+
+        assertThat(result).isEqualTo("[fresh]");
+        assertThat(staleWrites).hasValue(0);
+        assertThat(readCache()).isEqualTo("[fresh]");
+        assertThat(nodeA.stats()).containsEntry("fencedWritesRejected", 1L);
+    }
+}
@@ -0,0 +1,89 @@
+package fridget.fridget.recipe;
+
+import fridget.fridget.ingredient.IngredientDictionary;
+import fridget.fridget.ingredient.IngredientNormalizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecipeIngredientMatcherTest {
+
+    private final IngredientNormalizer normalizer = new IngredientNormalizer(synonyms());
+    private final IngredientDictionary dictionary = new IngredientDictionary();
+    private final RecipeIngredientMatcher matcher = new RecipeIngredientMatcher(dictionary, normalizer);
+
+    private static Map<String, String> synonyms() {
+        Map<String, String> synonyms = new HashMap<>();
+        synonyms.put("番茄", "番茄");
+        synonyms.put("西红柿", "番茄");
+        return synonyms;
+    }
+
+    private static Recipe recipe(String... ingredientNames) {
+        Recipe recipe = new Recipe();
+        Ingredient[] ingredients = new Ingredient[ingredientNames.length];
+        for (int i = 0; i < ingredientNames.length; i++) {
+            ingredients[i] = new Ingredient(ingredientNames[i], "适量");
+        }
+        recipe.setIngredients(Arrays.asList(ingredients));
+        return recipe;
+    }
+
+    @Test
+    void missingIngredientsKeepRecipeNamesAndOrder() {
+        Recipe recipe = recipe("西红柿", "Eggs", "葱", "盐");
+        matcher.index(recipe);
+        BitSet fridge = matcher.encodeFridge(normalizer.normalizeAll(Arrays.asList("番茄", "egg")));
+
+        matcher.match(recipe, fridge);
+
+        assertThat(recipe.getMissingIngredients()).containsExactly("葱", "盐");
+        assertThat(recipe.getCoverage()).isEqualTo(0.5);
+    }
+
+    @Test
+    void recipeWithFirstSeenIngredientsStillMatchesFridge() {
+        // 冰箱里的"土豆"在这个食谱之前没有出现在任何食谱中
+        Recipe recipe = recipe("土豆", "盐");
+
+        matcher.matchAll(Collections.singletonList(recipe), normalizer.normalizeAll(Arrays.asList("土豆")));
+
+        assertThat(recipe.getMissingIngredients()).containsExactly("盐");
+        assertThat(recipe.getCoverage()).isEqualTo(0.5);
+    }
+
+    @Test
+    void unknownFridgeNamesDoNotGrowDictionary() {
+        matcher.index(recipe("番茄", "egg"));
+        int size = dictionary.size();
+
+        List<String> fridge = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            fridge.add("random-" + i);
+        }
+        fridge.add("西红柿");
+        BitSet bits = matcher.encodeFridge(normalizer.normalizeAll(fridge));
+
+        assertThat(dictionary.size()).isEqualTo(size);
+        assertThat(bits.cardinality()).isEqualTo(1);
+        assertThat(bits.get(dictionary.find("番茄"))).isTrue();
+    }
+
+    @Test
+    void recipeWithoutIngredientsIsFullyCovered() {
+        Recipe recipe = new Recipe();
+
+        matcher.match(recipe, new BitSet());
+
+        assertThat(recipe.getMissingIngredients()).isEmpty();
+        assertThat(recipe.getCoverage()).isEqualTo(1.0);
+    }
+}
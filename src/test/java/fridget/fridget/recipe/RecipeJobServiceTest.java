@@ -0,0 +1,127 @@
+package fridget.fridget.recipe;
+
+import fridget.fridget.common.EntityNotFoundException;
+import fridget.fridget.common.ServiceBusyException;
+import fridget.fridget.common.UpstreamUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RecipeJobServiceTest {
+
+    private final FakeRedis redis = new FakeRedis();
+    private final RecipeService recipeService = mock(RecipeService.class);
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1));
+    private final RecipeJobService jobService = new RecipeJobService(recipeService, redis, executor, 60);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        SecurityContextHolder.clearContext();
+    }
+
+    private static void loginAs(String userId) {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(userId, null));
+    }
+
+    private RecipeJob waitForStatus(String jobId, RecipeJobStatus status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        RecipeJob job = jobService.find(jobId);
+        while (job.getStatus() != status && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+            job = jobService.find(jobId);
+        }
+        assertThat(job.getStatus()).isEqualTo(status);
+        return job;
+    }
+
+    @Test
+    void jobRunsInBackgroundAndResultIsStoredInRedis() throws Exception {
+        when(recipeService.generateRecipesOrThrow("user-1"))
+                .thenReturn(Collections.singletonList(Recipe.builder().name("番茄炒蛋").build()));
+        loginAs("user-1");
+
+        RecipeJob submitted = jobService.submit();
+
+        assertThat(submitted.getStatus()).isEqualTo(RecipeJobStatus.PENDING);
+        RecipeJob done = waitForStatus(submitted.getJobId(), RecipeJobStatus.DONE);
+        assertThat(done.getRecipes()).extracting(Recipe::getName).containsExactly("番茄炒蛋");
+        assertThat(done.getUpdatedAt()).isGreaterThanOrEqualTo(submitted.getCreatedAt());
+        // 任务状态保存在Redis中并设置过期时间，任意节点都可以查询
+        assertThat(redis.getExpire("recipe:job:" + submitted.getJobId(), TimeUnit.MINUTES)).isBetween(59L, 60L);
+    }
+
+    @Test
+    void failureIsRecordedOnJob() throws Exception {
+        when(recipeService.generateRecipesOrThrow("user-1"))
+                .thenThrow(new UpstreamUnavailableException("Recipe generation failed.", 5));
+        loginAs("user-1");
+
+        RecipeJob submitted = jobService.submit();
+
+        RecipeJob failed = waitForStatus(submitted.getJobId(), RecipeJobStatus.FAILED);
+        assertThat(failed.getMessage()).isEqualTo("Recipe generation failed.");
+        assertThat(failed.getRecipes()).isNull();
+    }
+
+    @Test
+    void swallowedFailureIsNotReportedAsEmptyResult() throws Exception {
+        // 同步接口失败时返回空列表，任务走的是会抛出异常的版本
+        when(recipeService.generateRecipes("user-1")).thenReturn(Collections.emptyList());
+        when(recipeService.generateRecipesOrThrow("user-1"))
+                .thenThrow(new IllegalStateException("Recipe generation failed."));
+        loginAs("user-1");
+
+        RecipeJob submitted = jobService.submit();
+
+        RecipeJob failed = waitForStatus(submitted.getJobId(), RecipeJobStatus.FAILED);
+        assertThat(failed.getMessage()).isEqualTo("Recipe generation failed.");
+    }
+
+    @Test
+    void onlyOwnerCanReadJob() throws Exception {
+        when(recipeService.generateRecipesOrThrow("user-1")).thenReturn(Collections.emptyList());
+        loginAs("user-1");
+        RecipeJob submitted = jobService.submit();
+        waitForStatus(submitted.getJobId(), RecipeJobStatus.DONE);
+
+        loginAs("user-2");
+
+        assertThatThrownBy(() -> jobService.find(submitted.getJobId())).isInstanceOf(EntityNotFoundException.class);
+        assertThatThrownBy(() -> jobService.find("no-such-job")).isInstanceOf(EntityNotFoundException.class);
+    }
+
+    @Test
+    void rejectsJobWhenExecutorIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(recipeService.generateRecipesOrThrow("user-1")).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return Collections.emptyList();
+        });
+        loginAs("user-1");
+        // 一个任务在执行，一个在排队
+        RecipeJob running = jobService.submit();
+        RecipeJob queued = jobService.submit();
+
+        assertThatThrownBy(jobService::submit)
+                .isInstanceOf(ServiceBusyException.class)
+                .extracting("retryAfterSeconds").isEqualTo(5L);
+
+        release.countDown();
+        waitForStatus(running.getJobId(), RecipeJobStatus.DONE);
+        waitForStatus(queued.getJobId(), RecipeJobStatus.DONE);
+    }
+}
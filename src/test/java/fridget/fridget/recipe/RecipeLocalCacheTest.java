@@ -0,0 +1,99 @@
+package fridget.fridget.recipe;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecipeLocalCacheTest {
+
+    private static final String CACHE_KEY = "recipe:abc";
+    private static final String INVALIDATE_CHANNEL = "recipe:l1:invalidate";
+
+    private final FakeRedis redis = new FakeRedis();
+    // 两个节点共享同一个Redis
+    private final RecipeLocalCache nodeA = new RecipeLocalCache(redis, redis.listenerContainer(), 1024, 10);
+    private final RecipeLocalCache nodeB = new RecipeLocalCache(redis, redis.listenerContainer(), 1024, 10);
+
+    private static List<Recipe> recipes() {
+        List<Recipe> recipes = new ArrayList<>();
+        recipes.add(Recipe.builder().name("番茄炒蛋").build());
+        recipes.add(Recipe.builder().name("番茄汤").build());
+        return recipes;
+    }
+
+    @Test
+    void readsReturnCopiesThatCallersMayModify() {
+        List<Recipe> original = recipes();
+        List<Recipe> returned = nodeA.put(CACHE_KEY, original, 2048);
+
+        // 调用方按自己的冰箱设置缺失食材、调整顺序，不影响缓存中的对象
+        returned.get(0).setMissingIngredients(Collections.singletonList("鸡蛋"));
+        returned.get(0).setCoverage(0.5);
+        Collections.reverse(returned);
+        original.get(0).setMissingIngredients(Collections.singletonList("番茄"));
+        original.clear();
+
+        List<Recipe> first = nodeA.getIfPresent(CACHE_KEY);
+        first.get(1).setMissingIngredients(Collections.singletonList("盐"));
+        List<Recipe> second = nodeA.getIfPresent(CACHE_KEY);
+
+        assertThat(second).extracting(Recipe::getName).containsExactly("番茄炒蛋", "番茄汤");
+        assertThat(second).extracting(Recipe::getMissingIngredients).containsOnlyNulls();
+        assertThat(second).extracting(Recipe::getCoverage).containsOnlyNulls();
+        assertThat(second.get(0)).isNotSameAs(first.get(0));
+    }
+
+    @Test
+    void nestedIngredientsAndStepsAreNotShared() {
+        List<Ingredient> ingredients = new ArrayList<>(Collections.singletonList(new Ingredient("番茄", "2个")));
+        List<Recipe> original = new ArrayList<>(Collections.singletonList(Recipe.builder().name("番茄炒蛋")
+                .ingredients(ingredients)
+                .steps(new ArrayList<>(Collections.singletonList("切块")))
+                .nutrition(new Nutrition("200", "", "", "", "", "", ""))
+                .build()));
+        Recipe returned = nodeA.put(CACHE_KEY, original, 2048).get(0);
+
+        // 修改写入的原对象和返回的副本中的嵌套对象，都不影响缓存
+        ingredients.get(0).setQuantity("1个");
+        returned.getIngredients().get(0).setName("鸡蛋");
+        returned.getIngredients().add(new Ingredient("盐", "少许"));
+        returned.getSteps().clear();
+        returned.getNutrition().setCalories("0");
+        nodeA.getIfPresent(CACHE_KEY).get(0).getIngredients().clear();
+
+        Recipe cached = nodeA.getIfPresent(CACHE_KEY).get(0);
+        assertThat(cached.getIngredients()).extracting(Ingredient::getName).containsExactly("番茄");
+        assertThat(cached.getIngredients()).extracting(Ingredient::getQuantity).containsExactly("2个");
+        assertThat(cached.getSteps()).containsExactly("切块");
+        assertThat(cached.getNutrition().getCalories()).isEqualTo("200");
+    }
+
+    @Test
+    void invalidationClearsLocalEntryAndOtherNodes() {
+        nodeA.put(CACHE_KEY, recipes(), 2048);
+        nodeB.put(CACHE_KEY, recipes(), 2048);
+        nodeB.put("recipe:other", recipes(), 2048);
+
+        nodeA.invalidate(CACHE_KEY);
+
+        assertThat(nodeA.getIfPresent(CACHE_KEY)).isNull();
+        assertThat(nodeB.getIfPresent(CACHE_KEY)).isNull();
+        assertThat(nodeB.getIfPresent("recipe:other")).isNotNull();
+        assertThat(redis.published()).hasSize(1);
+    }
+
+    @Test
+    void ignoresOwnInvalidationEchoAfterRewrite() {
+        nodeA.invalidate(CACHE_KEY);
+        // 本节点在通知送达前已经写入新结果，自己发出的通知不应把它清除
+        nodeA.put(CACHE_KEY, recipes(), 2048);
+        String echo = redis.published().get(0).substring(INVALIDATE_CHANNEL.length() + 1);
+        redis.convertAndSend(INVALIDATE_CHANNEL, echo);
+
+        assertThat(nodeA.getIfPresent(CACHE_KEY)).isNotNull();
+    }
+}
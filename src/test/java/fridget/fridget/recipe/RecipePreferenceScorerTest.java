@@ -0,0 +1,105 @@
+package fridget.fridget.recipe;
+
+import fridget.fridget.ingredient.HeapIngredientEmbeddings;
+import fridget.fridget.ingredient.IngredientNormalizer;
+import fridget.fridget.user.dto.UserPreferenceDto;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class RecipePreferenceScorerTest {
+
+    private static final String VECTORS = "6 2\n"
+            + "meat 1 0\n"
+            + "fish 0.9 0.1\n"
+            + "vegetable 0 1\n"
+            + "pork 1 0\n"
+            + "cabbage 0 1\n"
+            + "bell_pepper 0.6 0.8\n";
+
+    private final RecipePreferenceScorer scorer;
+
+    RecipePreferenceScorerTest() throws IOException {
+        HeapIngredientEmbeddings embeddings = HeapIngredientEmbeddings.load(
+                new ByteArrayInputStream(VECTORS.getBytes(StandardCharsets.UTF_8)));
+        scorer = new RecipePreferenceScorer(embeddings, new IngredientNormalizer(Collections.emptyMap()));
+    }
+
+    private static Recipe recipe(String name, String... ingredientNames) {
+        List<Ingredient> ingredients = new ArrayList<>();
+        for (String ingredientName : ingredientNames) {
+            ingredients.add(new Ingredient(ingredientName, "适量"));
+        }
+        return Recipe.builder().name(name).ingredients(ingredients).build();
+    }
+
+    private static UserPreferenceDto preferences(String vegan, int meat, int vege, String... allergies) {
+        UserPreferenceDto preferences = new UserPreferenceDto();
+        preferences.setVegan(vegan);
+        preferences.setMeatConsumption(meat);
+        preferences.setVegeConsumption(vege);
+        preferences.setAllergies(Arrays.asList(allergies));
+        return preferences;
+    }
+
+    @Test
+    void strictVeganPrefersVegetableRecipe() {
+        Recipe pork = recipe("红烧肉", "pork");
+        Recipe cabbage = recipe("炒白菜", "cabbage");
+        List<Recipe> recipes = new ArrayList<>(Arrays.asList(pork, cabbage));
+
+        scorer.rank(recipes, preferences("strict", 0, 5));
+
+        assertThat(recipes).containsExactly(cabbage, pork);
+    }
+
+    @Test
+    void allergyPushesRecipeDown() {
+        Recipe cabbage = recipe("炒白菜", "cabbage");
+        Recipe pepper = recipe("炒青椒", "Bell Pepper");
+        List<Recipe> recipes = new ArrayList<>(Arrays.asList(pepper, cabbage));
+
+        scorer.rank(recipes, preferences("none", 0, 1, "cabbage"));
+
+        assertThat(recipes).containsExactly(pepper, cabbage);
+    }
+
+    @Test
+    void featuresMatchPythonDefinition() {
+        Recipe pork = recipe("红烧肉", "pork", "cabbage");
+        UserPreferenceDto preferences = preferences("none", 3, 1);
+
+        double[] features = scorer.features(pork, preferences, scorer.allergens(preferences));
+
+        // 肉=1（pork），鱼≈0.99（pork与fish），蔬菜=1（cabbage），惩罚最多为-5，辣度0与0接近奖励0.5
+        assertThat(features[0]).isEqualTo(1.0, within(1e-6));
+        assertThat(features[1]).isGreaterThan(0.9);
+        assertThat(features[4]).isEqualTo(1.0, within(1e-6));
+        assertThat(features[5]).isEqualTo(-5.0);
+        assertThat(features[6]).isEqualTo(1.5, within(1e-6));
+    }
+
+    @Test
+    void leavesFlaskOrderWhenNoVectorsAreLoaded() throws IOException {
+        RecipePreferenceScorer disabled = new RecipePreferenceScorer(
+                HeapIngredientEmbeddings.load(new ByteArrayInputStream("0 2\n".getBytes(StandardCharsets.UTF_8))),
+                new IngredientNormalizer(Collections.emptyMap()));
+        Recipe pork = recipe("红烧肉", "pork");
+        Recipe cabbage = recipe("炒白菜", "cabbage");
+        List<Recipe> recipes = new ArrayList<>(Arrays.asList(pork, cabbage));
+
+        disabled.rank(recipes, preferences("strict", 0, 5));
+
+        assertThat(disabled.isEnabled()).isFalse();
+        assertThat(recipes).containsExactly(pork, cabbage);
+    }
+}
@@ -0,0 +1,89 @@
+package fridget.fridget.recipe;
+
+import fridget.fridget.common.UpstreamUnavailableException;
+import fridget.fridget.ingredient.FridgeChangedEvent;
+import fridget.fridget.ingredient.IngredientNormalizer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecipePrewarmerTest {
+
+    private static final long DEBOUNCE_MILLIS = 50;
+
+    private final RecipeService recipeService = mock(RecipeService.class);
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(4));
+    private final RecipePrewarmer prewarmer = new RecipePrewarmer(recipeService,
+            new IngredientNormalizer(Collections.emptyMap()), executor, true, DEBOUNCE_MILLIS);
+
+    @AfterEach
+    void tearDown() {
+        prewarmer.destroy();
+        executor.shutdownNow();
+    }
+
+    private static FridgeChangedEvent change(String userId, List<String> previous, List<String> current) {
+        return new FridgeChangedEvent(userId, previous, current);
+    }
+
+    @Test
+    void burstOfEditsPrewarmsFinalFridgeOnce() throws Exception {
+        List<String> finalFridge = Arrays.asList("egg", "tomato", "onion");
+        when(recipeService.prewarm("user-1", finalFridge)).thenReturn(true);
+
+        prewarmer.onFridgeChanged(change("user-1", Collections.singletonList("egg"), Arrays.asList("egg", "tomato")));
+        prewarmer.onFridgeChanged(change("user-1", Arrays.asList("egg", "tomato"), finalFridge));
+
+        verify(recipeService, timeout(2000)).prewarm("user-1", finalFridge);
+        Thread.sleep(DEBOUNCE_MILLIS * 3);
+        verify(recipeService).prewarm(anyString(), anyList());
+        assertThat(prewarmer.stats())
+                .containsEntry("events", 2L)
+                .containsEntry("coalesced", 1L)
+                .containsEntry("generated", 1L);
+    }
+
+    @Test
+    void skipsFridgeUnchangedAfterNormalization() throws Exception {
+        // 删掉又加回同一食材，规范化后缓存键相同
+        prewarmer.onFridgeChanged(change("user-1", Arrays.asList("Eggs", "tomato"), Arrays.asList("tomatoes", "egg")));
+        prewarmer.onFridgeChanged(change("user-2", Collections.singletonList("egg"), Collections.emptyList()));
+
+        waitForStat("runs", 2);
+        verify(recipeService, never()).prewarm(anyString(), anyList());
+    }
+
+    @Test
+    void upstreamFailureIsCountedNotPropagated() throws Exception {
+        when(recipeService.prewarm(anyString(), anyList())).thenThrow(new UpstreamUnavailableException("busy", 5));
+
+        prewarmer.onFridgeChanged(change("user-1", Collections.emptyList(), Collections.singletonList("egg")));
+
+        waitForStat("failures", 1);
+        assertThat(prewarmer.stats()).containsEntry("generated", 0L);
+    }
+
+    private void waitForStat(String name, long value) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!Long.valueOf(value).equals(prewarmer.stats().get(name)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(prewarmer.stats()).containsEntry(name, value);
+    }
+}
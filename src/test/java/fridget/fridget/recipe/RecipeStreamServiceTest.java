@@ -0,0 +1,109 @@
+package fridget.fridget.recipe;
+
+import fridget.fridget.common.UpstreamUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+class RecipeStreamServiceTest {
+
+    private final RecipeService recipeService = mock(RecipeService.class);
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1));
+
+    @BeforeEach
+    void login() {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("user-1", null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        SecurityContextHolder.clearContext();
+    }
+
+    private String stream(ThreadPoolExecutor streamExecutor) throws Exception {
+        RecipeController controller = new RecipeController(recipeService, mock(RecipeJobService.class),
+                new RecipeStreamService(recipeService, streamExecutor));
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+        MvcResult result = mockMvc.perform(get("/recipe/recommend/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // 等待推送结束（emitter complete）
+        result.getAsyncResult(5000);
+        return result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void pushesEachRecipeAsItArrivesThenDone() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<Recipe> consumer = invocation.getArgument(1);
+            consumer.accept(Recipe.builder().name("番茄炒蛋").build());
+            consumer.accept(Recipe.builder().name("番茄汤").build());
+            return 2;
+        }).when(recipeService).streamRecipes(eq("user-1"), any());
+
+        String body = stream(executor);
+
+        int first = body.indexOf("event:recipe\ndata:{\"name\":\"番茄炒蛋\"");
+        int second = body.indexOf("event:recipe\ndata:{\"name\":\"番茄汤\"");
+        int done = body.indexOf("event:done\ndata:2");
+        assertThat(first).isNotNegative();
+        assertThat(second).isGreaterThan(first);
+        assertThat(done).isGreaterThan(second);
+    }
+
+    @Test
+    void upstreamUnavailableBecomesBusyEventWithRetry() throws Exception {
+        when(recipeService.streamRecipes(eq("user-1"), any()))
+                .thenThrow(new UpstreamUnavailableException("Recipe generation failed, please retry later.", 7));
+
+        String body = stream(executor);
+
+        assertThat(body).contains("event:busy\n").contains("retry:7000\n")
+                .contains("data:Recipe generation failed, please retry later.")
+                .doesNotContain("event:done");
+    }
+
+    @Test
+    void unexpectedFailureBecomesErrorEvent() throws Exception {
+        when(recipeService.streamRecipes(eq("user-1"), any())).thenThrow(new IllegalStateException("boom"));
+
+        String body = stream(executor);
+
+        assertThat(body).contains("event:error\ndata:Recipe generation failed").doesNotContain("boom");
+    }
+
+    @Test
+    void fullExecutorRespondsBusyWithoutCallingFlask() throws Exception {
+        ThreadPoolExecutor stopped = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1));
+        stopped.shutdown();
+
+        String body = stream(stopped);
+
+        assertThat(body).contains("event:busy\n").contains("retry:5000\n");
+        verifyNoInteractions(recipeService);
+    }
+}
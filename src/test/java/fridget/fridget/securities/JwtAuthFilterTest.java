@@ -0,0 +1,204 @@
+package fridget.fridget.securities;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class JwtAuthFilterTest {
+
+    private static final String SECRET = "test-secret";
+
+    private final TokenRevocationService revocationService = new TokenRevocationService(3600, 86400, 1000, 0.01);
+    private final JwtAuthFilter filter = new JwtAuthFilter(null, null, revocationService, SECRET, 100);
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static String token(String userId, long ttlMillis) {
+        Date now = new Date();
+        return Jwts.builder()
+                .setSubject(userId)
+                .setId(userId + "-jti")
+                .claim("role", "USER")
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + ttlMillis))
+                .signWith(SignatureAlgorithm.HS256, SECRET)
+                .compact();
+    }
+
+    private static MockHttpServletRequest request(String path, String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setServletPath(path);
+        if (token != null) {
+            request.addHeader(JwtAuthFilter.HEADER_KEY, JwtAuthFilter.PREFIX + token);
+        }
+        return request;
+    }
+
+    @Test
+    void authenticatesAndCachesVerifiedToken() throws Exception {
+        String token = token("alice", 60_000);
+
+        filter.doFilter(request("/user/preferences", token), new MockHttpServletResponse(), new MockFilterChain());
+        Authentication first = SecurityContextHolder.getContext().getAuthentication();
+        assertThat(first.getName()).isEqualTo("alice");
+
+        SecurityContextHolder.clearContext();
+        filter.doFilter(request("/user/preferences", token), new MockHttpServletResponse(), new MockFilterChain());
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isSameAs(first);
+        assertThat(filter.stats()).containsEntry("cacheHits", 1L).containsEntry("cacheMisses", 1L);
+    }
+
+    @Test
+    void runsOncePerRequest() throws Exception {
+        MockHttpServletRequest request = request("/user/preferences", token("alice", 60_000));
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertThat(filter.stats()).containsEntry("cacheHits", 0L).containsEntry("cacheMisses", 1L);
+    }
+
+    @Test
+    void skipsPublicPaths() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request("/doLogin", "not-a-jwt"), response, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        assertThat(filter.stats()).containsEntry("skippedPublicPaths", 1L).containsEntry("cacheMisses", 0L);
+    }
+
+    @Test
+    void rejectsInvalidToken() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request("/user/preferences", token("alice", 60_000) + "x"), response, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(401);
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        assertThat(filter.stats()).containsEntry("rejected", 1L).containsEntry("cachedTokens", 0L);
+    }
+
+    @Test
+    void rejectsRevokedTokenEvenWhenCached() throws Exception {
+        String token = token("alice", 60_000);
+        filter.doFilter(request("/user/preferences", token), new MockHttpServletResponse(), new MockFilterChain());
+        SecurityContextHolder.clearContext();
+
+        revocationService.revoke("alice-jti", System.currentTimeMillis() + 60_000);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request("/user/preferences", token), response, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(401);
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+    }
+
+    // 引入吊销之前签发的令牌，没有 jti
+    private static String legacyToken(String userId, long ttlMillis) {
+        Date now = new Date();
+        return Jwts.builder()
+                .setSubject(userId)
+                .claim("role", "USER")
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + ttlMillis))
+                .signWith(SignatureAlgorithm.HS256, SECRET)
+                .compact();
+    }
+
+    @Test
+    void acceptsTokenWithoutJtiUntilExpiry() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request("/user/preferences", legacyToken("alice", 60_000)), response, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getName()).isEqualTo("alice");
+    }
+
+    @Test
+    void refreshesExpiredTokenWithoutJtiOnlyBeforeLogout() throws Exception {
+        JwtTokenProvider tokenProvider = mock(JwtTokenProvider.class);
+        RefreshTokenService refreshTokenService = mock(RefreshTokenService.class);
+        String newToken = token("alice", 60_000);
+        when(tokenProvider.createAccessToken("alice", "USER")).thenReturn(newToken);
+        JwtAuthFilter refreshingFilter = new JwtAuthFilter(tokenProvider, refreshTokenService, revocationService, SECRET, 100);
+
+        // 登出已删除刷新令牌
+        MockHttpServletResponse loggedOut = new MockHttpServletResponse();
+        refreshingFilter.doFilter(request("/user/preferences", legacyToken("alice", -60_000)), loggedOut,
+                new MockFilterChain());
+        assertThat(loggedOut.getStatus()).isEqualTo(401);
+        assertThat(loggedOut.getHeader("newAccessToken")).isNull();
+
+        when(refreshTokenService.getRefreshToken("alice")).thenReturn("refresh-token");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        refreshingFilter.doFilter(request("/user/preferences", legacyToken("alice", -60_000)), response,
+                new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader("newAccessToken")).isEqualTo(newToken);
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getName()).isEqualTo("alice");
+    }
+
+    @Test
+    void refreshesExpiredTokenWithinRefreshWindow() throws Exception {
+        JwtTokenProvider tokenProvider = mock(JwtTokenProvider.class);
+        RefreshTokenService refreshTokenService = mock(RefreshTokenService.class);
+        String newToken = token("alice", 60_000);
+        when(refreshTokenService.getRefreshToken("alice")).thenReturn("refresh-token");
+        when(tokenProvider.createAccessToken("alice", "USER")).thenReturn(newToken);
+        JwtAuthFilter refreshingFilter = new JwtAuthFilter(tokenProvider, refreshTokenService, revocationService, SECRET, 100);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        refreshingFilter.doFilter(request("/user/preferences", token("alice", -60_000)), response, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader("newAccessToken")).isEqualTo(newToken);
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getName()).isEqualTo("alice");
+    }
+
+    @Test
+    void refusesRefreshOfLoggedOutTokenAfterExpiry() throws Exception {
+        JwtTokenProvider tokenProvider = mock(JwtTokenProvider.class);
+        RefreshTokenService refreshTokenService = mock(RefreshTokenService.class);
+        JwtAuthFilter refreshingFilter = new JwtAuthFilter(tokenProvider, refreshTokenService, revocationService, SECRET, 100);
+        // 登出吊销的令牌在一分钟前过期，仍在换发窗口内
+        revocationService.revoke("alice-jti", System.currentTimeMillis() - 60_000);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        refreshingFilter.doFilter(request("/user/preferences", token("alice", -60_000)), response, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(401);
+        assertThat(response.getHeader("newAccessToken")).isNull();
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        verifyNoInteractions(tokenProvider, refreshTokenService);
+    }
+
+    @Test
+    void refusesRefreshAfterRefreshWindow() throws Exception {
+        JwtTokenProvider tokenProvider = mock(JwtTokenProvider.class);
+        RefreshTokenService refreshTokenService = mock(RefreshTokenService.class);
+        TokenRevocationService shortWindow = new TokenRevocationService(3600, 60, 1000, 0.01);
+        JwtAuthFilter refreshingFilter = new JwtAuthFilter(tokenProvider, refreshTokenService, shortWindow, SECRET, 100);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        refreshingFilter.doFilter(request("/user/preferences", token("alice", -120_000)), response, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(401);
+        verifyNoInteractions(tokenProvider, refreshTokenService);
+    }
+}
@@ -0,0 +1,78 @@
+package fridget.fridget.securities;
+
+import fridget.fridget.common.ServiceBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PasswordHashServiceTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(1));
+
+    // 阻塞到 release 之前，模拟耗时的BCrypt
+    private final PasswordEncoder blockingEncoder = new PasswordEncoder() {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            await();
+            return "{noop}" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            await();
+            return encodedPassword.equals("{noop}" + rawPassword);
+        }
+
+        private void await() {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    };
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void rejectsImmediatelyWhenPoolAndQueueAreFull() throws Exception {
+        PasswordHashService service = new PasswordHashService(blockingEncoder, executor, 5000, 3);
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> service.encode("a"));
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> service.matches("b", "{noop}b"));
+        while (executor.getQueue().isEmpty()) {
+            Thread.sleep(5);
+        }
+
+        assertThatThrownBy(() -> service.encode("c"))
+                .isInstanceOf(ServiceBusyException.class)
+                .extracting(e -> ((ServiceBusyException) e).getRetryAfterSeconds()).isEqualTo(3L);
+
+        release.countDown();
+        assertThat(running.get(1, TimeUnit.SECONDS)).isEqualTo("{noop}a");
+        assertThat(queued.get(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(service.stats()).containsEntry("completed", 2L).containsEntry("rejected", 1L);
+    }
+
+    @Test
+    void timesOutWhenHashingTakesTooLong() {
+        PasswordHashService service = new PasswordHashService(blockingEncoder, executor, 50, 1);
+
+        assertThatThrownBy(() -> service.encode("a")).isInstanceOf(ServiceBusyException.class);
+        assertThat(service.stats()).containsEntry("timedOut", 1L);
+    }
+}
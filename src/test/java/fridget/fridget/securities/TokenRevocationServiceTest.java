@@ -0,0 +1,121 @@
+package fridget.fridget.securities;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenRevocationServiceTest {
+
+    private static final long ACCESS_SECONDS = 3600;
+    private static final long REFRESH_SECONDS = 86400;
+
+    // 模拟Redis的键过期：键 -> 过期时刻，时间可以手动前移
+    private final Map<String, Long> redisExpiresAt = new HashMap<>();
+    private long clockOffsetMillis;
+    private RedisTemplate<String, String> redisTemplate;
+    private TokenRevocationService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        ValueOperations<String, String> values = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        doAnswer(invocation -> {
+            TimeUnit unit = invocation.getArgument(3);
+            redisExpiresAt.put(invocation.<String>getArgument(0), now() + unit.toMillis(invocation.<Long>getArgument(2)));
+            return null;
+        }).when(values).set(anyString(), anyString(), anyLong(), any(TimeUnit.class));
+        when(redisTemplate.hasKey(anyString())).thenAnswer(invocation -> {
+            Long expiresAt = redisExpiresAt.get(invocation.<String>getArgument(0));
+            return expiresAt != null && expiresAt > now();
+        });
+        service = new TokenRevocationService(redisTemplate, mock(RedisMessageListenerContainer.class),
+                ACCESS_SECONDS, REFRESH_SECONDS, 1000, 0.01);
+    }
+
+    private long now() {
+        return System.currentTimeMillis() + clockOffsetMillis;
+    }
+
+    @Test
+    void keepsRevocationUntilRefreshWindowEnds() {
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        service.revoke("jti-1", expiresAt);
+
+        // 令牌过期后，换发窗口内仍然是已吊销
+        clockOffsetMillis = 120_000;
+        assertThat(service.isRevoked("jti-1")).isTrue();
+        clockOffsetMillis = TimeUnit.SECONDS.toMillis(REFRESH_SECONDS);
+        assertThat(service.isRevoked("jti-1")).isTrue();
+
+        // 换发窗口结束后记录才删除
+        clockOffsetMillis = TimeUnit.SECONDS.toMillis(REFRESH_SECONDS) + 120_000;
+        assertThat(service.isRevoked("jti-1")).isFalse();
+        verify(redisTemplate).convertAndSend("jwt:revoked", "jti-1");
+    }
+
+    @Test
+    void recordsRevocationOfAlreadyExpiredToken() {
+        service.revoke("jti-1", System.currentTimeMillis() - 60_000);
+
+        assertThat(service.isRevoked("jti-1")).isTrue();
+    }
+
+    @Test
+    void ignoresTokensPastRefreshWindow() {
+        long expiresAt = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(REFRESH_SECONDS) - 1000;
+        service.revoke("jti-1", expiresAt);
+
+        assertThat(redisExpiresAt).isEmpty();
+        assertThat(service.withinRefreshWindow(expiresAt)).isFalse();
+        assertThat(service.withinRefreshWindow(System.currentTimeMillis() - 1000)).isTrue();
+    }
+
+    @Test
+    void answersFromLocalFilterWithoutRedisForUnrevokedTokens() {
+        service.revoke("jti-1", System.currentTimeMillis() + 60_000);
+
+        for (int i = 0; i < 100; i++) {
+            service.isRevoked("other-" + i);
+        }
+
+        // 只有布隆过滤器误判时才访问Redis
+        assertThat((Long) service.stats().get("redisChecks")).isLessThan(10L);
+        assertThat(service.stats()).containsEntry("confirmedRevoked", 0L);
+    }
+
+    @Test
+    void learnsRevocationsFromOtherNodes() {
+        service.onMessage(new DefaultMessage("jwt:revoked".getBytes(StandardCharsets.UTF_8),
+                "jti-2".getBytes(StandardCharsets.UTF_8)), null);
+        redisExpiresAt.put("jwt:revoked:jti-2", now() + 60_000);
+
+        assertThat(service.isRevoked("jti-2")).isTrue();
+    }
+
+    @Test
+    void failsClosedWhenRedisUnavailable() {
+        service.revoke("jti-1", System.currentTimeMillis() + 60_000);
+        when(redisTemplate.hasKey(anyString())).thenThrow(new IllegalStateException("redis down"));
+
+        assertThat(service.isRevoked("jti-1")).isTrue();
+    }
+}
@@ -0,0 +1,73 @@
+package fridget.fridget.user;
+
+import fridget.fridget.common.EntityNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserContextTest {
+
+    private UserRepository userRepository;
+    private UserContext userContext;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        when(userRepository.findByUserId("alice"))
+                .thenReturn(Optional.of(User.builder().userId("alice").build()));
+        userContext = new UserContext(userRepository, 100, 30);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    private static void beginRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    @Test
+    void loadsOncePerRequestAndReusesAcrossRequests() {
+        beginRequest();
+        User first = userContext.get("alice");
+        assertThat(userContext.get("alice")).isSameAs(first);
+
+        beginRequest();
+        assertThat(userContext.get("alice")).isSameAs(first);
+
+        verify(userRepository, times(1)).findByUserId("alice");
+        assertThat(userContext.stats()).containsEntry("requestHits", 1L).containsEntry("mongoLoads", 1L);
+    }
+
+    @Test
+    void invalidateReloadsWithinSameRequest() {
+        beginRequest();
+        userContext.get("alice");
+        userContext.invalidate("alice");
+        userContext.get("alice");
+
+        verify(userRepository, times(2)).findByUserId("alice");
+    }
+
+    @Test
+    void missingUserIsNotCached() {
+        assertThatThrownBy(() -> userContext.get("bob")).isInstanceOf(EntityNotFoundException.class);
+
+        when(userRepository.findByUserId("bob"))
+                .thenReturn(Optional.of(User.builder().userId("bob").build()));
+        assertThat(userContext.get("bob").getUserId()).isEqualTo("bob");
+    }
+}